@@ -0,0 +1,46 @@
+#!/usr/bin/env bash
+# Runs the JMH benchmarks (src/jmh/java) and keeps one JSON result per commit, so runs can be compared:
+#
+#   scripts/jmh-benchmark.sh                      # all benchmarks -> target/jmh/<commit>.json
+#   scripts/jmh-benchmark.sh SearchService        # only benchmarks matching the regex
+#   scripts/jmh-benchmark.sh compare <old.json> <new.json>
+#
+# Every run uses the same forks / warmup / measurement (annotations on the benchmark classes),
+# fixed input data (BenchmarkFixtures.SEED) and -prof gc, so gc.alloc.rate.norm (bytes/op) is reported too.
+# Compare results from the same machine only; stop other heavy processes while it runs.
+set -euo pipefail
+
+if [ "${1:-}" = "compare" ]; then
+  python3 - "$2" "$3" <<'PY'
+import json, sys
+
+def load(path):
+    rows = {}
+    for r in json.load(open(path)):
+        key = r["benchmark"].rsplit(".", 2)[-2] + "." + r["benchmark"].rsplit(".", 1)[-1]
+        params = ",".join("%s=%s" % kv for kv in sorted(r.get("params", {}).items()))
+        alloc = r.get("secondaryMetrics", {}).get("gc.alloc.rate.norm", {}).get("score")
+        rows[(key, params)] = (r["primaryMetric"]["score"], r["primaryMetric"]["scoreUnit"], alloc)
+    return rows
+
+old, new = load(sys.argv[1]), load(sys.argv[2])
+print("%-60s %-30s %14s %14s %8s %12s" % ("benchmark", "params", "old", "new", "change", "B/op new"))
+for key in sorted(new):
+    n = new[key]
+    o = old.get(key)
+    change = "%+.1f%%" % ((n[0] - o[0]) / o[0] * 100) if o else "new"
+    print("%-60s %-30s %14.3f %14.3f %8s %12s" % (key[0], key[1], o[0] if o else float("nan"), n[0], change,
+                                                 "-" if n[2] is None else "%.0f" % n[2]))
+PY
+  exit 0
+fi
+
+COMMIT=$(git rev-parse --short HEAD)
+if ! git diff --quiet; then
+  COMMIT="$COMMIT-dirty"
+fi
+mkdir -p target/jmh
+RESULT="target/jmh/$COMMIT.json"
+
+./mvnw -B -q -Pjmh test-compile exec:exec -Djmh.args="${1:-.*} -prof gc -rf json -rff $RESULT"
+echo "result: $RESULT"
@@ -0,0 +1,37 @@
+#!/usr/bin/env bash
+# Boots staybooking on the loadtest profile (H2 + in-memory / filesystem / deterministic stand-ins, no network needed)
+# and replays the register / authenticate / search / reserve / cancel mix against it.
+#
+#   scripts/load-test.sh                                  # defaults, see LoadGenerator
+#   scripts/load-test.sh --threads=64 --duration=120      # any LoadGenerator option
+#   scripts/load-test.sh --rate=500                       # open loop at 500 req/s
+#
+# App log: target/loadtest/app.log, report: target/loadtest/summary.txt + latency-<operation>.csv
+# Everything except the generator options is the normal configuration, e.g. SEARCH_RATE_LIMIT_PER_SECOND=1000 works as usual.
+set -euo pipefail
+
+PORT=${LOADTEST_PORT:-18081}
+OUT=target/loadtest
+MVN=${MVN:-./mvnw}
+mkdir -p "$OUT"
+
+# target/loadtest-classes：只有 src/loadtest 的类，不带 target/test-classes（测试里的 stub 会被 component scan 扫进来）
+$MVN -B -q -Ploadtest process-test-classes dependency:build-classpath \
+  -DincludeScope=runtime -Dmdep.outputFile="$OUT/classpath.txt"
+CP="target/loadtest-classes:target/classes:$(cat "$OUT/classpath.txt")"
+
+java ${LOADTEST_APP_JAVA_OPTS:--Xms1g -Xmx1g} -cp "$CP" com.tq.staybooking.StaybookingApplication \
+  --spring.profiles.active=loadtest --server.port="$PORT" > "$OUT/app.log" 2>&1 &
+APP=$!
+trap 'kill $APP 2>/dev/null; wait $APP 2>/dev/null || true' EXIT
+
+# 等 /health 就绪
+until curl -sf "http://localhost:$PORT/health" > /dev/null; do
+  if ! kill -0 "$APP" 2>/dev/null; then
+    echo "application exited, see $OUT/app.log" >&2
+    exit 1
+  fi
+  sleep 0.5
+done
+
+java -cp "$CP" com.tq.staybooking.loadtest.LoadGenerator --base-url="http://localhost:$PORT" --out="$OUT" "$@"
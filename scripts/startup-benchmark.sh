@@ -0,0 +1,41 @@
+#!/usr/bin/env bash
+# Compares time-to-ready of the old schema mode (Hibernate ddl-auto=update, no Flyway)
+# against Flyway + ddl-auto=validate and Flyway + ddl-auto=none.
+#
+# Needs the same env vars as a normal run (SPRING_DATASOURCE_URL, ...) and a built jar:
+#   ./mvnw -B package -DskipTests && scripts/startup-benchmark.sh [runs]
+set -euo pipefail
+
+RUNS=${1:-5}
+JAR=$(ls target/*.jar | grep -v original | head -n 1)
+PORT=${BENCHMARK_PORT:-18080}
+
+run_mode() {
+  local label=$1; shift
+  local total=0
+  for i in $(seq 1 "$RUNS"); do
+    local log
+    log=$(mktemp)
+    java -jar "$JAR" --server.port="$PORT" "$@" > "$log" 2>&1 &
+    local pid=$!
+    # 等到 StartupTimeReporter 打出 time-to-ready 那一行
+    until grep -q "time-to-ready=" "$log"; do
+      if ! kill -0 "$pid" 2>/dev/null; then
+        echo "[$label] application exited, see $log" >&2
+        exit 1
+      fi
+      sleep 0.2
+    done
+    local ms
+    ms=$(grep -o "time-to-ready=[0-9]*" "$log" | head -n 1 | cut -d= -f2)
+    kill "$pid"; wait "$pid" 2>/dev/null || true
+    rm -f "$log"
+    echo "[$label] run $i: ${ms}ms"
+    total=$((total + ms))
+  done
+  echo "[$label] average: $((total / RUNS))ms"
+}
+
+run_mode "before: ddl-auto=update"        --spring.flyway.enabled=false --spring.jpa.hibernate.ddl-auto=update
+run_mode "after: flyway + validate"       --spring.flyway.enabled=true  --spring.jpa.hibernate.ddl-auto=validate
+run_mode "after: flyway + none (fast)"    --spring.flyway.enabled=true  --spring.jpa.hibernate.ddl-auto=none
@@ -0,0 +1,98 @@
+package com.tq.staybooking.benchmark;
+
+import com.tq.staybooking.model.Reservation;
+import com.tq.staybooking.model.Stay;
+import com.tq.staybooking.model.StayImage;
+import com.tq.staybooking.model.User;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Deterministic test data and repository stubs shared by the benchmarks.
+ * Every generator takes an explicit seed, so two runs (or two commits) measure exactly the same input.
+ */
+final class BenchmarkFixtures {
+    static final long SEED = 42L;
+    // 固定的日期，不用 LocalDate.now()：结果不应该取决于哪天跑的
+    static final LocalDate BASE_DATE = LocalDate.of(2030, 1, 1);
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * A JDK dynamic proxy for a Spring Data repository interface: only the named methods are implemented,
+     * anything else throws. Cheap compared to the code under test and has no mocking framework overhead.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T stub(Class<T> repositoryType, Map<String, Function<Object[], Object>> methods) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Function<Object[], Object> implementation = methods.get(method.getName());
+            if (implementation != null) {
+                return implementation.apply(args);
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "hashCode": return System.identityHashCode(proxy);
+                    case "equals": return proxy == args[0];
+                    default: return repositoryType.getSimpleName() + " stub";
+                }
+            }
+            throw new UnsupportedOperationException(repositoryType.getSimpleName() + "." + method.getName() + " is not stubbed");
+        };
+        return (T) Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[]{repositoryType}, handler);
+    }
+
+    static User user(String username) {
+        return new User.Builder().setUsername(username).setPassword("").setEnabled(true).build();
+    }
+
+    static List<Stay> stays(int count, int imagesPerStay, long seed) {
+        Random random = new Random(seed);
+        List<User> hosts = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, count / 10); i++) {
+            hosts.add(user("host" + i));
+        }
+        List<Stay> stays = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Stay stay = new Stay.Builder()
+                    .setId((long) i + 1)
+                    .setName("Stay " + i)
+                    .setDescription("A quiet place near the park, " + (10 + random.nextInt(90)) + " square meters")
+                    .setAddress((100 + random.nextInt(9900)) + " Main St, Seattle, WA")
+                    .setGuestNumber(1 + random.nextInt(8))
+                    .setHost(hosts.get(random.nextInt(hosts.size())))
+                    .build();
+            List<StayImage> images = new ArrayList<>(imagesPerStay);
+            for (int j = 0; j < imagesPerStay; j++) {
+                images.add(new StayImage("https://storage.googleapis.com/staybooking/" + i + "-" + j + ".jpg", stay));
+            }
+            stay.setImages(images);
+            stays.add(stay);
+        }
+        return stays;
+    }
+
+    static List<Reservation> reservations(List<Stay> stays, int count, long seed) {
+        Random random = new Random(seed);
+        User guest = user("guest");
+        List<Reservation> reservations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDate checkin = BASE_DATE.plusDays(random.nextInt(365));
+            reservations.add(new Reservation.Builder()
+                    .setId((long) i + 1)
+                    .setGuest(guest)
+                    .setStay(stays.get(random.nextInt(stays.size())))
+                    .setCheckinDate(checkin)
+                    .setCheckoutDate(checkin.plusDays(1 + random.nextInt(14)))
+                    .build());
+        }
+        return reservations;
+    }
+}
@@ -0,0 +1,65 @@
+package com.tq.staybooking.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.tq.staybooking.model.Reservation;
+import com.tq.staybooking.model.Stay;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the /stays, /search and /reservations response bodies.
+ * The ObjectMapper is built like Spring Boot's (Jackson2ObjectMapperBuilder: JavaTimeModule, no timestamps for dates).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class JsonSerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int size;
+
+    private List<Stay> stays;
+    private List<Reservation> reservations;
+    private ObjectWriter stayWriter;
+    private ObjectWriter reservationWriter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stays = BenchmarkFixtures.stays(size, 3, BenchmarkFixtures.SEED);
+        reservations = BenchmarkFixtures.reservations(stays, size, BenchmarkFixtures.SEED);
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        TypeFactory types = objectMapper.getTypeFactory();
+        // 和 controller 返回 List<Stay> 时一样，writer 按声明类型建一次，之后复用
+        stayWriter = objectMapper.writerFor(types.constructCollectionType(List.class, Stay.class));
+        reservationWriter = objectMapper.writerFor(types.constructCollectionType(List.class, Reservation.class));
+    }
+
+    @Benchmark
+    public byte[] stays() throws Exception {
+        return stayWriter.writeValueAsBytes(stays);
+    }
+
+    @Benchmark
+    public byte[] reservations() throws Exception {
+        return reservationWriter.writeValueAsBytes(reservations);
+    }
+}
@@ -0,0 +1,81 @@
+package com.tq.staybooking.benchmark;
+
+import com.tq.staybooking.util.JwtUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtUtil on the login and per-request paths.
+ * - generate*: signing a new token (login)
+ * - extractUsernameCached: a token the filter has seen recently (SHA-256 + cache lookup)
+ * - extractUsernameUncached: full parse + HMAC verification, with the verified-token cache disabled
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class JwtUtilBenchmark {
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+
+    private JwtUtil cached;
+    private JwtUtil uncached;
+    private String token;
+    private List<GrantedAuthority> authorities;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cached = jwtUtil(10_000);
+        uncached = jwtUtil(0);
+        authorities = List.of(new SimpleGrantedAuthority("ROLE_GUEST"));
+        token = cached.generateToken("guest", authorities);
+        cached.extractUsername(token);
+    }
+
+    // 和 Spring 注入 @Value 字段的效果一样，再手动调 @PostConstruct
+    private static JwtUtil jwtUtil(long cacheMaximumSize) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaximumSize", cacheMaximumSize);
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaxTtl", Duration.ofMinutes(5));
+        jwtUtil.init();
+        return jwtUtil;
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return cached.generateToken("guest");
+    }
+
+    @Benchmark
+    public String generateTokenWithRoles() {
+        return cached.generateToken("guest", authorities);
+    }
+
+    @Benchmark
+    public String extractUsernameCached() {
+        return cached.extractUsername(token);
+    }
+
+    @Benchmark
+    public String extractUsernameUncached() {
+        return uncached.extractUsername(token);
+    }
+}
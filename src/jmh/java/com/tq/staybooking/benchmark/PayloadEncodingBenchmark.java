@@ -0,0 +1,89 @@
+package com.tq.staybooking.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.tq.staybooking.model.Reservation;
+import com.tq.staybooking.model.Stay;
+import com.tq.staybooking.util.JacksonBinaryMappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON vs Smile vs CBOR for the /search (List&lt;Stay&gt;) and /reservations (List&lt;Reservation&gt;) bodies.
+ * The score is serialization CPU per body; the payload size of every combination is printed once per trial
+ * ("[payload] ..." lines in the output), together with its ratio to the JSON body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class PayloadEncodingBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    @Param({"100", "1000"})
+    private int size;
+
+    private List<Stay> stays;
+    private List<Reservation> reservations;
+    private ObjectWriter stayWriter;
+    private ObjectWriter reservationWriter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stays = BenchmarkFixtures.stays(size, 3, BenchmarkFixtures.SEED);
+        reservations = BenchmarkFixtures.reservations(stays, size, BenchmarkFixtures.SEED);
+        // 和应用里一样：三种格式都从同一个 Boot 风格的 builder 出来
+        ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+        JacksonBinaryMappers binary = new JacksonBinaryMappers(Jackson2ObjectMapperBuilder.json());
+        ObjectMapper objectMapper;
+        switch (format) {
+            case "smile": objectMapper = binary.getSmile(); break;
+            case "cbor": objectMapper = binary.getCbor(); break;
+            default: objectMapper = json;
+        }
+        stayWriter = writerFor(objectMapper, Stay.class);
+        reservationWriter = writerFor(objectMapper, Reservation.class);
+
+        int jsonStays = writerFor(json, Stay.class).writeValueAsBytes(stays).length;
+        int jsonReservations = writerFor(json, Reservation.class).writeValueAsBytes(reservations).length;
+        int encodedStays = stayWriter.writeValueAsBytes(stays).length;
+        int encodedReservations = reservationWriter.writeValueAsBytes(reservations).length;
+        System.out.printf("[payload] format=%s size=%d stays=%d B (%.2f of json) reservations=%d B (%.2f of json)%n",
+                format, size, encodedStays, (double) encodedStays / jsonStays,
+                encodedReservations, (double) encodedReservations / jsonReservations);
+    }
+
+    private static ObjectWriter writerFor(ObjectMapper objectMapper, Class<?> elementType) {
+        TypeFactory types = objectMapper.getTypeFactory();
+        return objectMapper.writerFor(types.constructCollectionType(List.class, elementType));
+    }
+
+    @Benchmark
+    public byte[] stays() throws Exception {
+        return stayWriter.writeValueAsBytes(stays);
+    }
+
+    @Benchmark
+    public byte[] reservations() throws Exception {
+        return reservationWriter.writeValueAsBytes(reservations);
+    }
+}
@@ -0,0 +1,93 @@
+package com.tq.staybooking.benchmark;
+
+import com.tq.staybooking.config.datasource.ReadYourWritesTracker;
+import com.tq.staybooking.model.Reservation;
+import com.tq.staybooking.model.Stay;
+import com.tq.staybooking.repository.ListingVersionRepository;
+import com.tq.staybooking.repository.ReservationRepository;
+import com.tq.staybooking.repository.StayReservationDateRepository;
+import com.tq.staybooking.service.ListingVersionService;
+import com.tq.staybooking.service.ReservationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * ReservationService.add with stubbed repositories: the availability check always passes and the writes
+ * go to a Blackhole, so the score is what add itself does per night (plus its fixed overhead).
+ * Since the nights are an EpochDayRange, score and allocation should stay flat as nights grows;
+ * the rows themselves are built by the JDBC batch in CustomStayReservationDateRepositoryImpl.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ReservationDateExpansionBenchmark {
+
+    @Param({"1", "7", "30", "365"})
+    private int nights;
+
+    private ReservationService reservationService;
+    private Reservation reservation;
+    private Blackhole blackhole;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        Stay stay = BenchmarkFixtures.stays(1, 0, BenchmarkFixtures.SEED).get(0);
+        reservation = new Reservation.Builder()
+                .setGuest(BenchmarkFixtures.user("guest"))
+                .setStay(stay)
+                .setCheckinDate(BenchmarkFixtures.BASE_DATE)
+                .setCheckoutDate(BenchmarkFixtures.BASE_DATE.plusDays(nights))
+                .build();
+
+        Map<String, Function<Object[], Object>> reservedDates = new HashMap<>();
+        reservedDates.put("isReserved", args -> false);
+        reservedDates.put("insertNights", args -> {
+            blackhole.consume(args[1]);
+            return null;
+        });
+        Map<String, Function<Object[], Object>> reservations = new HashMap<>();
+        reservations.put("save", this::consume);
+        // bump() 只是两次 upsert，这里不算进去
+        Map<String, Function<Object[], Object>> versions = new HashMap<>();
+        versions.put("increment", args -> null);
+
+        reservationService = new ReservationService(
+                BenchmarkFixtures.stub(ReservationRepository.class, reservations),
+                BenchmarkFixtures.stub(StayReservationDateRepository.class, reservedDates),
+                new ReadYourWritesTracker(Duration.ofSeconds(5), 100_000),
+                new ListingVersionService(BenchmarkFixtures.stub(ListingVersionRepository.class, versions),
+                        null, 1_000, Duration.ofSeconds(30), new SimpleMeterRegistry()));
+    }
+
+    private Object consume(Object[] args) {
+        blackhole.consume(args[0]);
+        return args[0];
+    }
+
+    @Benchmark
+    public void add() {
+        reservationService.add(reservation);
+    }
+}
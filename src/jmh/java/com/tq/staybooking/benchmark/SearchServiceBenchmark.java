@@ -0,0 +1,132 @@
+package com.tq.staybooking.benchmark;
+
+import com.tq.staybooking.model.Stay;
+import com.tq.staybooking.repository.LocationRepository;
+import com.tq.staybooking.repository.StayRepository;
+import com.tq.staybooking.repository.StayReservationDateRepository;
+import com.tq.staybooking.service.LocationSearchService;
+import com.tq.staybooking.service.SearchService;
+import com.tq.staybooking.service.StayCache;
+import com.tq.staybooking.util.LongHashSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * SearchService.search without Elasticsearch / MySQL: the repositories are stubs returning precomputed results,
+ * so the score is the service's own work (date filtering, cache lookup, guest-number filtering), plus the hand-off of
+ * the geo query to LocationSearchService's pool.
+ *
+ * candidates = stay ids returned by the geo query, reservedPercent = how many of them are booked for the dates.
+ * "cold" evicts the candidates from the stay cache before every call (every stay goes through the loader;
+ * the evictions are part of the score), "warm" keeps them cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class SearchServiceBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int candidates;
+
+    @Param({"0", "50"})
+    private int reservedPercent;
+
+    private List<Stay> stays;
+    private List<Long> stayIds;
+    private LongHashSet reservedIds;
+    private SearchService searchService;
+    private StayCache stayCache;
+    private LocationSearchService locationSearchService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stays = BenchmarkFixtures.stays(candidates, 3, BenchmarkFixtures.SEED);
+        stayIds = new ArrayList<>();
+        reservedIds = new LongHashSet();
+        Random random = new Random(BenchmarkFixtures.SEED);
+        Map<Long, Stay> staysById = new HashMap<>();
+        for (Stay stay : stays) {
+            stayIds.add(stay.getId());
+            staysById.put(stay.getId(), stay);
+            if (random.nextInt(100) < reservedPercent) {
+                reservedIds.add(stay.getId());
+            }
+        }
+
+        Map<String, Function<Object[], Object>> location = new HashMap<>();
+        location.put("searchByDistance", args -> stayIds);
+        Map<String, Function<Object[], Object>> reservedDates = new HashMap<>();
+        reservedDates.put("findReservedStayIds", args -> reservedIds);
+        Map<String, Function<Object[], Object>> stayRepository = new HashMap<>();
+        stayRepository.put("findWithImagesByIdInAndGuestNumberGreaterThanEqual", args -> {
+            List<Stay> found = new ArrayList<>();
+            for (Object id : (Collection<?>) args[0]) {
+                Stay stay = staysById.get(id);
+                if (stay != null && stay.getGuestNumber() >= (Integer) args[1]) {
+                    found.add(stay);
+                }
+            }
+            return found;
+        });
+
+        stayCache = new StayCache(100_000, Duration.ofHours(1), Duration.ofSeconds(5), new SimpleMeterRegistry());
+        StayRepository stays = BenchmarkFixtures.stub(StayRepository.class, stayRepository);
+        LocationRepository locations = BenchmarkFixtures.stub(LocationRepository.class, location);
+        // ES 调用和生产一样走 LocationSearchService 的线程池（超时足够大，不会走到 MySQL 兜底）
+        locationSearchService = new LocationSearchService(locations, stays, Duration.ofSeconds(10), 4, 64, 5,
+                Duration.ofSeconds(10), 10_000, new SimpleMeterRegistry());
+        searchService = new SearchService(
+                stays,
+                BenchmarkFixtures.stub(StayReservationDateRepository.class, reservedDates),
+                locations,
+                stayCache,
+                locationSearchService);
+        ReflectionTestUtils.setField(searchService, "chunkSize", 500);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        locationSearchService.destroy();
+    }
+
+    @Benchmark
+    public List<Stay> warm() {
+        return searchService.search(2, BenchmarkFixtures.BASE_DATE, BenchmarkFixtures.BASE_DATE.plusDays(3),
+                47.6, -122.3, "10km");
+    }
+
+    @Benchmark
+    public List<Stay> cold() {
+        for (Long stayId : stayIds) {
+            stayCache.evict(stayId, null);
+        }
+        return searchService.search(2, BenchmarkFixtures.BASE_DATE, BenchmarkFixtures.BASE_DATE.plusDays(3),
+                47.6, -122.3, "10km");
+    }
+}
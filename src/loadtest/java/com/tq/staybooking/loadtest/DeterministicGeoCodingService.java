@@ -0,0 +1,49 @@
+package com.tq.staybooking.loadtest;
+
+import com.tq.staybooking.exception.GeoCodingException;
+import com.tq.staybooking.exception.InvalidStayAddressException;
+import com.tq.staybooking.model.Location;
+import com.tq.staybooking.service.GeoCodingService;
+import org.springframework.data.elasticsearch.core.geo.GeoPoint;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * GeoCodingService without Google Maps: the same address always maps to the same point,
+ * spread uniformly in a square of +/- spreadDegrees around the configured center.
+ * Addresses containing "nowhere" fail like a partial match does with the real API.
+ */
+public class DeterministicGeoCodingService extends GeoCodingService {
+    private final double centerLat;
+    private final double centerLon;
+    private final double spreadDegrees;
+
+    public DeterministicGeoCodingService(double centerLat, double centerLon, double spreadDegrees) {
+        super(null);
+        this.centerLat = centerLat;
+        this.centerLon = centerLon;
+        this.spreadDegrees = spreadDegrees;
+    }
+
+    @Override
+    public Location getLatLng(Long id, String address) throws GeoCodingException {
+        if (address == null || address.toLowerCase().contains("nowhere")) {
+            throw new InvalidStayAddressException("Failed to find stay address");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(address.getBytes(StandardCharsets.UTF_8));
+        long hash = mix(crc.getValue());
+        // 高 32 位给纬度、低 32 位给经度，各自映射到 [-1, 1)
+        double u = ((hash >>> 32) / (double) (1L << 32)) * 2 - 1;
+        double v = ((hash & 0xFFFFFFFFL) / (double) (1L << 32)) * 2 - 1;
+        return new Location(id, new GeoPoint(centerLat + u * spreadDegrees, centerLon + v * spreadDegrees));
+    }
+
+    // splitmix64 finalizer: CRC32 alone clusters similar addresses ("1 Main St" / "2 Main St") together
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
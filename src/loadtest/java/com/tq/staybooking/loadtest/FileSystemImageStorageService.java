@@ -0,0 +1,40 @@
+package com.tq.staybooking.loadtest;
+
+import com.tq.staybooking.exception.GCSUploadException;
+import com.tq.staybooking.service.ImageStorageService;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * ImageStorageService that writes uploads to a local directory instead of a GCS bucket and returns a file: URI.
+ * Same naming (random UUID) and same error type as the real one.
+ */
+public class FileSystemImageStorageService extends ImageStorageService {
+    private final Path directory;
+
+    public FileSystemImageStorageService(Path directory) {
+        super(null);
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create image directory " + directory, e);
+        }
+    }
+
+    @Override
+    public String save(MultipartFile file) throws GCSUploadException {
+        Path target = directory.resolve(UUID.randomUUID().toString());
+        try (InputStream in = file.getInputStream()) {
+            Files.copy(in, target);
+        } catch (IOException e) {
+            throw new GCSUploadException("Failed to upload file to GCS");
+        }
+        return target.toUri().toString();
+    }
+}
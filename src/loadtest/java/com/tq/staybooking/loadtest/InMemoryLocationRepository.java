@@ -0,0 +1,216 @@
+package com.tq.staybooking.loadtest;
+
+import com.tq.staybooking.model.GeoCluster;
+import com.tq.staybooking.model.Location;
+import com.tq.staybooking.repository.LocationRepository;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoTileUtils;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.geo.GeoPoint;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * LocationRepository backed by a map: geo_distance becomes a linear haversine scan,
+ * bounding box / geotile clustering a linear scan too.
+ * Good enough for a few thousand stays; the point is to load the application, not to benchmark Elasticsearch.
+ *
+ * searchDelay (loadtest.location.delay) makes searchByDistance that much slower, to load /search in degraded mode:
+ * above search.es.timeout every search is answered by the MySQL fallback (see LocationSearchService).
+ */
+public class InMemoryLocationRepository implements LocationRepository {
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final String DEFAULT_DISTANCE = "50";
+
+    private final ConcurrentMap<Long, Location> locations = new ConcurrentHashMap<>();
+    private final Duration searchDelay;
+
+    public InMemoryLocationRepository(Duration searchDelay) {
+        this.searchDelay = searchDelay;
+    }
+
+    @Override
+    public List<Long> searchByDistance(double lat, double lon, String distance) {
+        if (!searchDelay.isZero()) {
+            try {
+                Thread.sleep(searchDelay.toMillis());
+            } catch (InterruptedException e) {
+                // LocationSearchService 超时后会 cancel(true)，和真的 ES 客户端一样直接失败
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Search interrupted", e);
+            }
+        }
+        double maxKm = parseKilometers(distance == null || distance.isEmpty() ? DEFAULT_DISTANCE : distance);
+        List<Long> ids = new ArrayList<>();
+        for (Location location : locations.values()) {
+            GeoPoint point = location.getGeoPoint();
+            if (haversineKm(lat, lon, point.getLat(), point.getLon()) <= maxKm) {
+                ids.add(location.getId());
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public List<Long> searchByBoundingBox(double top, double left, double bottom, double right, int maxResults) {
+        List<Long> ids = new ArrayList<>();
+        for (Location location : locations.values()) {
+            if (ids.size() >= maxResults) {
+                break;
+            }
+            if (inBoundingBox(location.getGeoPoint(), top, left, bottom, right)) {
+                ids.add(location.getId());
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public List<GeoCluster> clusterByBoundingBox(double top, double left, double bottom, double right, int precision, int maxClusters) {
+        // 格子的 key 用 ES 自己的 GeoTileUtils 算，和 geotile_grid 返回的 "zoom/x/y" 一模一样
+        Map<Long, double[]> cells = new HashMap<>(); // tile -> {count, sumLat, sumLon}
+        for (Location location : locations.values()) {
+            GeoPoint point = location.getGeoPoint();
+            if (inBoundingBox(point, top, left, bottom, right)) {
+                double[] cell = cells.computeIfAbsent(GeoTileUtils.longEncode(point.getLon(), point.getLat(), precision), tile -> new double[3]);
+                cell[0]++;
+                cell[1] += point.getLat();
+                cell[2] += point.getLon();
+            }
+        }
+        List<GeoCluster> clusters = new ArrayList<>(cells.size());
+        for (Map.Entry<Long, double[]> entry : cells.entrySet()) {
+            double[] cell = entry.getValue();
+            clusters.add(new GeoCluster(GeoTileUtils.stringEncode(entry.getKey()), (long) cell[0], cell[1] / cell[0], cell[2] / cell[0]));
+        }
+        clusters.sort(Comparator.comparingLong(GeoCluster::getCount).reversed());
+        return clusters.size() > maxClusters ? new ArrayList<>(clusters.subList(0, maxClusters)) : clusters;
+    }
+
+    private static boolean inBoundingBox(GeoPoint point, double top, double left, double bottom, double right) {
+        if (point.getLat() < bottom || point.getLat() > top) {
+            return false;
+        }
+        // left > right：跨 180 度经线
+        return left <= right
+                ? point.getLon() >= left && point.getLon() <= right
+                : point.getLon() >= left || point.getLon() <= right;
+    }
+
+    // 和 CustomLocationRepositoryImpl 一样：没有单位就是公里
+    private static double parseKilometers(String distance) {
+        String value = distance.trim().toLowerCase();
+        if (value.endsWith("km")) {
+            return Double.parseDouble(value.substring(0, value.length() - 2));
+        }
+        if (value.endsWith("m")) {
+            return Double.parseDouble(value.substring(0, value.length() - 1)) / 1000.0;
+        }
+        return Double.parseDouble(value);
+    }
+
+    static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+    }
+
+    @Override
+    public <S extends Location> S save(S entity) {
+        locations.put(entity.getId(), entity);
+        return entity;
+    }
+
+    @Override
+    public <S extends Location> Iterable<S> saveAll(Iterable<S> entities) {
+        entities.forEach(this::save);
+        return entities;
+    }
+
+    @Override
+    public Optional<Location> findById(Long id) {
+        return Optional.ofNullable(locations.get(id));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return locations.containsKey(id);
+    }
+
+    @Override
+    public Iterable<Location> findAll() {
+        return new ArrayList<>(locations.values());
+    }
+
+    @Override
+    public Iterable<Location> findAllById(Iterable<Long> ids) {
+        List<Location> found = new ArrayList<>();
+        for (Long id : ids) {
+            findById(id).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return locations.size();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        locations.remove(id);
+    }
+
+    @Override
+    public void delete(Location entity) {
+        locations.remove(entity.getId());
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        ids.forEach(locations::remove);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Location> entities) {
+        entities.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        locations.clear();
+    }
+
+    @Override
+    public Iterable<Location> findAll(Sort sort) {
+        return findAll();
+    }
+
+    @Override
+    public Page<Location> findAll(Pageable pageable) {
+        List<Location> all = new ArrayList<>(locations.values());
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(all);
+        }
+        int from = (int) Math.min(pageable.getOffset(), all.size());
+        int to = Math.min(from + pageable.getPageSize(), all.size());
+        return new PageImpl<>(all.subList(from, to), pageable, all.size());
+    }
+
+    @Override
+    public Page<Location> searchSimilar(Location entity, String[] fields, Pageable pageable) {
+        throw new UnsupportedOperationException("searchSimilar is not supported by the load-test stand-in");
+    }
+}
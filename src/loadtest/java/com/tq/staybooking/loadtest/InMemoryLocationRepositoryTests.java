@@ -0,0 +1,82 @@
+package com.tq.staybooking.loadtest;
+
+import com.tq.staybooking.model.GeoCluster;
+import com.tq.staybooking.model.Location;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoTileUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.core.geo.GeoPoint;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The stand-in has to answer viewport / cluster searches the way Elasticsearch does, or the load test measures
+ * something else: boxes across the 180° meridian, the result cap, and clusters ordered by count.
+ * Runs with the loadtest profile (mvn -Ploadtest test).
+ */
+class InMemoryLocationRepositoryTests {
+    private final InMemoryLocationRepository repository = new InMemoryLocationRepository(Duration.ZERO);
+
+    @Test
+    void boxAcrossTheAntimeridianCoversBothSides() {
+        repository.save(new Location(1L, new GeoPoint(0, 179.5)));   // 180 度经线西侧
+        repository.save(new Location(2L, new GeoPoint(0, -179.5)));  // 过了 180 度
+        repository.save(new Location(3L, new GeoPoint(0, 0)));       // 地球另一面
+        repository.save(new Location(4L, new GeoPoint(20, 179.5)));  // 纬度不在框里
+
+        assertEquals(Set.of(1L, 2L), new HashSet<>(repository.searchByBoundingBox(10, 170, -10, -170, 100)));
+        // 同样的经度，left <= right 就是中间那一大片
+        assertEquals(Set.of(3L), new HashSet<>(repository.searchByBoundingBox(10, -170, -10, 170, 100)));
+    }
+
+    @Test
+    void viewportIsCapped() {
+        for (long id = 1; id <= 10; id++) {
+            repository.save(new Location(id, new GeoPoint(1, 1)));
+        }
+        assertEquals(4, repository.searchByBoundingBox(10, 0, 0, 10, 4).size());
+    }
+
+    @Test
+    void clustersAreOrderedByCountAndCapped() {
+        save(1, 3, 48.85, 2.35);     // 巴黎
+        save(10, 5, 40.71, -74.00);  // 纽约
+        save(20, 1, 35.68, 139.69);  // 东京
+        save(30, 2, -17.8, 178.0);   // 斐济：框外（纬度）
+
+        List<GeoCluster> clusters = repository.clusterByBoundingBox(60, -180, 0, 180, 5, 2);
+
+        assertEquals(2, clusters.size());
+        assertEquals(5, clusters.get(0).getCount());
+        assertEquals(GeoTileUtils.stringEncode(GeoTileUtils.longEncode(-74.00, 40.71, 5)), clusters.get(0).getKey());
+        assertEquals(40.71, clusters.get(0).getLat(), 1e-9);
+        assertEquals(3, clusters.get(1).getCount());
+        assertTrue(clusters.get(1).getKey().startsWith("5/"));
+    }
+
+    @Test
+    void clustersAcrossTheAntimeridian() {
+        save(1, 2, 0, 179.5);
+        save(10, 1, 0, -179.5);
+        save(20, 4, 0, 0);
+
+        List<GeoCluster> clusters = repository.clusterByBoundingBox(10, 170, -10, -170, 3, 100);
+
+        assertEquals(2, clusters.size());
+        assertEquals(2, clusters.get(0).getCount());
+        assertEquals(179.5, clusters.get(0).getLon(), 1e-9);
+        assertEquals(1, clusters.get(1).getCount());
+        assertEquals(-179.5, clusters.get(1).getLon(), 1e-9);
+    }
+
+    private void save(long firstId, int count, double lat, double lon) {
+        for (int i = 0; i < count; i++) {
+            repository.save(new Location(firstId + i, new GeoPoint(lat, lon)));
+        }
+    }
+}
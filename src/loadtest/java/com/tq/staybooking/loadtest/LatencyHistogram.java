@@ -0,0 +1,94 @@
+package com.tq.staybooking.loadtest;
+
+import java.io.PrintWriter;
+
+/**
+ * Log-linear latency histogram in microseconds (same idea as HdrHistogram, no extra dependency):
+ * exact below 256us, then 128 sub-buckets per power of two, so every recorded value is within 1% of the truth.
+ * Not thread-safe: each load worker records into its own instance and they are merged for the report.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKETS = 128;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int MAX_SHIFT = 40; // 2^47 us, far beyond any sane latency
+
+    private final long[] counts = new long[LINEAR_LIMIT + MAX_SHIFT * SUB_BUCKETS];
+    private long total;
+    private long max;
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts[indexOf(micros)]++;
+        total++;
+        max = Math.max(max, micros);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    public long getTotalCount() {
+        return total;
+    }
+
+    public long getMaxMicros() {
+        return max;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile (0-100), in microseconds.
+     */
+    public long percentileMicros(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * "value_ms,percentile,count" rows, one per non-empty bucket; plots directly as a latency-by-percentile curve.
+     */
+    public void writeDistribution(PrintWriter out) {
+        out.println("value_ms,percentile,count");
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            seen += counts[i];
+            out.printf("%.3f,%.5f,%d%n", Math.min(upperBoundOf(i), max) / 1000.0, seen * 100.0 / total, counts[i]);
+        }
+    }
+
+    static int indexOf(long micros) {
+        if (micros < LINEAR_LIMIT) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - 7; // micros >> shift 落在 [128, 256)
+        if (shift > MAX_SHIFT) {
+            return LINEAR_LIMIT + MAX_SHIFT * SUB_BUCKETS - 1;
+        }
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) (micros >> shift) - SUB_BUCKETS;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,353 @@
+package com.tq.staybooking.loadtest;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a mix of register / authenticate / search / reserve / cancel against a running staybooking
+ * (normally the loadtest profile, see scripts/load-test.sh) and reports throughput and latency percentiles per operation.
+ *
+ * Options (--name=value):
+ *   base-url=http://localhost:8080  threads=32  duration=60  warmup=10  (seconds)
+ *   rate=0                          total requests/s; 0 = closed loop (every thread sends as fast as it gets answers)
+ *   hosts=20 stays=200 guests=200   data created before the run
+ *   mix=search:70,authenticate:10,reserve:10,cancel:5,register:5
+ *   distance=20km seed=42 out=target/loadtest
+ *
+ * With rate > 0 each thread follows a fixed schedule and latency is measured from the scheduled start time,
+ * so a stalled server shows up as latency instead of silently lowering the request rate (coordinated omission).
+ */
+public class LoadGenerator {
+    private static final String PASSWORD = "loadtest-password";
+
+    enum Operation { REGISTER, AUTHENTICATE, SEARCH, RESERVE, CANCEL }
+
+    private final Map<String, String> options;
+    private final StaybookingClient client;
+    private final long seed;
+    private final double centerLat;
+    private final double centerLon;
+    private final String runId;
+
+    private final List<Account> guests = new ArrayList<>();
+    private final List<Long> stayIds = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put("base-url", "http://localhost:8080");
+        options.put("threads", "32");
+        options.put("duration", "60");
+        options.put("warmup", "10");
+        options.put("rate", "0");
+        options.put("hosts", "20");
+        options.put("stays", "200");
+        options.put("guests", "200");
+        options.put("mix", "search:70,authenticate:10,reserve:10,cancel:5,register:5");
+        options.put("center", "47.6062,-122.3321");
+        options.put("distance", "20km");
+        options.put("seed", "42");
+        options.put("timeout", "10");
+        options.put("out", "target/loadtest");
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadGenerator(options).run();
+    }
+
+    LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.client = new StaybookingClient(options.get("base-url"), Duration.ofSeconds(intOption("timeout")));
+        this.seed = Long.parseLong(options.get("seed"));
+        String[] center = options.get("center").split(",");
+        this.centerLat = Double.parseDouble(center[0]);
+        this.centerLon = Double.parseDouble(center[1]);
+        // 同一个数据库上跑第二次时用户名不冲突
+        this.runId = Long.toString(System.currentTimeMillis() % 100_000_000L, 36);
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    void run() throws Exception {
+        if (!client.isHealthy()) {
+            throw new IllegalStateException("No healthy staybooking at " + options.get("base-url"));
+        }
+        int threads = intOption("threads");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            setUp(executor);
+            Worker[] workers = new Worker[threads];
+            for (int i = 0; i < threads; i++) {
+                workers[i] = new Worker(i, parseMix(options.get("mix")));
+            }
+
+            log("warmup %ss", options.get("warmup"));
+            runPhase(executor, workers, intOption("warmup"), false);
+            log("measuring %ss with %d threads%s", options.get("duration"), threads,
+                    intOption("rate") > 0 ? " at " + intOption("rate") + " req/s" : " (closed loop)");
+            long start = System.nanoTime();
+            runPhase(executor, workers, intOption("duration"), true);
+            report(workers, System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // ------------------------------------------------------------------ data set up
+
+    private void setUp(ExecutorService executor) throws Exception {
+        Random random = new Random(seed);
+        int hostCount = intOption("hosts");
+        int stayCount = intOption("stays");
+        int guestCount = intOption("guests");
+
+        List<Account> hosts = new ArrayList<>();
+        for (int i = 0; i < hostCount; i++) {
+            hosts.add(new Account("lt-" + runId + "-host-" + i));
+        }
+        for (int i = 0; i < guestCount; i++) {
+            guests.add(new Account("lt-" + runId + "-guest-" + i));
+        }
+        log("registering %d hosts and %d guests", hostCount, guestCount);
+        forEach(executor, hosts, host -> host.signUp("host"));
+        forEach(executor, guests, guest -> guest.signUp("guest"));
+
+        List<Integer> stayIndexes = new ArrayList<>();
+        for (int i = 0; i < stayCount; i++) {
+            stayIndexes.add(i);
+        }
+        int[] guestNumbers = new int[stayCount];
+        for (int i = 0; i < stayCount; i++) {
+            guestNumbers[i] = 1 + random.nextInt(6);
+        }
+        log("creating %d stays", stayCount);
+        forEach(executor, stayIndexes, i -> {
+            Account host = hosts.get(i % hosts.size());
+            StaybookingClient.Result result = client.addStay(host.token, "Stay " + i, (100 + i) + " Load Test Ave, Seattle, WA",
+                    "Load test stay " + i, guestNumbers[i]);
+            if (!result.isOk()) {
+                throw new IllegalStateException("POST /stays failed with " + result.status);
+            }
+        });
+        for (Account host : hosts) {
+            stayIds.addAll(client.listStayIds(host.token));
+        }
+        Collections.sort(stayIds);
+        log("set up done: %d stays", stayIds.size());
+    }
+
+    private interface Task<T> {
+        void run(T item) throws Exception;
+    }
+
+    private static <T> void forEach(ExecutorService executor, List<T> items, Task<T> task) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (T item : items) {
+            futures.add(executor.submit(() -> {
+                task.run(item);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private class Account {
+        private final String username;
+        private volatile String token;
+
+        Account(String username) {
+            this.username = username;
+        }
+
+        void signUp(String role) {
+            StaybookingClient.Result registered = client.register(role, username, PASSWORD);
+            if (!registered.isOk()) {
+                throw new IllegalStateException("register " + username + " failed with " + registered.status);
+            }
+            StaybookingClient.Result authenticated = client.authenticate(role, username, PASSWORD);
+            if (!authenticated.isOk()) {
+                throw new IllegalStateException("authenticate " + username + " failed with " + authenticated.status);
+            }
+            token = authenticated.body.path("token").asText();
+        }
+    }
+
+    // ------------------------------------------------------------------ load phase
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] pair = entry.trim().split(":");
+            weights.put(Operation.valueOf(pair[0].trim().toUpperCase()), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+
+    private void runPhase(ExecutorService executor, Worker[] workers, int seconds, boolean record) throws Exception {
+        if (seconds <= 0) {
+            return;
+        }
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        int rate = intOption("rate");
+        long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) * workers.length / rate : 0;
+        List<Future<?>> futures = new ArrayList<>();
+        for (Worker worker : workers) {
+            futures.add(executor.submit(() -> worker.run(end, intervalNanos, record)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private class Worker {
+        private final Random random;
+        private final Operation[] table;
+        private final Map<Operation, LatencyHistogram> histograms = new EnumMap<>(Operation.class);
+        private final Map<Operation, Map<Integer, Long>> statuses = new EnumMap<>(Operation.class);
+        private final int index;
+        private int registered;
+
+        Worker(int index, Map<Operation, Integer> weights) {
+            this.index = index;
+            this.random = new Random(seed * 31 + index);
+            List<Operation> table = new ArrayList<>();
+            for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+                for (int i = 0; i < weight.getValue(); i++) {
+                    table.add(weight.getKey());
+                }
+            }
+            this.table = table.toArray(new Operation[0]);
+            for (Operation operation : Operation.values()) {
+                histograms.put(operation, new LatencyHistogram());
+                statuses.put(operation, new TreeMap<>());
+            }
+        }
+
+        void run(long end, long intervalNanos, boolean record) {
+            long scheduled = System.nanoTime();
+            while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                long start;
+                if (intervalNanos > 0) {
+                    // open loop: 按计划时间发，迟到了也从计划时间开始算延迟
+                    long wait = scheduled - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    start = scheduled;
+                    scheduled += intervalNanos;
+                } else {
+                    start = System.nanoTime();
+                }
+                Operation operation = table[random.nextInt(table.length)];
+                int status = execute(operation);
+                if (record) {
+                    histograms.get(operation).recordNanos(System.nanoTime() - start);
+                    statuses.get(operation).merge(status, 1L, Long::sum);
+                }
+            }
+        }
+
+        private int execute(Operation operation) {
+            Account guest = guests.get(random.nextInt(guests.size()));
+            LocalDate checkin = LocalDate.now().plusDays(1 + random.nextInt(180));
+            LocalDate checkout = checkin.plusDays(1 + random.nextInt(7));
+            switch (operation) {
+                case REGISTER:
+                    return client.register("guest", "lt-" + runId + "-new-" + index + "-" + registered++, PASSWORD).status;
+                case AUTHENTICATE: {
+                    StaybookingClient.Result result = client.authenticate("guest", guest.username, PASSWORD);
+                    if (result.isOk()) {
+                        guest.token = result.body.path("token").asText();
+                    }
+                    return result.status;
+                }
+                case SEARCH: {
+                    // 中心点附近随机偏一点，不要每次都命中完全相同的查询
+                    double lat = centerLat + (random.nextDouble() - 0.5) * 0.2;
+                    double lon = centerLon + (random.nextDouble() - 0.5) * 0.2;
+                    return client.search(guest.token, 1 + random.nextInt(4), checkin, checkout, lat, lon,
+                            options.get("distance")).status;
+                }
+                case RESERVE:
+                    return client.reserve(guest.token, stayIds.get(random.nextInt(stayIds.size())), checkin, checkout).status;
+                case CANCEL: {
+                    StaybookingClient.Result list = client.listReservations(guest.token);
+                    List<Long> reservationIds = StaybookingClient.ids(list);
+                    if (reservationIds.isEmpty()) {
+                        return list.status;
+                    }
+                    return client.cancel(guest.token, reservationIds.get(random.nextInt(reservationIds.size()))).status;
+                }
+                default:
+                    throw new IllegalStateException(operation.name());
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------ report
+
+    private void report(Worker[] workers, long elapsedNanos) throws IOException {
+        Path out = Path.of(options.get("out"));
+        Files.createDirectories(out);
+        double seconds = elapsedNanos / 1e9;
+        LatencyHistogram all = new LatencyHistogram();
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-13s %9s %10s %9s %9s %9s %9s %9s  %s%n",
+                "operation", "count", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "status codes"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            Map<Integer, Long> statuses = new TreeMap<>();
+            for (Worker worker : workers) {
+                histogram.add(worker.histograms.get(operation));
+                worker.statuses.get(operation).forEach((status, count) -> statuses.merge(status, count, Long::sum));
+            }
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            all.add(histogram);
+            summary.append(line(operation.name().toLowerCase(), histogram, seconds, statuses.toString()));
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(out.resolve("latency-" + operation.name().toLowerCase() + ".csv")))) {
+                histogram.writeDistribution(writer);
+            }
+        }
+        summary.append(line("all", all, seconds, ""));
+        System.out.print(summary);
+        Files.writeString(out.resolve("summary.txt"), summary);
+        log("histograms written to %s", out.toAbsolutePath());
+    }
+
+    private static String line(String name, LatencyHistogram histogram, double seconds, String statuses) {
+        return String.format("%-13s %9d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+                name, histogram.getTotalCount(), histogram.getTotalCount() / seconds,
+                histogram.percentileMicros(50) / 1000.0, histogram.percentileMicros(90) / 1000.0,
+                histogram.percentileMicros(99) / 1000.0, histogram.percentileMicros(99.9) / 1000.0,
+                histogram.getMaxMicros() / 1000.0, statuses);
+    }
+
+    private static void log(String format, Object... args) {
+        System.out.println("[loadtest] " + String.format(format, args));
+    }
+}
@@ -0,0 +1,44 @@
+package com.tq.staybooking.loadtest;
+
+import com.tq.staybooking.repository.LocationRepository;
+import com.tq.staybooking.service.GeoCodingService;
+import com.tq.staybooking.service.ImageStorageService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Local stand-ins for everything staybooking normally needs from the cloud, active with --spring.profiles.active=loadtest:
+ * - MySQL          -> in-memory H2 in MySQL mode, schema from the normal Flyway migrations (application-loadtest.properties)
+ * - Elasticsearch  -> InMemoryLocationRepository
+ * - GCS            -> FileSystemImageStorageService
+ * - Google Maps    -> DeterministicGeoCodingService
+ *
+ * The beans use the same names as the real ones, so they replace them (spring.main.allow-bean-definition-overriding)
+ * and the rest of the application is exactly what runs in production.
+ */
+@Configuration
+@Profile("loadtest")
+public class LoadTestConfig {
+
+    @Bean
+    public LocationRepository locationRepository(@Value("${loadtest.location.delay}") Duration searchDelay) {
+        return new InMemoryLocationRepository(searchDelay);
+    }
+
+    @Bean
+    public ImageStorageService imageStorageService(@Value("${loadtest.storage.dir}") String directory) {
+        return new FileSystemImageStorageService(Path.of(directory));
+    }
+
+    @Bean
+    public GeoCodingService geoCodingService(@Value("${loadtest.geo.center-lat}") double centerLat,
+                                             @Value("${loadtest.geo.center-lon}") double centerLon,
+                                             @Value("${loadtest.geo.spread-degrees}") double spreadDegrees) {
+        return new DeterministicGeoCodingService(centerLat, centerLon, spreadDegrees);
+    }
+}
@@ -0,0 +1,172 @@
+package com.tq.staybooking.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Thin blocking HTTP client for the staybooking API, one method per endpoint the load generator uses.
+ * Every call returns the HTTP status (and the parsed body where the caller needs it); -1 means an I/O failure or timeout.
+ */
+public class StaybookingClient {
+    // 最小的 JPEG（SOI + EOI），图片内容对服务端无所谓
+    private static final byte[] IMAGE = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xD9};
+
+    private final String baseUrl;
+    private final HttpClient http;
+    private final Duration timeout;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public StaybookingClient(String baseUrl, Duration timeout) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.timeout = timeout;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    public static class Result {
+        public final int status;
+        public final JsonNode body;
+
+        Result(int status, JsonNode body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public boolean isOk() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    public boolean isHealthy() {
+        return send(request("/health", null).GET().build(), false).isOk();
+    }
+
+    public Result register(String role, String username, String password) {
+        return postJson("/register/" + role, null, Map.of("username", username, "password", password), false);
+    }
+
+    public Result authenticate(String role, String username, String password) {
+        return postJson("/authenticate/" + role, null, Map.of("username", username, "password", password), true);
+    }
+
+    public Result addStay(String token, String name, String address, String description, int guestNumber) {
+        String boundary = "----loadtest" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        writeField(body, boundary, "name", name);
+        writeField(body, boundary, "address", address);
+        writeField(body, boundary, "description", description);
+        writeField(body, boundary, "guest_number", String.valueOf(guestNumber));
+        writeAscii(body, "--" + boundary + "\r\nContent-Disposition: form-data; name=\"images\"; filename=\"stay.jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n");
+        body.writeBytes(IMAGE);
+        writeAscii(body, "\r\n--" + boundary + "--\r\n");
+        HttpRequest request = request("/stays", token)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+        return send(request, false);
+    }
+
+    public List<Long> listStayIds(String token) {
+        return ids(send(request("/stays", token).GET().build(), true));
+    }
+
+    public Result search(String token, int guestNumber, LocalDate checkin, LocalDate checkout,
+                         double lat, double lon, String distance) {
+        String query = "?guest_number=" + guestNumber
+                + "&checkin_date=" + checkin
+                + "&checkout_date=" + checkout
+                + "&lat=" + lat
+                + "&lon=" + lon
+                + "&distance=" + URLEncoder.encode(distance, StandardCharsets.UTF_8);
+        return send(request("/search" + query, token).GET().build(), false);
+    }
+
+    public Result reserve(String token, long stayId, LocalDate checkin, LocalDate checkout) {
+        return postJson("/reservations", token, Map.of(
+                "checkin_date", checkin.toString(),
+                "checkout_date", checkout.toString(),
+                "stay", Map.of("id", stayId)), false);
+    }
+
+    public Result listReservations(String token) {
+        return send(request("/reservations", token).GET().build(), true);
+    }
+
+    public Result cancel(String token, long reservationId) {
+        return send(request("/reservations/" + reservationId, token).DELETE().build(), false);
+    }
+
+    public static List<Long> ids(Result result) {
+        List<Long> ids = new ArrayList<>();
+        if (result.isOk() && result.body != null && result.body.isArray()) {
+            for (JsonNode node : result.body) {
+                ids.add(node.path("id").asLong());
+            }
+        }
+        return ids;
+    }
+
+    private Result postJson(String path, String token, Object body, boolean parse) {
+        try {
+            HttpRequest request = request(path, token)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+            return send(request, parse);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(timeout);
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private Result send(HttpRequest request, boolean parse) {
+        try {
+            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            JsonNode body = null;
+            if (parse && response.statusCode() < 300 && response.body().length > 0) {
+                body = objectMapper.readTree(response.body());
+            }
+            return new Result(response.statusCode(), body);
+        } catch (IOException e) {
+            return new Result(-1, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result(-1, null);
+        }
+    }
+
+    private static void writeField(ByteArrayOutputStream body, String boundary, String name, String value) {
+        writeAscii(body, "--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n");
+        body.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        writeAscii(body, "\r\n");
+    }
+
+    private static void writeAscii(ByteArrayOutputStream body, String text) {
+        body.writeBytes(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -3,10 +3,12 @@ package com.tq.staybooking;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 
 @EntityScan("com.tq.staybooking") // 改成你项目的根包
+@EnableScheduling // TokenRevocationService 定时刷新 revoke 列表
 public class StaybookingApplication {
 
 	public static void main(String[] args) {
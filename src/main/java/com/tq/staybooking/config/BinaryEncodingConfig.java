@@ -0,0 +1,47 @@
+package com.tq.staybooking.config;
+
+import com.tq.staybooking.util.JacksonBinaryMappers;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Content negotiation for the mobile apps: every @RestController endpoint can answer (and read bodies) as
+ * Smile ("application/x-jackson-smile") or CBOR ("application/cbor") instead of JSON.
+ *
+ * Spring MVC registers Smile / CBOR converters by itself once the jars are on the classpath, but those build their
+ * own ObjectMapper and skip Boot's customizations; here they are swapped for ones using JacksonBinaryMappers.
+ * They stay behind the JSON converter, so a wildcard Accept (or none at all) still gets JSON.
+ * Streamed lists don't go through converters, see StreamingJson.
+ */
+@Configuration
+public class BinaryEncodingConfig implements WebMvcConfigurer {
+    private JacksonBinaryMappers mappers;
+
+    public BinaryEncodingConfig(JacksonBinaryMappers mappers) {
+        this.mappers = mappers;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        replaceOrAdd(converters, MappingJackson2SmileHttpMessageConverter.class,
+                new MappingJackson2SmileHttpMessageConverter(mappers.getSmile()));
+        replaceOrAdd(converters, MappingJackson2CborHttpMessageConverter.class,
+                new MappingJackson2CborHttpMessageConverter(mappers.getCbor()));
+    }
+
+    private static void replaceOrAdd(List<HttpMessageConverter<?>> converters,
+                                     Class<?> type, HttpMessageConverter<?> converter) {
+        for (int i = 0; i < converters.size(); i++) {
+            if (type.isInstance(converters.get(i))) {
+                converters.set(i, converter);
+                return;
+            }
+        }
+        converters.add(converter);
+    }
+}
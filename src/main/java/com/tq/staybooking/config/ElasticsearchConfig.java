@@ -4,6 +4,7 @@ import org.elasticsearch.client.RestHighLevelClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.elasticsearch.client.ClientConfiguration;
 import org.springframework.data.elasticsearch.client.RestClients;
 import org.springframework.data.elasticsearch.config.AbstractElasticsearchConfiguration;
@@ -14,7 +15,9 @@ import org.springframework.data.elasticsearch.config.AbstractElasticsearchConfig
  * 3. Go to com.tq.staybooking.exception package and create a new exception InvalidSearchDateException.
  */
 
+// loadtest profile: no Elasticsearch, LocationRepository is an in-memory stand-in (src/loadtest)
 @Configuration
+@Profile("!loadtest")
 public class ElasticsearchConfig extends AbstractElasticsearchConfiguration {
 
     @Value("${elasticsearch.address}")
@@ -33,12 +33,15 @@ import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageOptions;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
+// loadtest profile: images go to the local filesystem instead (src/loadtest)
 @Configuration
+@Profile("!loadtest")
 public class GoogleCloudStorageConfig {
 
     @Bean
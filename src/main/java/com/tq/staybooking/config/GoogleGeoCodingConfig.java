@@ -5,6 +5,7 @@ import com.google.maps.GeoApiContext;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 /**
  * 1. Go to the con.tq.staybooking.config package, create GoogleGeoCodingConfig class to provide GeoApiContext.
@@ -12,7 +13,9 @@ import org.springframework.context.annotation.Configuration;
      * create GeoCodingException which will be thrown if there’s any exception when we connect to Geolocation API.
  */
 
+// loadtest profile: GeoCodingService is replaced by a deterministic stand-in (src/loadtest)
 @Configuration
+@Profile("!loadtest")
 public class GoogleGeoCodingConfig {
 
     @Value("${geocoding.apikey}")
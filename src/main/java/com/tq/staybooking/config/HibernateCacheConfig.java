@@ -0,0 +1,77 @@
+package com.tq.staybooking.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.tq.staybooking.model.Authority;
+import com.tq.staybooking.model.Stay;
+import com.tq.staybooking.model.StayImage;
+import com.tq.staybooking.model.User;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level cache: JCache API with Caffeine as the provider, one bounded region per entity.
+ *
+ * Regions are created here (instead of an application.conf) so their sizes come from application.properties:
+ * jpa.cache.stay.maximum-size, jpa.cache.image.maximum-size, jpa.cache.user.maximum-size,
+ * jpa.cache.query.maximum-size and one shared jpa.cache.ttl.
+ * Hit / miss / put counts per region show up as hibernate.second.level.cache.* metrics
+ * (needs hibernate.generate_statistics=true).
+ *
+ * The query cache (hibernate.cache.use_query_cache) is off by default, and no query is marked cacheable. It used to
+ * cache StayRepository.findByHost. That query was replaced by the keyset findIdsByHostAfter, whose result, the host's
+ * stay ids, is cached by StayCache's host index. That index is keyed by the host's listing version, so it is not
+ * dropped on every write to the stay table the way Hibernate invalidates query results. A cacheable findIdsByHostAfter
+ * would miss exactly when the host index does (after a write to that table), and every write would still pay for the
+ * update-timestamps bookkeeping. The region is still created, so HIBERNATE_QUERY_CACHE=true works for experiments.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${jpa.cache.stay.maximum-size:10000}") long staySize,
+                                              @Value("${jpa.cache.image.maximum-size:50000}") long imageSize,
+                                              @Value("${jpa.cache.user.maximum-size:10000}") long userSize,
+                                              @Value("${jpa.cache.query.maximum-size:1000}") long querySize,
+                                              @Value("${jpa.cache.ttl:10m}") Duration ttl) {
+        // 每个 Spring context 一个独立的 CacheManager（测试里可能同时有好几个 context）
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("staybooking-hibernate-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        // region 名字 = 实体类全名；集合 = 实体类全名 + "." + 字段名
+        createRegion(cacheManager, Stay.class.getName(), staySize, ttl);
+        createRegion(cacheManager, Stay.class.getName() + ".images", staySize, ttl);
+        createRegion(cacheManager, StayImage.class.getName(), imageSize, ttl);
+        createRegion(cacheManager, User.class.getName(), userSize, ttl);
+        createRegion(cacheManager, Authority.class.getName(), userSize, ttl);
+        createRegion(cacheManager, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, querySize, ttl);
+        // 每张表一条“最后修改时间”，条目很少，而且不能比 query 结果先过期
+        createRegion(cacheManager, RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, 1000, null);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateSecondLevelCache(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private static void createRegion(CacheManager cacheManager, String name, long maximumSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        if (ttl != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        cacheManager.createCache(name, configuration);
+    }
+}
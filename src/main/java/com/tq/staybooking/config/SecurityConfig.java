@@ -1,6 +1,8 @@
 package com.tq.staybooking.config;
 
 import com.tq.staybooking.config.security.JwtAuthenticationFilter;
+import com.tq.staybooking.filter.AdaptiveConcurrencyLimitFilter;
+import com.tq.staybooking.filter.SearchRateLimitFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -16,6 +18,7 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.JdbcUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.FilterSecurityInterceptor;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import javax.sql.DataSource;
@@ -129,15 +132,19 @@ public class SecurityConfig {
 
     @Bean
     public SecurityFilterChain configure(HttpSecurity http,
-                                         JwtAuthenticationFilter jwtAuthenticationFilter) throws Exception {
+                                         JwtAuthenticationFilter jwtAuthenticationFilter,
+                                         SearchRateLimitFilter searchRateLimitFilter,
+                                         AdaptiveConcurrencyLimitFilter adaptiveConcurrencyLimitFilter) throws Exception {
         http
                 .csrf().disable()
+                .logout().disable() // /logout 由 AuthenticationController 处理（revoke 当前 token），不用 Spring 自带的 LogoutFilter
                 .sessionManagement()
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 .and()
                 .authorizeRequests()
                     .antMatchers(HttpMethod.POST, "/register/*").permitAll()
                     .antMatchers(HttpMethod.POST, "/authenticate/*").permitAll()
+                    .antMatchers(HttpMethod.POST, "/provisioning/users").permitAll() // 用 X-Provisioning-Key 鉴权，见 ProvisioningController
 
                     .antMatchers("/", "/health").permitAll()
 
@@ -147,11 +154,16 @@ public class SecurityConfig {
 //                    .antMatchers("/stays/**").authenticated()
                     .antMatchers("/stays/**").hasRole("HOST")
                     .antMatchers("/search").hasRole("GUEST")
+                    .antMatchers("/search/**").hasRole("GUEST") // /search/viewport, /search/clusters
                     .antMatchers("/reservations").hasRole("GUEST")
                     .antMatchers("/reservations/**").hasRole("GUEST")
                     .anyRequest().authenticated()
                 .and()
-                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                // 紧跟在 JWT filter 后面：已经知道是谁了，超出配额的 /search 直接 429，不进 SearchService
+                .addFilterAfter(searchRateLimitFilter, JwtAuthenticationFilter.class)
+                // 授权检查之后才占并发名额：401 / 403 的请求（比如匿名刷接口）不占位置
+                .addFilterAfter(adaptiveConcurrencyLimitFilter, FilterSecurityInterceptor.class);
 
         return http.build();
     }
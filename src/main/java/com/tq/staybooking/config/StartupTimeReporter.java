@@ -0,0 +1,32 @@
+package com.tq.staybooking.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Logs one line with the time from JVM start to "ready to serve traffic", plus the schema settings that affect it.
+ * scripts/startup-benchmark.sh greps this line to compare ddl-auto=update against Flyway + validate / none.
+ * (The same number is also exported by Spring Boot as the application.ready.time metric.)
+ */
+@Component
+public class StartupTimeReporter implements ApplicationListener<ApplicationReadyEvent> {
+    private static final Logger logger = LoggerFactory.getLogger(StartupTimeReporter.class);
+
+    @Value("${spring.jpa.hibernate.ddl-auto:none}")
+    private String ddlAuto;
+
+    @Value("${spring.flyway.enabled:true}")
+    private boolean flywayEnabled;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        long sinceJvmStart = ManagementFactory.getRuntimeMXBean().getUptime();
+        logger.info("time-to-ready={}ms ddl-auto={} flyway={}", sinceJvmStart, ddlAuto, flywayEnabled);
+    }
+}
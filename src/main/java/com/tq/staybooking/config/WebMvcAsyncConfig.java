@@ -0,0 +1,48 @@
+package com.tq.staybooking.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+/**
+ * Threads that write StreamingResponseBody lists (/stays, /reservations, /search ...).
+ *
+ * Without this MVC borrows the shared applicationTaskExecutor (8 core threads, unbounded queue),
+ * so a handful of slow clients would queue every other streamed response behind them.
+ * Not a bean on purpose: an Executor bean would switch off Boot's applicationTaskExecutor.
+ */
+@Configuration
+public class WebMvcAsyncConfig implements WebMvcConfigurer, DisposableBean {
+    private ThreadPoolTaskExecutor executor;
+    private Duration timeout;
+
+    public WebMvcAsyncConfig(@Value("${streaming.threads:64}") int threads,
+                             @Value("${streaming.queue-capacity:256}") int queueCapacity,
+                             @Value("${streaming.timeout:2m}") Duration timeout) {
+        this.timeout = timeout;
+        this.executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("response-stream-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        // 队列满了抛 TaskRejectedException -> 503（CustomExceptionHandler），不会无限堆积
+        executor.setQueueCapacity(queueCapacity);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.initialize();
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(executor);
+        configurer.setDefaultTimeout(timeout.toMillis());
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,62 @@
+package com.tq.staybooking.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Only active when spring.datasource.replica.url is set; otherwise Spring Boot's single auto-configured pool is used.
+ *
+ * Primary pool: the usual spring.datasource.* and spring.datasource.hikari.* settings.
+ * Replica pool: spring.datasource.replica.url / username / password and spring.datasource.replica.hikari.*
+ * (username / password / driver default to the primary's).
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.datasource.replica.url")
+public class DataSourceRoutingConfig {
+
+    // 两个池子也注册成 bean：关闭应用时会被 close，Boot 也会自动给它们加 hikaricp.* metrics
+    @Bean
+    public HikariDataSource primaryDataSource(DataSourceProperties properties, Environment environment) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+        return primary;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(DataSourceProperties properties, Environment environment) {
+        Binder binder = Binder.get(environment);
+        DataSourceProperties replicaProperties = binder.bind("spring.datasource.replica", DataSourceProperties.class)
+                .orElseGet(DataSourceProperties::new);
+        HikariDataSource replica = new HikariDataSource();
+        replica.setJdbcUrl(replicaProperties.getUrl());
+        replica.setUsername(replicaProperties.getUsername() != null ? replicaProperties.getUsername() : properties.getUsername());
+        replica.setPassword(replicaProperties.getPassword() != null ? replicaProperties.getPassword() : properties.getPassword());
+        replica.setDriverClassName(replicaProperties.getDriverClassName() != null
+                ? replicaProperties.getDriverClassName() : properties.determineDriverClassName());
+        binder.bind("spring.datasource.replica.hikari", Bindable.ofInstance(replica));
+        replica.setPoolName("replica");
+        // 副本上不允许写：就算路由判断错了，也是报错而不是写到副本上
+        replica.setReadOnly(true);
+        return replica;
+    }
+
+    // JPA / JdbcTemplate / Spring Security 注入的都是这个
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReadYourWritesTracker readYourWritesTracker) {
+        return ReadWriteRoutingDataSource.wrap(primaryDataSource, replicaDataSource, readYourWritesTracker);
+    }
+}
@@ -0,0 +1,75 @@
+package com.tq.staybooking.config.datasource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends @Transactional(readOnly = true) work to the replica and everything else to the primary.
+ *
+ * Always use it through wrap(): the transaction manager asks for a connection before it marks the
+ * transaction read-only, so the routing decision has to wait for the first real statement
+ * (LazyConnectionDataSourceProxy).
+ *
+ * onPrimary() sends the read-only work it runs to the primary anyway: a conditional listing reads its ETag version
+ * from the primary, and a body read from a replica that is behind would be stored by the client under that ETag.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    enum Route { PRIMARY, REPLICA }
+
+    // onPrimary() 里的只读事务也走 primary；是 ThreadLocal，流式 body 的线程要自己再包一次
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+
+    public interface PrimaryWork<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    private ReadWriteRoutingDataSource(ReadYourWritesTracker readYourWritesTracker) {
+        this.readYourWritesTracker = readYourWritesTracker;
+    }
+
+    public static DataSource wrap(DataSource primary, DataSource replica, ReadYourWritesTracker readYourWritesTracker) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(readYourWritesTracker);
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Route.PRIMARY, primary);
+        targets.put(Route.REPLICA, replica);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /**
+     * Runs work with every read on this thread routed to the primary. The route is picked when a transaction runs
+     * its first statement, so transactions that start inside work are covered; one already running on a replica
+     * connection is not switched.
+     */
+    public static <T, E extends Exception> T onPrimary(PrimaryWork<T, E> work) throws E {
+        boolean nested = FORCE_PRIMARY.get() != null;
+        FORCE_PRIMARY.set(Boolean.TRUE);
+        try {
+            return work.run();
+        } finally {
+            if (!nested) {
+                FORCE_PRIMARY.remove();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        // 没有事务 / 写事务 / 这个用户刚写过 / 条件 GET -> primary
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !readYourWritesTracker.isCurrentUserPinned()
+                && FORCE_PRIMARY.get() == null) {
+            return Route.REPLICA;
+        }
+        return Route.PRIMARY;
+    }
+}
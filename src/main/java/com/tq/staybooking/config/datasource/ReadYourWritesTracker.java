@@ -0,0 +1,63 @@
+package com.tq.staybooking.config.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Read-your-writes for the replica routing: after a user writes (booking, cancel, add/delete stay),
+ * that user's read-only transactions go to the primary for `spring.datasource.replica.sticky-window`,
+ * long enough for the replica to catch up. Everyone else keeps reading from the replica.
+ *
+ * Pins are per instance and bounded (Caffeine, size + TTL). Harmless when no replica is configured.
+ */
+@Component
+public class ReadYourWritesTracker {
+    private Cache<String, Boolean> pinnedUsers;
+
+    @Autowired
+    public ReadYourWritesTracker(@Value("${spring.datasource.replica.sticky-window:5s}") Duration stickyWindow,
+                                 @Value("${spring.datasource.replica.sticky-maximum-size:100000}") long maximumSize) {
+        this.pinnedUsers = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(stickyWindow)
+                .build();
+    }
+
+    /**
+     * Pins the user to the primary now and again once the current transaction commits
+     * (the replica lag starts at commit, not at the start of the write).
+     */
+    public void markWrite(String username) {
+        if (username == null) {
+            return;
+        }
+        pinnedUsers.put(username, Boolean.TRUE);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pinnedUsers.put(username, Boolean.TRUE);
+                }
+            });
+        }
+    }
+
+    public boolean isPinned(String username) {
+        return username != null && pinnedUsers.getIfPresent(username) != null;
+    }
+
+    // 当前请求的用户（JwtAuthenticationFilter 放进 SecurityContext 的）是否刚写过
+    public boolean isCurrentUserPinned() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && isPinned(auth.getName());
+    }
+}
@@ -0,0 +1,46 @@
+package com.tq.staybooking.config.datasource;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application DataSource (bean "dataSource": Boot's pool, or the read/write router when a replica is set)
+ * in a datasource-proxy so every statement goes through SqlInstrumentationListener.
+ * Replaces spring.jpa.show-sql: timing, slow query log with parameters, N+1 detection, metrics.
+ *
+ * sql.instrumentation.enabled=false turns the proxy off completely.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sql.instrumentation.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlInstrumentationConfig {
+
+    // static：BeanPostProcessor 要尽早创建；listener 不依赖 MeterRegistry，registry 建好时通过 MeterBinder 把 meter 注册进去
+    @Bean
+    public static SqlInstrumentationListener sqlInstrumentationListener(Environment environment) {
+        return new SqlInstrumentationListener(environment.getProperty("sql.slow-query-threshold-ms", Long.class, 200L));
+    }
+
+    @Bean
+    public static BeanPostProcessor sqlInstrumentationPostProcessor(ObjectProvider<SqlInstrumentationListener> listener) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // 只包最外层的 "dataSource"，primary / replica 两个池子不再包一次，否则每条 SQL 算两遍
+                if (!"dataSource".equals(beanName) || !(bean instanceof DataSource)) {
+                    return bean;
+                }
+                return ProxyDataSourceBuilder.create((DataSource) bean)
+                        .name("staybooking")
+                        .listener(listener.getObject())
+                        .build();
+            }
+        };
+    }
+}
@@ -0,0 +1,134 @@
+package com.tq.staybooking.config.datasource;
+
+import com.tq.staybooking.util.SqlRequestStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.logging.DefaultQueryLogEntryCreator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Called by datasource-proxy after every JDBC statement.
+ * - sql.statements timer (tag: type = select / insert / update / delete / other)
+ * - slow statements (>= sql.slow-query-threshold-ms) are logged and counted as sql.slow; bind parameters are only
+ *   logged for SELECTs (writes carry password hashes: INSERT INTO users, provisioning batches)
+ * - the statement is added to the current request's SqlRequestStats (N+1 detection happens in SqlStatsFilter)
+ *
+ * The meters are registered through MeterBinder, i.e. when Boot creates the MeterRegistry. The registry itself binds
+ * DataSource pool metrics, so it must not be looked up while the DataSource is being wrapped;
+ * statements executed before that (Flyway at startup) are only logged, not timed.
+ */
+public class SqlInstrumentationListener implements QueryExecutionListener, MeterBinder {
+    private static final Logger slowLogger = LoggerFactory.getLogger("staybooking.sql.slow");
+
+    private final long slowThresholdMillis;
+    private final DefaultQueryLogEntryCreator logEntryCreator = new DefaultQueryLogEntryCreator();
+    private final DefaultQueryLogEntryCreator maskedLogEntryCreator = new DefaultQueryLogEntryCreator() {
+        @Override
+        protected void writeParamsEntry(StringBuilder sb, ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            sb.append("Params:[(masked)]");
+        }
+    };
+
+    private volatile Meters meters;
+
+    public SqlInstrumentationListener(long slowThresholdMillis) {
+        this.slowThresholdMillis = slowThresholdMillis;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        this.meters = new Meters(meterRegistry);
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long elapsed = execInfo.getElapsedTime();
+        Meters meters = this.meters;
+        SqlRequestStats stats = SqlRequestStats.current();
+        for (QueryInfo queryInfo : queryInfoList) {
+            String sql = queryInfo.getQuery();
+            if (meters != null) {
+                meters.timerFor(sql).record(elapsed, TimeUnit.MILLISECONDS);
+            }
+            if (stats != null) {
+                stats.record(sql, elapsed, execInfo.isBatch());
+            }
+        }
+        if (elapsed >= slowThresholdMillis) {
+            if (meters != null) {
+                meters.slow.increment();
+            }
+            // 只有慢查询才拼日志，正常路径不做字符串拼接
+            slowLogger.warn(slowQueryLogEntry(execInfo, queryInfoList));
+        }
+    }
+
+    String slowQueryLogEntry(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        for (QueryInfo queryInfo : queryInfoList) {
+            if (!isSelect(queryInfo.getQuery())) {
+                return maskedLogEntryCreator.getLogEntry(execInfo, queryInfoList, true, true, true);
+            }
+        }
+        return logEntryCreator.getLogEntry(execInfo, queryInfoList, true, true, true);
+    }
+
+    private static boolean isSelect(String sql) {
+        String head = sql.stripLeading();
+        return head.regionMatches(true, 0, "select", 0, 6);
+    }
+
+    private static class Meters {
+        private final Timer selects;
+        private final Timer inserts;
+        private final Timer updates;
+        private final Timer deletes;
+        private final Timer others;
+        private final Counter slow;
+
+        private Meters(MeterRegistry meterRegistry) {
+            this.selects = timer(meterRegistry, "select");
+            this.inserts = timer(meterRegistry, "insert");
+            this.updates = timer(meterRegistry, "update");
+            this.deletes = timer(meterRegistry, "delete");
+            this.others = timer(meterRegistry, "other");
+            this.slow = Counter.builder("sql.slow")
+                    .description("Statements slower than sql.slow-query-threshold-ms")
+                    .register(meterRegistry);
+        }
+
+        private static Timer timer(MeterRegistry meterRegistry, String type) {
+            return Timer.builder("sql.statements")
+                    .description("JDBC statement execution time")
+                    .tag("type", type)
+                    .register(meterRegistry);
+        }
+
+        private Timer timerFor(String sql) {
+            String head = sql.stripLeading();
+            if (head.length() > 6) {
+                head = head.substring(0, 6);
+            }
+            switch (head.toLowerCase(Locale.ROOT)) {
+                case "select": return selects;
+                case "insert": return inserts;
+                case "update": return updates;
+                case "delete": return deletes;
+                default: return others;
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.tq.staybooking.config.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+/**
+ * Bounded cache in front of the JDBC UserDetailsService, used only by JwtAuthenticationFilter.
+ * Login (AuthenticationManager) still goes to the DB, so password checks always see fresh data.
+ *
+ * Cached entries carry no password. Nothing in this app disables a user or changes a role: both happen
+ * straight in the users / authority tables, so the TTL is what bounds how long an instance keeps
+ * letting a disabled user in or serving an old role (default 30s). evict(username) only covers this instance
+ * and is called on logout everywhere; other instances pick the change up when their entry expires.
+ * An operator who needs it immediate should also revoke the user's tokens (TokenRevocationService.revokeUser).
+ */
+@Component
+public class UserDetailsCache {
+    private UserDetailsService userDetailsService;
+    private Cache<String, UserDetails> users;
+    // 缓存没命中时的查询放在只读事务里：配置了 replica 时走副本
+    private TransactionTemplate readOnlyTransaction;
+
+    @Autowired
+    public UserDetailsCache(UserDetailsService userDetailsService,
+                            @Value("${security.user-cache.maximum-size:10000}") long maximumSize,
+                            @Value("${security.user-cache.ttl:30s}") Duration ttl,
+                            MeterRegistry meterRegistry,
+                            PlatformTransactionManager transactionManager) {
+        this.userDetailsService = userDetailsService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "security.user-details");
+    }
+
+    public UserDetails loadUserByUsername(String username) {
+        return users.get(username, name -> {
+            UserDetails loaded = readOnlyTransaction.execute(status -> userDetailsService.loadUserByUsername(name));
+            // 缓存里不留密码 hash，filter 只需要 username / enabled / authorities
+            return User.withUserDetails(loaded).password("").build();
+        });
+    }
+
+    public void evict(String username) {
+        users.invalidate(username);
+    }
+}
@@ -5,10 +5,14 @@ import com.tq.staybooking.model.User;
 import com.tq.staybooking.model.UserRole;
 import com.tq.staybooking.service.AuthenticationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
+
 /**
  * 1. Go to com.laioffer.staybooking.controller package and create a new class AuthenticationController.
  * 2. Add AuthenticationService as a private field and implement two separate authentication APIs for host and guest.
@@ -23,12 +27,23 @@ public class AuthenticationController {
     }
 
     @PostMapping("/authenticate/guest")
-    public Token authenticateGuest(@RequestBody User user){
-        return authenticationService.authenticate(user, UserRole.ROLE_GUEST);
+    public Token authenticateGuest(@RequestBody User user, HttpServletRequest request){
+        return authenticationService.authenticate(user, UserRole.ROLE_GUEST, request.getRemoteAddr());
     }
 
     @PostMapping("/authenticate/host")
-    public Token authenticateHost(@RequestBody User user){
-        return authenticationService.authenticate(user, UserRole.ROLE_HOST);
+    public Token authenticateHost(@RequestBody User user, HttpServletRequest request){
+        return authenticationService.authenticate(user, UserRole.ROLE_HOST, request.getRemoteAddr());
+    }
+
+    // 让当前这个 token 失效；/logout/all 让这个用户之前签发的所有 token 都失效
+    @PostMapping("/logout")
+    public void logout(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization){
+        authenticationService.logout(authorization, false);
+    }
+
+    @PostMapping("/logout/all")
+    public void logoutEverywhere(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization){
+        authenticationService.logout(authorization, true);
     }
 }
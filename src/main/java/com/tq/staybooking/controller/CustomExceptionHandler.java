@@ -1,12 +1,17 @@
 package com.tq.staybooking.controller;
 
 import com.tq.staybooking.exception.*;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * As you may wonder,
  * how does the controller handle the UserAlreadyExist exception here?
@@ -40,60 +45,104 @@ import org.springframework.web.context.request.WebRequest;
  */
 @ControllerAdvice
 public class CustomExceptionHandler{
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
+    // 错误信息都是纯文本，Content-Type 写死。不写的话按 Accept 协商：JSON 的请求拿到一个标成 application/json 的裸字符串，
+    // Smile / CBOR 的请求拿到被编码成二进制的一句话
+    private static ResponseEntity.BodyBuilder text(HttpStatus status) {
+        return ResponseEntity.status(status).contentType(TEXT_PLAIN_UTF8);
+    }
 
     @ExceptionHandler(UserAlreadyExistException.class)
     public final ResponseEntity<String> handlerUserAlreadyExistExceptions(Exception ex, WebRequest request){
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+        return text(HttpStatus.CONFLICT).body(ex.getMessage());
     }
 
     @ExceptionHandler(UserNotExistException.class)
     public final ResponseEntity<String> handleUserNotExistExceptions(Exception ex, WebRequest request){
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.UNAUTHORIZED);
+        return text(HttpStatus.UNAUTHORIZED).body(ex.getMessage());
     }
 
     @ExceptionHandler(StayNotExistException.class)
     public final ResponseEntity<String> handleStayNotExistExceptions(Exception ex, WebRequest request){
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+        return text(HttpStatus.NOT_FOUND).body(ex.getMessage());
     }
 
     @ExceptionHandler(GCSUploadException.class)
     public final ResponseEntity<String> handleGCSUploadExceptions(Exception ex, WebRequest request){
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        return text(HttpStatus.INTERNAL_SERVER_ERROR).body(ex.getMessage());
     }
 
     @ExceptionHandler(InvalidSearchDateException.class)
     public final ResponseEntity<String> handleInvalidSearchDateException(Exception ex, WebRequest request){
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+        return text(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidSearchAreaException.class)
+    public final ResponseEntity<String> handleInvalidSearchAreaException(Exception ex, WebRequest request){
+        return text(HttpStatus.BAD_REQUEST).body(ex.getMessage());
     }
 
     @ExceptionHandler(GeoCodingException.class)
     public final ResponseEntity<String> handleGeoCodingException(Exception ex, WebRequest request){
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        return text(HttpStatus.INTERNAL_SERVER_ERROR).body(ex.getMessage());
     }
 
     @ExceptionHandler(InvalidStayAddressException.class)
     public final ResponseEntity<String> handleInvalidStayAddressException(Exception ex, WebRequest resuest){
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+        return text(HttpStatus.BAD_REQUEST).body(ex.getMessage());
     }
 
     @ExceptionHandler(ReservationCollisionException.class)
     public final ResponseEntity<String> handleReservationCollisionException(Exception ex, WebRequest request){
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+        return text(HttpStatus.CONFLICT).body(ex.getMessage());
     }
 
     @ExceptionHandler(InvalidReservationDateException.class)
     public final ResponseEntity<String> handleInvalidReservationDateExceptions(Exception ex, WebRequest request) {
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+        return text(HttpStatus.BAD_REQUEST).body(ex.getMessage());
     }
 
     @ExceptionHandler(ReservationNotFoundException.class)
     public final ResponseEntity<String> handleReservationNotFoundExceptions(Exception ex, WebRequest request) {
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+        return text(HttpStatus.NOT_FOUND).body(ex.getMessage());
     }
 
     @ExceptionHandler(StayDeleteException.class)
     public final ResponseEntity<String> handleStayDeleteExceptions(Exception ex, WebRequest request) {
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+        return text(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(LoginOverloadedException.class)
+    public final ResponseEntity<String> handleLoginOverloadedExceptions(Exception ex, WebRequest request) {
+        return text(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(ProvisioningAccessDeniedException.class)
+    public final ResponseEntity<String> handleProvisioningAccessDeniedExceptions(Exception ex, WebRequest request) {
+        return text(HttpStatus.FORBIDDEN).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidProvisioningRequestException.class)
+    public final ResponseEntity<String> handleInvalidProvisioningRequestExceptions(Exception ex, WebRequest request) {
+        return text(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(LoginThrottledException.class)
+    public final ResponseEntity<String> handleLoginThrottledExceptions(Exception ex, WebRequest request) {
+        return text(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "60")
+                .body(ex.getMessage());
+    }
+
+    // 流式响应的线程池满了（见 WebMvcAsyncConfig）
+    @ExceptionHandler(TaskRejectedException.class)
+    public final ResponseEntity<String> handleTaskRejectedExceptions(Exception ex, WebRequest request) {
+        return text(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Server is busy, try again later");
     }
 
 }
@@ -0,0 +1,47 @@
+package com.tq.staybooking.controller;
+
+import com.tq.staybooking.exception.ProvisioningAccessDeniedException;
+import com.tq.staybooking.model.ProvisioningReport;
+import com.tq.staybooking.model.UserRole;
+import com.tq.staybooking.service.UserProvisioningService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Bulk user provisioning for partners: POST /provisioning/users?role=ROLE_HOST with a JSON array body.
+ * Not behind JWT (partners have no user account); guarded by the X-Provisioning-Key header instead.
+ * With no provisioning.api-key configured the endpoint always answers 403.
+ */
+@RestController
+public class ProvisioningController {
+    private UserProvisioningService userProvisioningService;
+    private byte[] apiKey;
+
+    @Autowired
+    public ProvisioningController(UserProvisioningService userProvisioningService,
+                                  @Value("${provisioning.api-key:}") String apiKey){
+        this.userProvisioningService = userProvisioningService;
+        this.apiKey = apiKey.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // 不用 @RequestBody：直接读 request 的 InputStream，边读边写库
+    @PostMapping("/provisioning/users")
+    public ProvisioningReport provisionUsers(@RequestHeader(value = "X-Provisioning-Key", required = false) String key,
+                                             @RequestParam(name = "role", defaultValue = "ROLE_GUEST") UserRole role,
+                                             HttpServletRequest request) throws IOException {
+        // 常量时间比较，不泄露 key 前缀对了几位
+        if (apiKey.length == 0 || key == null || !MessageDigest.isEqual(apiKey, key.getBytes(StandardCharsets.UTF_8))) {
+            throw new ProvisioningAccessDeniedException("Invalid provisioning key");
+        }
+        return userProvisioningService.provision(request.getInputStream(), role);
+    }
+}
@@ -9,27 +9,46 @@ package com.tq.staybooking.controller;
 import com.tq.staybooking.exception.InvalidReservationDateException;
 import com.tq.staybooking.model.Reservation;
 import com.tq.staybooking.model.User;
+import com.tq.staybooking.service.ListingVersionService;
 import com.tq.staybooking.service.ReservationService;
+import com.tq.staybooking.util.StreamingJson;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
-import java.util.List;
 
 @RestController
 public class ReservationController {
 
     private ReservationService reservationService;
 
+    private StreamingJson streamingJson;
+
+    private ListingVersionService listingVersionService;
+
     @Autowired
-    public  ReservationController(ReservationService reservationService) {
+    public  ReservationController(ReservationService reservationService, StreamingJson streamingJson,
+                                  ListingVersionService listingVersionService) {
         this.reservationService = reservationService;
+        this.streamingJson = streamingJson;
+        this.listingVersionService = listingVersionService;
     }
 
+    // 边查边写：JSON 数组（默认）或 NDJSON（Accept: application/x-ndjson），见 StreamingJson
     @GetMapping( value = "/reservations")
-    public List<Reservation> listReservation(Authentication authentication) {
-        return reservationService.listByGuest(authentication.getName());
+    // If-None-Match 和当前版本一致时直接 304，列表查询根本不会执行（见 ListingVersionService）
+    public ResponseEntity<StreamingResponseBody> listReservation(Authentication authentication,
+                                                                 @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                                 ServletWebRequest request) {
+        String guestName = authentication.getName();
+        String listing = ListingVersionService.reservations(guestName);
+        return streamingJson.conditionalResponse(request, listing, listingVersionService.current(listing),
+                () -> reservationService.streamByGuest(guestName), accept);
     }
 
     @PostMapping("/reservations")
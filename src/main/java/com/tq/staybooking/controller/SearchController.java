@@ -1,12 +1,17 @@
 package com.tq.staybooking.controller;
 
 import com.tq.staybooking.exception.InvalidSearchDateException;
-import com.tq.staybooking.model.Stay;
+import com.tq.staybooking.model.GeoCluster;
 import com.tq.staybooking.service.SearchService;
+import com.tq.staybooking.util.StreamingJson;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -20,28 +25,68 @@ import java.util.List;
 @RestController
 public class SearchController {
     private SearchService searchService;
+    private StreamingJson streamingJson;
 
     @Autowired
-    public SearchController(SearchService searchService){
+    public SearchController(SearchService searchService, StreamingJson streamingJson){
         this.searchService = searchService;
+        this.streamingJson = streamingJson;
     }
 
     @GetMapping(value = "/search")
-    public List<Stay> searchStays(
+    public ResponseEntity<StreamingResponseBody> searchStays(
             @RequestParam(name = "guest_number") int guestNumber,
             @RequestParam(name = "checkin_date") String start,
             @RequestParam(name = "checkout_date") String end,
             @RequestParam(name = "lat") double lat,
             @RequestParam(name = "lon") double lon,
-            @RequestParam(name = "distance", required = false) String distance){
+            @RequestParam(name = "distance", required = false) String distance,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept){
 
-        LocalDate checkinDate = LocalDate.parse(start, DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-        LocalDate checkoutDate = LocalDate.parse(end, DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        LocalDate checkinDate = parseDate(start);
+        LocalDate checkoutDate = parseDate(end);
+        checkDates(checkinDate, checkoutDate);
+        // 地理 + 日期过滤在这里就做完了，stay 按块加载，边查边写（JSON 数组或 NDJSON，见 StreamingJson）
+        return streamingJson.response(searchService.streamSearch(guestNumber, checkinDate, checkoutDate, lat, lon, distance), accept);
+    }
+
+    // 地图：当前可视范围（bounding box）里的 stay，过滤条件和 /search 一样
+    @GetMapping(value = "/search/viewport")
+    public ResponseEntity<StreamingResponseBody> searchViewport(
+            @RequestParam(name = "guest_number") int guestNumber,
+            @RequestParam(name = "checkin_date") String start,
+            @RequestParam(name = "checkout_date") String end,
+            @RequestParam(name = "top") double top,
+            @RequestParam(name = "left") double left,
+            @RequestParam(name = "bottom") double bottom,
+            @RequestParam(name = "right") double right,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept){
+
+        LocalDate checkinDate = parseDate(start);
+        LocalDate checkoutDate = parseDate(end);
+        checkDates(checkinDate, checkoutDate);
+        return streamingJson.response(searchService.streamViewport(guestNumber, checkinDate, checkoutDate, top, left, bottom, right), accept);
+    }
+
+    // 地图缩小之后：不要几万个 stay id，只要每个格子一个 pin（数量 + 中心点），全部在 ES 里算完
+    @GetMapping(value = "/search/clusters")
+    public List<GeoCluster> searchClusters(
+            @RequestParam(name = "top") double top,
+            @RequestParam(name = "left") double left,
+            @RequestParam(name = "bottom") double bottom,
+            @RequestParam(name = "right") double right,
+            @RequestParam(name = "zoom") int zoom){
+        return searchService.clusters(top, left, bottom, right, zoom);
+    }
+
+    private static LocalDate parseDate(String date){
+        return LocalDate.parse(date, DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+    }
 
+    private static void checkDates(LocalDate checkinDate, LocalDate checkoutDate){
         if (checkinDate.equals(checkoutDate) || checkinDate.isAfter(checkoutDate) || checkinDate.isBefore(LocalDate.now())){
             throw new InvalidSearchDateException("Invalid date for search");
         }
-        return searchService.search(guestNumber, checkinDate, checkoutDate, lat, lon, distance);
     }
 }
 /**
@@ -3,23 +3,23 @@ package com.tq.staybooking.controller;
 import com.tq.staybooking.model.Reservation;
 import com.tq.staybooking.model.Stay;
 import com.tq.staybooking.model.User;
+import com.tq.staybooking.service.ListingVersionService;
 import com.tq.staybooking.service.ReservationService;
 import com.tq.staybooking.service.StayService;
 //import jakarta.servlet.ServletException;
 //import jakarta.servlet.http.HttpServletRequest;
 //import jakarta.servlet.http.Part;
-import javax.servlet.ServletException;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.Part;
-
 import org.springframework.beans.factory.annotation.Autowired;
+import com.tq.staybooking.util.StreamingJson;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.IOException;
-import java.util.List;
 
 /**
  * 1. Add the StayService as a private field and create the constructor.
@@ -38,10 +38,17 @@ public class StayController {
 
     private ReservationService reservationService;
 
+    private StreamingJson streamingJson;
+
+    private ListingVersionService listingVersionService;
+
     @Autowired
-    public StayController(StayService stayService,  ReservationService reservationService) {
+    public StayController(StayService stayService,  ReservationService reservationService, StreamingJson streamingJson,
+                          ListingVersionService listingVersionService) {
         this.stayService = stayService;
         this.reservationService = reservationService;
+        this.streamingJson = streamingJson;
+        this.listingVersionService = listingVersionService;
     }
 
 //    @GetMapping(value ="/stays")
@@ -72,9 +79,16 @@ public class StayController {
 
     @GetMapping("/stays")
 //    @PreAuthorize("hasRole('HOST')")
-    public List<Stay> listStays(Authentication authentication) {
+    public ResponseEntity<StreamingResponseBody> listStays(Authentication authentication,
+                                                           @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                           ServletWebRequest request) {
         String hostName = authentication.getName();
-        return stayService.listByUser(hostName);
+        // 边查边写：JSON 数组（默认）或 NDJSON（Accept: application/x-ndjson），见 StreamingJson
+        // If-None-Match 和当前版本一致时直接 304，列表查询根本不会执行
+        String listing = ListingVersionService.stays(hostName);
+        long version = listingVersionService.current(listing);
+        return streamingJson.conditionalResponse(request, listing, version,
+                () -> stayService.streamByUser(hostName, version), accept);
     }
     // 教案 用的Principle 不是 Authentication
 //    @GetMapping(value = "/stays")
@@ -129,14 +143,9 @@ public class StayController {
             @RequestParam("description") String description,
             @RequestParam("guest_number") int guestNumber,
             @RequestPart("images") MultipartFile[] images,
-            Authentication authentication, HttpServletRequest request) throws IOException, ServletException{
+            Authentication authentication) {
         String hostName = authentication.getName();
-        //==============debug=========================================
-        // 方法中 HttpServletRequest request是不用加的参数 但是为了debug用
-        System.out.println(">>> Content-Type = " + request.getContentType());
-        for (Part p : request.getParts()) {
-            System.out.println(">>> part name=" + p.getName() + ", size=" + p.getSize());
-        }
+        // 之前为了 debug 把每个 multipart part 都 println 出来，现在请求日志统一走 RequestLogger
 
         Stay stay = new Stay.Builder()
                 .setName(name)
@@ -169,8 +178,12 @@ public class StayController {
 //
 //}
     @GetMapping(value = "/stays/reservations/{stayId}")
-    public List<Reservation> listReservation(@PathVariable Long stayId){
-        return reservationService.listByStay(stayId);
+    public ResponseEntity<StreamingResponseBody> listReservation(@PathVariable Long stayId,
+                                                                 @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                                 ServletWebRequest request){
+        String listing = ListingVersionService.stayReservations(stayId);
+        return streamingJson.conditionalResponse(request, listing, listingVersionService.current(listing),
+                () -> reservationService.streamByStay(stayId), accept);
     }
 
 }
@@ -0,0 +1,11 @@
+package com.tq.staybooking.exception;
+
+/**
+ * Provisioning body that isn't a well-formed JSON array of user objects (mapped to 400).
+ * Chunks written before the error was found stay committed; the message says how far the request got.
+ */
+public class InvalidProvisioningRequestException extends RuntimeException{
+    public InvalidProvisioningRequestException(String message) {
+        super(message);
+    }
+}
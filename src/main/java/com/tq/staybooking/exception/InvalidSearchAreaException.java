@@ -0,0 +1,10 @@
+package com.tq.staybooking.exception;
+
+/**
+ * Viewport / cluster search with a bounding box or zoom level that doesn't make sense (mapped to 400).
+ */
+public class InvalidSearchAreaException extends RuntimeException{
+    public InvalidSearchAreaException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.tq.staybooking.exception;
+
+/**
+ * Thrown when the password hashing pool is full (or too slow) to take another login / register request.
+ * Mapped to 429 Too Many Requests in CustomExceptionHandler.
+ */
+public class LoginOverloadedException extends RuntimeException{
+    public LoginOverloadedException(String message){
+        super(message);
+    }
+}
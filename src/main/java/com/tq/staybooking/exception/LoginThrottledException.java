@@ -0,0 +1,11 @@
+package com.tq.staybooking.exception;
+
+/**
+ * Thrown when a username or client IP has failed to log in too many times recently.
+ * Mapped to 429 Too Many Requests in CustomExceptionHandler.
+ */
+public class LoginThrottledException extends RuntimeException{
+    public LoginThrottledException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package com.tq.staybooking.exception;
+
+/**
+ * Thrown when a bulk provisioning call has no (or a wrong) provisioning API key.
+ */
+public class ProvisioningAccessDeniedException extends RuntimeException{
+    public ProvisioningAccessDeniedException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,162 @@
+package com.tq.staybooking.filter;
+
+import com.tq.staybooking.util.RequestCompletion;
+import com.tq.staybooking.util.VegasLimit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive concurrency limit for the whole API, right after Spring Security's authorization check
+ * (SecurityConfig adds it after FilterSecurityInterceptor): requests that end in 401 / 403 never take a slot,
+ * so an anonymous flood can't crowd out real users.
+ *
+ * The limit is not a fixed number: VegasLimit moves it up and down from the measured latency, so when MySQL slows
+ * down the limit drops and extra requests get an immediate 503 + Retry-After instead of all piling up on
+ * HikariPool.getConnection (which is what makes p99 explode for everyone).
+ *
+ * Requests are admitted by priority, each one may only use a share of the current limit:
+ *   CRITICAL  POST /reservations            100%   (shed last)
+ *   NORMAL    everything else                api.concurrency.normal-share    (0.9)
+ *   SHEDDABLE /search, /search/**           api.concurrency.sheddable-share (0.7) (shed first)
+ * /health and /actuator/** are never limited.
+ *
+ * Only requests that reached a controller and returned 2xx feed their latency to the limit, keyed by route
+ * (method + handler pattern); 304s, 4xx and errors thrown before a handler say nothing about load. 5xx always
+ * count as overload. A streamed list holds its slot, and is timed, until the body is fully written (RequestCompletion).
+ */
+@Component
+public class AdaptiveConcurrencyLimitFilter extends OncePerRequestFilter {
+    enum Priority { CRITICAL, NORMAL, SHEDDABLE }
+
+    private boolean enabled;
+    private VegasLimit limit;
+    private double normalShare;
+    private double sheddableShare;
+    private AtomicInteger inflight = new AtomicInteger();
+
+    private Counter rejectedCritical;
+    private Counter rejectedNormal;
+    private Counter rejectedSheddable;
+
+    @Autowired
+    public AdaptiveConcurrencyLimitFilter(@Value("${api.concurrency.enabled:true}") boolean enabled,
+                                          @Value("${api.concurrency.initial-limit:20}") int initialLimit,
+                                          @Value("${api.concurrency.min-limit:4}") int minLimit,
+                                          @Value("${api.concurrency.max-limit:200}") int maxLimit,
+                                          @Value("${api.concurrency.probe-interval:1000}") int probeInterval,
+                                          @Value("${api.concurrency.normal-share:0.9}") double normalShare,
+                                          @Value("${api.concurrency.sheddable-share:0.7}") double sheddableShare,
+                                          MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.limit = new VegasLimit(initialLimit, minLimit, maxLimit, probeInterval);
+        this.normalShare = normalShare;
+        this.sheddableShare = sheddableShare;
+
+        meterRegistry.gauge("api.concurrency.limit", limit, VegasLimit::getLimit);
+        meterRegistry.gauge("api.concurrency.inflight", inflight);
+        this.rejectedCritical = rejectedCounter(meterRegistry, Priority.CRITICAL);
+        this.rejectedNormal = rejectedCounter(meterRegistry, Priority.NORMAL);
+        this.rejectedSheddable = rejectedCounter(meterRegistry, Priority.SHEDDABLE);
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, Priority priority) {
+        return Counter.builder("api.concurrency.rejected")
+                .description("Requests shed by the adaptive concurrency limiter")
+                .tag("priority", priority.name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return !enabled || "OPTIONS".equalsIgnoreCase(request.getMethod())
+                || uri.equals("/health") || uri.startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Priority priority = priorityOf(request);
+        int current = inflight.incrementAndGet();
+        if (current > allowed(priority)) {
+            inflight.decrementAndGet();
+            reject(priority, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, response);
+            completed = true;
+        } finally {
+            // 流式的列表：controller 返回以后 body 还在 response-stream-* 线程上写，写完才算结束、才还 slot
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String route = pattern == null ? null : request.getMethod() + " " + pattern;
+            RequestCompletion.whenDone(request, response, !completed, (status, failed) -> {
+                inflight.decrementAndGet();
+                sample(route, status, failed, System.nanoTime() - start, current);
+            });
+        }
+    }
+
+    private void sample(String route, int status, boolean failed, long rttNanos, int inflightAtStart) {
+        // 5xx（比如拿不到 DB 连接超时）、超时或者直接抛出来的异常：当作过载信号
+        if (failed || status >= 500) {
+            limit.onSample(null, rttNanos, inflightAtStart, true);
+            return;
+        }
+        // 4xx 是客户端的问题，304 什么都没查，都不算；没走到 controller 的（没有 handler pattern）也不算
+        if (status < 200 || status >= 300 || route == null) {
+            return;
+        }
+        limit.onSample(route, rttNanos, inflightAtStart, false);
+    }
+
+    private int allowed(Priority priority) {
+        int currentLimit = limit.getLimit();
+        switch (priority) {
+            case CRITICAL: return currentLimit;
+            case SHEDDABLE: return Math.max(1, (int) (currentLimit * sheddableShare));
+            default: return Math.max(1, (int) (currentLimit * normalShare));
+        }
+    }
+
+    private static Priority priorityOf(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        if ("POST".equalsIgnoreCase(request.getMethod()) && uri.equals("/reservations")) {
+            return Priority.CRITICAL;
+        }
+        if (uri.equals("/search") || uri.startsWith("/search/")) {
+            return Priority.SHEDDABLE;
+        }
+        return Priority.NORMAL;
+    }
+
+    private void reject(Priority priority, HttpServletResponse response) throws IOException {
+        switch (priority) {
+            case CRITICAL: rejectedCritical.increment(); break;
+            case SHEDDABLE: rejectedSheddable.increment(); break;
+            default: rejectedNormal.increment();
+        }
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write("Server is busy, please retry later");
+    }
+}
@@ -0,0 +1,154 @@
+package com.tq.staybooking.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-user token bucket for /search (and /search/**), placed right after JwtAuthenticationFilter in SecurityConfig,
+ * so a scraper is turned away with 429 + Retry-After before it costs an ES query and two MySQL queries.
+ *
+ * search.rate-limit.per-second=5 / search.rate-limit.burst=10         (default for every user)
+ * search.rate-limit.role-overrides=ROLE_HOST=1:2                      (role=perSecond:burst, first match wins)
+ *
+ * Buckets live in a bounded Caffeine map keyed by username; idle buckets (full again anyway) expire after
+ * search.rate-limit.idle-timeout. Requests without a user pass through and are rejected by the security rules.
+ */
+@Component
+public class SearchRateLimitFilter extends OncePerRequestFilter {
+    private boolean enabled;
+    private Limit defaultLimit;
+    private Map<String, Limit> roleLimits = new LinkedHashMap<>();
+    private Cache<String, TokenBucket> buckets;
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    public SearchRateLimitFilter(@Value("${search.rate-limit.enabled:true}") boolean enabled,
+                                 @Value("${search.rate-limit.per-second:5}") double perSecond,
+                                 @Value("${search.rate-limit.burst:10}") double burst,
+                                 @Value("${search.rate-limit.role-overrides:}") String roleOverrides,
+                                 @Value("${search.rate-limit.idle-timeout:10m}") Duration idleTimeout,
+                                 @Value("${search.rate-limit.maximum-size:100000}") long maximumSize,
+                                 MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.defaultLimit = new Limit("default", perSecond, burst);
+        // "ROLE_HOST=1:2,ROLE_GUEST=5:10"
+        for (String entry : roleOverrides.split(",")) {
+            String[] pair = entry.trim().split("=");
+            if (pair.length == 2) {
+                String[] rate = pair[1].trim().split(":");
+                String role = pair[0].trim();
+                roleLimits.put(role, new Limit(role, Double.parseDouble(rate[0]), Double.parseDouble(rate.length > 1 ? rate[1] : rate[0])));
+            }
+        }
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(idleTimeout)
+                .recordStats()
+                .build();
+        this.meterRegistry = meterRegistry;
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, "search.rate-limit.buckets");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return !enabled || !(uri.equals("/search") || uri.startsWith("/search/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Limit limit = limitFor(auth);
+        TokenBucket bucket = buckets.get(auth.getName(), name -> new TokenBucket(limit));
+        long waitNanos = bucket.tryConsume(System.nanoTime());
+        if (waitNanos > 0) {
+            meterRegistry.counter("search.rate-limit.rejected", "limit", limit.name).increment();
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (long) Math.ceil(waitNanos / 1e9))));
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write("Too many search requests, please retry later");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private Limit limitFor(Authentication auth) {
+        if (!roleLimits.isEmpty()) {
+            for (GrantedAuthority authority : auth.getAuthorities()) {
+                Limit limit = roleLimits.get(authority.getAuthority());
+                if (limit != null) {
+                    return limit;
+                }
+            }
+        }
+        return defaultLimit;
+    }
+
+    private static class Limit {
+        private final String name;
+        private final double tokensPerNano;
+        private final double burst;
+
+        private Limit(String name, double perSecond, double burst) {
+            this.name = name;
+            this.tokensPerNano = perSecond / 1_000_000_000d;
+            this.burst = Math.max(1, burst);
+        }
+    }
+
+    // 每个用户一个桶；只有同一个用户的并发请求才会抢同一把锁
+    private static class TokenBucket {
+        private final Limit limit;
+        private double tokens;
+        private long lastRefillNanos;
+
+        private TokenBucket(Limit limit) {
+            this.limit = limit;
+            this.tokens = limit.burst;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        /**
+         * @return 0 if a token was taken, otherwise how long until the next token (nanos)
+         */
+        private synchronized long tryConsume(long now) {
+            tokens = Math.min(limit.burst, tokens + (now - lastRefillNanos) * limit.tokensPerNano);
+            lastRefillNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            if (limit.tokensPerNano <= 0) {
+                return Long.MAX_VALUE / 2;
+            }
+            return (long) Math.ceil((1 - tokens) / limit.tokensPerNano);
+        }
+    }
+}
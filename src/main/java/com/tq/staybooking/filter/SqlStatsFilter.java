@@ -0,0 +1,104 @@
+package com.tq.staybooking.filter;
+
+import com.tq.staybooking.util.RequestCompletion;
+import com.tq.staybooking.util.SqlRequestStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Collects the JDBC statements of one request (see SqlRequestStats) and, when the request is done
+ * (for a streamed list: when the body has been written, statements run on the response-stream-* thread included):
+ * - records sql.statements.per-request
+ * - if the same SQL ran sql.n-plus-one-threshold times or more, logs it as a likely N+1 and counts sql.n-plus-one
+ *
+ * Registered right after the concurrency limiter, so statements run by Spring Security (user lookups) are included.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+public class SqlStatsFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger("staybooking.sql.n-plus-one");
+
+    private boolean enabled;
+    private int nPlusOneThreshold;
+    private DistributionSummary statementsPerRequest;
+    private Counter nPlusOne;
+
+    @Autowired
+    public SqlStatsFilter(@Value("${sql.instrumentation.enabled:true}") boolean enabled,
+                          @Value("${sql.n-plus-one-threshold:5}") int nPlusOneThreshold,
+                          MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.statementsPerRequest = DistributionSummary.builder("sql.statements.per-request")
+                .description("JDBC statements executed per HTTP request")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.nPlusOne = Counter.builder("sql.n-plus-one")
+                .description("Requests that ran the same statement at least sql.n-plus-one-threshold times")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        SqlRequestStats stats = SqlRequestStats.start();
+        // 流式的列表在 response-stream-* 线程上查库（ThreadLocal 跟不过去）：在那个线程上绑定同一份 stats
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(SqlStatsFilter.class.getName(),
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void preProcess(NativeWebRequest webRequest, Callable<T> task) {
+                        SqlRequestStats.bind(stats);
+                    }
+
+                    @Override
+                    public <T> void postProcess(NativeWebRequest webRequest, Callable<T> task, Object result) {
+                        SqlRequestStats.finish();
+                    }
+                });
+        String method = request.getMethod();
+        String uri = request.getRequestURI();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlRequestStats.finish();
+            // 异步的请求要等 body 写完才有完整的语句数，N+1 也在那时候判断
+            RequestCompletion.whenDone(request, response, false, (status, failed) -> report(method, uri, stats));
+        }
+    }
+
+    private void report(String method, String uri, SqlRequestStats stats) {
+        statementsPerRequest.record(stats.getStatements());
+        Map.Entry<String, Integer> repeated = stats.mostRepeated(nPlusOneThreshold);
+        if (repeated != null) {
+            nPlusOne.increment();
+            logger.warn("Possible N+1: {} {} ran the same statement {} times ({} statements, {} ms in total): {}",
+                    method, uri, repeated.getValue(), stats.getStatements(), stats.getElapsedMillis(), repeated.getKey());
+        }
+    }
+}
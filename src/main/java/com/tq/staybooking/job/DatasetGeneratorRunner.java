@@ -0,0 +1,47 @@
+package com.tq.staybooking.job;
+
+import com.tq.staybooking.service.DatasetGeneratorService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.WebApplicationContext;
+
+/**
+ * Command-line entry for DatasetGeneratorService.
+ * Only created when datagen.scale is set, e.g.
+ *   java -jar app.jar --datagen.scale=12 --spring.main.web-application-type=none
+ *       --spring.datasource.hikari.data-source-properties.rewriteBatchedStatements=true
+ * (scale 12 = 120k stays, ~10M stay_reserved_date rows; rewriteBatchedStatements makes MySQL batches real multi-row inserts)
+ *
+ * Without a web server the process exits when generation is done (otherwise the scheduled jobs keep it alive).
+ * With the loadtest profile, leave the web server on: the data goes into the in-memory H2 / location stand-ins
+ * and the app keeps serving it to LoadGenerator.
+ */
+@Component
+@ConditionalOnProperty(name = "datagen.scale")
+public class DatasetGeneratorRunner implements ApplicationRunner {
+    private DatasetGeneratorService datasetGeneratorService;
+    private ApplicationContext applicationContext;
+
+    @Value("${datagen.scale}")
+    private double scale;
+
+    @Autowired
+    public DatasetGeneratorRunner(DatasetGeneratorService datasetGeneratorService, ApplicationContext applicationContext) {
+        this.datasetGeneratorService = datasetGeneratorService;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        datasetGeneratorService.generate(scale);
+        if (!(applicationContext instanceof WebApplicationContext)) {
+            System.exit(SpringApplication.exit(applicationContext));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.tq.staybooking.job;
+
+import com.tq.staybooking.service.LocationReindexService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Command-line entry for LocationReindexService.
+ * Only created when reindex.mode is set, e.g.
+ *   java -jar app.jar --reindex.mode=reconcile
+ *   java -jar app.jar --reindex.mode=rebuild --reindex.slices=8
+ * Either mode also fills in stay.lat / lon for stays created before V5 (run it once after that migration).
+ */
+@Component
+@ConditionalOnProperty(name = "reindex.mode")
+@Profile("!loadtest")
+public class LocationReindexRunner implements ApplicationRunner {
+    private LocationReindexService locationReindexService;
+
+    @Value("${reindex.mode}")
+    private String mode;
+
+    @Autowired
+    public LocationReindexRunner(LocationReindexService locationReindexService) {
+        this.locationReindexService = locationReindexService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if ("rebuild".equalsIgnoreCase(mode)) {
+            locationReindexService.rebuild();
+        } else if ("reconcile".equalsIgnoreCase(mode)) {
+            locationReindexService.reconcile();
+        } else {
+            throw new IllegalArgumentException("Unknown reindex.mode: " + mode + " (expected reconcile or rebuild)");
+        }
+    }
+}
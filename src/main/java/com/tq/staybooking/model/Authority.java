@@ -1,6 +1,10 @@
 package com.tq.staybooking.model;
 
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 
 import javax.persistence.Id;
@@ -18,6 +22,8 @@ import java.io.Serializable;
 
 @Entity
 @Table(name = "authority")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Authority implements Serializable {
     private static final long serialVersionUID = 1L;
 
@@ -0,0 +1,37 @@
+package com.tq.staybooking.model;
+
+/**
+ * One aggregated map pin for /search/clusters: a geotile cell ("zoom/x/y"), how many stays are in it,
+ * and the centroid of those stays (so the pin sits where the stays are, not in the middle of the tile).
+ *
+ * Like Location, a read-only value object: built once from the search result, never persisted.
+ */
+public class GeoCluster {
+    private String key;
+    private long count;
+    private double lat;
+    private double lon;
+
+    public GeoCluster(String key, long count, double lat, double lon) {
+        this.key = key;
+        this.count = count;
+        this.lat = lat;
+        this.lon = lon;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getLat() {
+        return lat;
+    }
+
+    public double getLon() {
+        return lon;
+    }
+}
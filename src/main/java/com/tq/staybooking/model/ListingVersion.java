@@ -0,0 +1,38 @@
+package com.tq.staybooking.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+
+/**
+ * Change counter of one listing, e.g. "stays:alice" (a host's stays) or "reservations:bob" (a guest's reservations).
+ * Only ever incremented (CustomListingVersionRepository.increment); a missing row means version 0.
+ */
+@Entity
+@Table(name = "listing_version")
+public class ListingVersion implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private String listing;
+
+    @Column(nullable = false)
+    private long version;
+
+    public ListingVersion(){}
+
+    public ListingVersion(String listing, long version){
+        this.listing = listing;
+        this.version = version;
+    }
+
+    public String getListing() {
+        return listing;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -44,6 +44,10 @@ public class Location {
     public Long getId(){
         return id;
     }
+
+    public GeoPoint getGeoPoint(){
+        return geoPoint;
+    }
     // 为什么 不需要 setter？
 
 
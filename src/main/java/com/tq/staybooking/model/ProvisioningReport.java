@@ -0,0 +1,27 @@
+package com.tq.staybooking.model;
+
+/**
+ * Result of one bulk provisioning call: how many users were in the stream,
+ * how many were created, and how many were skipped because the username already existed.
+ */
+public class ProvisioningReport {
+    private final long received;
+    private final long created;
+
+    public ProvisioningReport(long received, long created){
+        this.received = received;
+        this.created = created;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getSkipped() {
+        return received - created;
+    }
+}
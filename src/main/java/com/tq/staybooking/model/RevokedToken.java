@@ -0,0 +1,49 @@
+package com.tq.staybooking.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * One revoked JWT (id = the token's jti) or one revoked user (id = "u:" + username,
+ * meaning every token issued to that user up to revoked_at is dead).
+ *
+ * expires_at is when the row stops mattering (the token would have expired anyway), so old rows can be purged.
+ */
+@Entity
+@Table(name = "revoked_token")
+public class RevokedToken implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private String id;
+
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public RevokedToken(){}
+
+    public RevokedToken(String id, Instant revokedAt, Instant expiresAt){
+        this.id = id;
+        this.revokedAt = revokedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Instant getRevokedAt() {
+        return revokedAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -4,6 +4,9 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 //import tools.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 
 import javax.persistence.*;
@@ -28,6 +31,9 @@ import java.util.List;
 
 @Entity
 @Table(name = "stay")
+// 二级缓存：region 大小见 HibernateCacheConfig
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @JsonDeserialize(builder = Stay.Builder.class)
 public class Stay implements Serializable {
 
@@ -47,6 +53,14 @@ public class Stay implements Serializable {
     // @JoinColumn(name = "user_id") 的意思就是 在 stay 表中有一列叫 user_id，这列作为外键，存的是 users.username 的值(users表中的主键)。
     private User host;   // 外毽 -> user表
 
+    // 地址的经纬度也在 MySQL 存一份（V5，MySQL 上有 SPATIAL 索引）：Elasticsearch 挂了 /search 就查这两列，见 CustomStayRepository
+    // 不返回给前端，和以前的 JSON 一样
+    @JsonIgnore
+    private Double lat;
+
+    @JsonIgnore
+    private Double lon;
+
     @JsonIgnore
     @OneToMany(mappedBy = "stay", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     // mappedBy = "stay" -> 对方持有外键的 Java 字段名
@@ -54,7 +68,12 @@ public class Stay implements Serializable {
         //外键在对方那个字段（叫 stay）那里”
     private List<StayReservedDate> reservedDates;  //和 stay_reserved_date表对应
 
-    @OneToMany(mappedBy ="stay", cascade = CascadeType.ALL, fetch=FetchType.EAGER)
+    // 不再 EAGER：EAGER 的 @OneToMany 会让每个 stay 多一条 select stay_image（N+1）
+    // 列表查询在 StayRepository / ReservationRepository 里用 join fetch 一次查出来；
+    // 其他路径（findById、findAllById ...）靠 @BatchSize 一次加载一批 stay 的图片
+    @OneToMany(mappedBy ="stay", cascade = CascadeType.ALL, fetch=FetchType.LAZY)
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE) // 缓存的是每个 stay 的 image id 列表，image 本身在 StayImage 的 region
     private List<StayImage> images;
 
     public Stay() {}
@@ -95,6 +114,20 @@ public class Stay implements Serializable {
         return images;
     }
 
+    public Double getLat(){
+        return lat;
+    }
+
+    public Double getLon(){
+        return lon;
+    }
+
+    public Stay setLocation(double lat, double lon){
+        this.lat = lat;
+        this.lon = lon;
+        return this;
+    }
+
     public Stay setImages(List<StayImage> images){
         this.images = images;
         return this;
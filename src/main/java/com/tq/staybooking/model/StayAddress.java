@@ -0,0 +1,13 @@
+package com.tq.staybooking.model;
+
+/**
+ * Closed projection of a Stay row (id, address and coordinates only).
+ * Used by the reindex job to stream stays from MySQL without loading images or host.
+ */
+public interface StayAddress {
+    Long getId();
+    String getAddress();
+    // NULL for stays created before V5 until the reindex job backfills them
+    Double getLat();
+    Double getLon();
+}
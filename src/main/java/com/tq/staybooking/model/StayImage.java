@@ -1,6 +1,10 @@
 package com.tq.staybooking.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 
 import javax.persistence.JoinColumn;
@@ -26,6 +30,8 @@ import java.io.Serializable;
 
 @Entity
 @Table(name = "stay_image")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class StayImage implements Serializable {
     private static final long serialVersionUID = 1L;
 
@@ -2,6 +2,10 @@ package com.tq.staybooking.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 
 import javax.persistence.Id;
@@ -36,6 +40,8 @@ import java.io.Serializable;
 //✅ 原因 2：工程规范通常使用复数表示集合
 //✅ 原因 3：避免与系统内部表冲突: 很多系统里都有内建 user 表
 @Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 
 @JsonDeserialize(builder = User.Builder.class)
 
@@ -0,0 +1,14 @@
+package com.tq.staybooking.repository;
+
+/**
+ * Atomic counter bump in plain JDBC (no read-before-write, no lost updates between concurrent writers).
+ * Implemented in CustomListingVersionRepositoryImpl, same pattern as CustomUserRepository.
+ */
+public interface CustomListingVersionRepository {
+
+    /**
+     * Increments the listing's version, creating the row (version 1) on its first write.
+     * Call it inside the transaction of the write it describes.
+     */
+    void increment(String listing);
+}
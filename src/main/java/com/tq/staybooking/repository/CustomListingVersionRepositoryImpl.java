@@ -0,0 +1,26 @@
+package com.tq.staybooking.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class CustomListingVersionRepositoryImpl implements CustomListingVersionRepository {
+    private static final String INCREMENT_VERSION = "UPDATE listing_version SET version = version + 1 WHERE listing = ?";
+    private static final String UPSERT_VERSION =
+            "INSERT INTO listing_version (listing, version) VALUES (?, 1) ON DUPLICATE KEY UPDATE version = version + 1";
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public CustomListingVersionRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void increment(String listing) {
+        // 行已经在了（几乎所有情况）：普通 UPDATE 只锁这一行；upsert 遇到重复 key 会多拿 gap / next-key 锁，并发时容易死锁
+        if (jdbcTemplate.update(INCREMENT_VERSION, listing) == 0) {
+            // 第一次写：两个事务同时来也没关系，后到的走 ON DUPLICATE KEY UPDATE
+            jdbcTemplate.update(UPSERT_VERSION, listing);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.tq.staybooking.repository;
 
+import com.tq.staybooking.model.GeoCluster;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,4 +18,16 @@ import java.util.List;
 
 public interface CustomLocationRepository{
     List<Long> searchByDistance(double lat, double lon, String distance);
+
+    /**
+     * Stay ids inside the map viewport, at most maxResults of them.
+     * left > right means the box crosses the antimeridian.
+     */
+    List<Long> searchByBoundingBox(double top, double left, double bottom, double right, int maxResults);
+
+    /**
+     * The same viewport aggregated into geotile cells at the given precision (0-29, like a map zoom level),
+     * biggest cells first, at most maxClusters of them. No stay ids come back.
+     */
+    List<GeoCluster> clusterByBoundingBox(double top, double left, double bottom, double right, int precision, int maxClusters);
 }
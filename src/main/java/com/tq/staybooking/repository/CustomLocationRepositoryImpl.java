@@ -4,22 +4,36 @@ package com.tq.staybooking.repository;
  * 1. Under the same com.tq.staybooking.repository package, create a new interface called StayReservationDateRepository.
  */
 
+import com.tq.staybooking.model.GeoCluster;
 import com.tq.staybooking.model.Location;
 import org.elasticsearch.common.unit.DistanceUnit;
+import org.elasticsearch.index.query.GeoBoundingBoxQueryBuilder;
 import org.elasticsearch.index.query.GeoDistanceQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoGrid;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoGridAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.GeoCentroid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.ElasticsearchAggregations;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.stereotype.Repository;
+import org.springframework.context.annotation.Profile;
 
 import java.util.ArrayList;
 import java.util.List;
 
 @Repository
+@Profile("!loadtest") // needs a real Elasticsearch
 public class CustomLocationRepositoryImpl implements CustomLocationRepository{
     private final String DEFAULT_DISTANCE= "50";
+    private static final String CLUSTERS = "clusters";
+    private static final String CENTROID = "centroid";
     private ElasticsearchOperations elasticsearchOperations;
 
     @Autowired
@@ -45,6 +59,58 @@ public class CustomLocationRepositoryImpl implements CustomLocationRepository{
 
         return locationIDs;
     }
+
+    @Override
+    public List<Long> searchByBoundingBox(double top, double left, double bottom, double right, int maxResults) {
+        NativeSearchQueryBuilder queryBuilder = new NativeSearchQueryBuilder();
+        queryBuilder.withFilter(boundingBox(top, left, bottom, right));
+        queryBuilder.withMaxResults(maxResults);
+        // 只要 id，geoPoint 不用从 _source 里带回来
+        queryBuilder.withSourceFilter(new FetchSourceFilter(new String[]{"id"}, null));
+
+        SearchHits<Location> searchResult = elasticsearchOperations.search(queryBuilder.build(), Location.class);
+
+        List<Long> locationIDs = new ArrayList<>(searchResult.getSearchHits().size());
+        for (SearchHit<Location> hit: searchResult.getSearchHits()){
+            locationIDs.add(hit.getContent().getId());
+        }
+        return locationIDs;
+    }
+
+    @Override
+    public List<GeoCluster> clusterByBoundingBox(double top, double left, double bottom, double right, int precision, int maxClusters) {
+        // geotile_grid 按格子数文档，geo_centroid 算每个格子里 stay 的中心；一条 hit 都不返回（size 0）
+        GeoGridAggregationBuilder tiles = AggregationBuilders.geotileGrid(CLUSTERS)
+                .field("geoPoint")
+                .precision(precision)
+                .size(maxClusters)
+                .subAggregation(AggregationBuilders.geoCentroid(CENTROID).field("geoPoint"));
+
+        NativeSearchQueryBuilder queryBuilder = new NativeSearchQueryBuilder();
+        queryBuilder.withQuery(QueryBuilders.boolQuery().filter(boundingBox(top, left, bottom, right)));
+        queryBuilder.withAggregations(tiles);
+        queryBuilder.withMaxResults(0);
+
+        SearchHits<Location> searchResult = elasticsearchOperations.search(queryBuilder.build(), Location.class);
+
+        List<GeoCluster> clusters = new ArrayList<>();
+        if (searchResult.getAggregations() == null) {
+            return clusters;
+        }
+        Aggregations aggregations = ((ElasticsearchAggregations) searchResult.getAggregations()).aggregations();
+        GeoGrid grid = aggregations.get(CLUSTERS);
+        for (GeoGrid.Bucket bucket : grid.getBuckets()) {
+            GeoCentroid centroid = bucket.getAggregations().get(CENTROID);
+            clusters.add(new GeoCluster(bucket.getKeyAsString(), bucket.getDocCount(),
+                    centroid.centroid().getLat(), centroid.centroid().getLon()));
+        }
+        return clusters;
+    }
+
+    private static GeoBoundingBoxQueryBuilder boundingBox(double top, double left, double bottom, double right) {
+        // left > right（跨 180 度经线）ES 自己会处理
+        return new GeoBoundingBoxQueryBuilder("geoPoint").setCorners(top, left, bottom, right);
+    }
 }
 
 /**
@@ -0,0 +1,28 @@
+package com.tq.staybooking.repository;
+
+import org.springframework.data.elasticsearch.core.geo.GeoPoint;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Geo search on the stay table itself (lat / lon, SPATIAL index on MySQL): the fallback /search uses
+ * when Elasticsearch is slow or down, see LocationSearchService.
+ * Implemented in CustomStayRepositoryImpl, same pattern as CustomStayReservationDateRepository.
+ */
+public interface CustomStayRepository {
+
+    /**
+     * Same result as LocationRepository.searchByDistance: ids of the stays within distanceMeters of (lat, lon),
+     * nearest first, at most maxResults. Stays without coordinates (created before V5) are never returned.
+     */
+    List<Long> findIdsWithinDistance(double lat, double lon, double distanceMeters, int maxResults);
+
+    /**
+     * Backfill for stays created before V5: writes the given points into stay.lat / lon, only where they are still NULL
+     * (coordinates written by StayService.add are never overwritten). Used by LocationReindexService.
+     *
+     * @return how many stays got their coordinates
+     */
+    int fillMissingLocations(Map<Long, GeoPoint> points);
+}
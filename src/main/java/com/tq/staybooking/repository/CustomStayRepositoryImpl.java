@@ -0,0 +1,99 @@
+package com.tq.staybooking.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.geo.GeoPoint;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import java.sql.DatabaseMetaData;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class CustomStayRepositoryImpl implements CustomStayRepository {
+    // ST_Distance_Sphere 默认的地球半径（米），H2 上自己算的时候用同一个，两边结果一致
+    static final double EARTH_RADIUS_METERS = 6370986.0;
+    private static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180;
+
+    // MBRContains + 矩形：走 idx_stay_location（SPATIAL）先圈出候选，ST_Distance_Sphere 再精确过滤
+    // location 是 POINT(lon, lat)（V5 里的生成列），没有坐标的老数据在 (0, 0)，用 lat IS NOT NULL 排除
+    private static final String MYSQL_WITHIN_DISTANCE =
+            "SELECT id FROM stay"
+                    + " WHERE MBRContains(ST_MakeEnvelope(POINT(?, ?), POINT(?, ?)), location)"
+                    + " AND lat IS NOT NULL"
+                    + " AND ST_Distance_Sphere(location, POINT(?, ?)) <= ?"
+                    + " ORDER BY ST_Distance_Sphere(location, POINT(?, ?)) LIMIT ?";
+    // H2（loadtest、测试）没有空间类型：同一个矩形走 (lat, lon) 普通索引，距离用 haversine 算
+    private static final String PORTABLE_DISTANCE =
+            "2 * " + EARTH_RADIUS_METERS + " * ASIN(SQRT(LEAST(1, POWER(SIN(RADIANS(lat - ?) / 2), 2)"
+                    + " + COS(RADIANS(?)) * COS(RADIANS(lat)) * POWER(SIN(RADIANS(lon - ?) / 2), 2))))";
+    private static final String PORTABLE_WITHIN_DISTANCE =
+            "SELECT id FROM stay"
+                    + " WHERE lat BETWEEN ? AND ? AND lon BETWEEN ? AND ?"
+                    + " AND " + PORTABLE_DISTANCE + " <= ?"
+                    + " ORDER BY " + PORTABLE_DISTANCE + " LIMIT ?";
+
+    // location 是生成列，MySQL 自己跟着 lat / lon 变；两个库同一句
+    private static final String FILL_MISSING_LOCATION = "UPDATE stay SET lat = ?, lon = ? WHERE id = ? AND lat IS NULL";
+
+    private JdbcTemplate jdbcTemplate;
+    private boolean mysql;
+
+    @Autowired
+    public CustomStayRepositoryImpl(JdbcTemplate jdbcTemplate) throws MetaDataAccessException {
+        this.jdbcTemplate = jdbcTemplate;
+        // 启动时问一次就好；查询时再问会在事务外多借一个连接
+        String database = JdbcUtils.commonDatabaseName(
+                JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(), DatabaseMetaData::getDatabaseProductName));
+        this.mysql = "MySQL".equalsIgnoreCase(database);
+    }
+
+    @Override
+    public List<Long> findIdsWithinDistance(double lat, double lon, double distanceMeters, int maxResults) {
+        // 圆的外接矩形（度）；经度方向的一度越靠近两极越短
+        double latDelta = distanceMeters / METERS_PER_DEGREE;
+        double bottom = Math.max(-90, lat - latDelta);
+        double top = Math.min(90, lat + latDelta);
+        double left = -180;
+        double right = 180;
+        double cosLat = Math.cos(Math.toRadians(Math.max(Math.abs(bottom), Math.abs(top))));
+        if (cosLat > 0) {
+            double lonDelta = latDelta / cosLat;
+            // 跨 180 度经线或者圆比半个地球还大：经度不限，只靠纬度和距离过滤
+            if (lon - lonDelta >= -180 && lon + lonDelta <= 180) {
+                left = lon - lonDelta;
+                right = lon + lonDelta;
+            }
+        }
+
+        if (mysql) {
+            return jdbcTemplate.queryForList(MYSQL_WITHIN_DISTANCE, Long.class,
+                    left, bottom, right, top,
+                    lon, lat, distanceMeters,
+                    lon, lat, maxResults);
+        }
+        return jdbcTemplate.queryForList(PORTABLE_WITHIN_DISTANCE, Long.class,
+                bottom, top, left, right,
+                lat, lat, lon, distanceMeters,
+                lat, lat, lon, maxResults);
+    }
+
+    @Override
+    public int fillMissingLocations(Map<Long, GeoPoint> points) {
+        if (points.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> rows = new ArrayList<>(points.size());
+        points.forEach((id, point) -> rows.add(new Object[]{point.getLat(), point.getLon(), id}));
+        int filled = 0;
+        for (int count : jdbcTemplate.batchUpdate(FILL_MISSING_LOCATION, rows)) {
+            // rewriteBatchedStatements 打开时驱动只回 SUCCESS_NO_INFO，按写成了算
+            if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                filled++;
+            }
+        }
+        return filled;
+    }
+}
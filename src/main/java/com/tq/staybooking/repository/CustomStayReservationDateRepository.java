@@ -0,0 +1,33 @@
+package com.tq.staybooking.repository;
+
+import com.tq.staybooking.util.EpochDayRange;
+import com.tq.staybooking.util.LongHashSet;
+
+import java.util.List;
+
+/**
+ * Availability checks and reserved-date writes by epoch-day range, in plain JDBC:
+ * no StayReservedDate / StayReservedDateKey / LocalDate per night, and a single statement per call
+ * (one batch for inserts). Implemented in CustomStayReservationDateRepositoryImpl, same pattern as CustomUserRepository.
+ */
+public interface CustomStayReservationDateRepository {
+
+    /**
+     * @return the ids among stayIds that have at least one reserved night in the range
+     */
+    LongHashSet findReservedStayIds(List<Long> stayIds, EpochDayRange nights);
+
+    boolean isReserved(long stayId, EpochDayRange nights);
+
+    /**
+     * Inserts one stay_reserved_date row per night.
+     *
+     * @throws org.springframework.dao.DuplicateKeyException if one of the nights is already taken
+     */
+    void insertNights(long stayId, EpochDayRange nights);
+
+    /**
+     * @return how many rows were deleted
+     */
+    int deleteNights(long stayId, EpochDayRange nights);
+}
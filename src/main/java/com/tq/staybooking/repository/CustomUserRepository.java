@@ -0,0 +1,27 @@
+package com.tq.staybooking.repository;
+
+import com.tq.staybooking.model.User;
+
+import java.util.List;
+
+/**
+ * Plain JDBC inserts for registration: no read-before-write, the users primary key decides who wins.
+ * Implemented in CustomUserRepositoryImpl, same pattern as CustomLocationRepository.
+ */
+public interface CustomUserRepository {
+
+    /**
+     * Inserts the user and its authority row.
+     *
+     * @throws org.springframework.dao.DuplicateKeyException if the username is already taken
+     */
+    void insertWithAuthority(User user, String authority);
+
+    /**
+     * Bulk version for provisioning: existing usernames are skipped (INSERT IGNORE), not an error.
+     *
+     * @return how many users were actually created (also with rewriteBatchedStatements=true, where the driver
+     * reports no per-row counts and the users' stored hashes are checked instead)
+     */
+    int insertIgnoreWithAuthority(List<User> users, String authority);
+}
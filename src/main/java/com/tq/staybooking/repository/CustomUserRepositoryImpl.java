@@ -0,0 +1,87 @@
+package com.tq.staybooking.repository;
+
+import com.tq.staybooking.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+
+public class CustomUserRepositoryImpl implements CustomUserRepository {
+    private static final String INSERT_USER = "INSERT INTO users (username, password, enabled) VALUES (?, ?, ?)";
+    private static final String INSERT_AUTHORITY = "INSERT INTO authority (username, authority) VALUES (?, ?)";
+    private static final String INSERT_IGNORE_USER = "INSERT IGNORE INTO users (username, password, enabled) VALUES (?, ?, ?)";
+    private static final String INSERT_IGNORE_AUTHORITY = "INSERT IGNORE INTO authority (username, authority) VALUES (?, ?)";
+    private static final String SELECT_PASSWORDS = "SELECT password FROM users WHERE username IN ";
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public CustomUserRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertWithAuthority(User user, String authority) {
+        // username 重复时 MySQL 报 1062，Spring 翻译成 DuplicateKeyException，authority 那一行不会执行
+        jdbcTemplate.update(INSERT_USER, user.getUsername(), user.getPassword(), user.isEnabled());
+        jdbcTemplate.update(INSERT_AUTHORITY, user.getUsername(), authority);
+    }
+
+    @Override
+    public int insertIgnoreWithAuthority(List<User> users, String authority) {
+        if (users.isEmpty()) {
+            return 0;
+        }
+        int[] inserted = jdbcTemplate.batchUpdate(INSERT_IGNORE_USER, users, users.size(),
+                (ps, user) -> {
+                    ps.setString(1, user.getUsername());
+                    ps.setString(2, user.getPassword());
+                    ps.setBoolean(3, user.isEnabled());
+                })[0];
+        // 已经存在的 user 本来就有 authority 行，IGNORE 掉即可
+        jdbcTemplate.batchUpdate(INSERT_IGNORE_AUTHORITY, users, users.size(),
+                (ps, user) -> {
+                    ps.setString(1, user.getUsername());
+                    ps.setString(2, authority);
+                });
+        return countCreated(inserted, users);
+    }
+
+    int countCreated(int[] inserted, List<User> users) {
+        int created = 0;
+        for (int count : inserted) {
+            if (count == Statement.SUCCESS_NO_INFO) {
+                return countStoredHashes(users);
+            }
+            if (count > 0) {
+                created++;
+            }
+        }
+        return created;
+    }
+
+    // rewriteBatchedStatements=true 时整个 batch 被改写成一条多值 INSERT，驱动每一行都只返回 SUCCESS_NO_INFO，
+    // 分不出哪些被 IGNORE 了。回头查一次：password 列等于我们刚写的 hash 的行才是这次建的
+    // （BCrypt 每次的 salt 都不一样，已经存在的 user 不可能正好是这个 hash）
+    private int countStoredHashes(List<User> users) {
+        StringJoiner placeholders = new StringJoiner(", ", "(", ")");
+        Object[] args = new Object[users.size()];
+        Set<String> hashes = new HashSet<>();
+        for (int i = 0; i < users.size(); i++) {
+            placeholders.add("?");
+            args[i] = users.get(i).getUsername();
+            hashes.add(users.get(i).getPassword());
+        }
+        int created = 0;
+        for (String stored : jdbcTemplate.queryForList(SELECT_PASSWORDS + placeholders, String.class, args)) {
+            if (hashes.contains(stored)) {
+                created++;
+            }
+        }
+        return created;
+    }
+}
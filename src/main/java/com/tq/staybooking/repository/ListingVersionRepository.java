@@ -0,0 +1,9 @@
+package com.tq.staybooking.repository;
+
+import com.tq.staybooking.model.ListingVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ListingVersionRepository extends JpaRepository<ListingVersion, String>, CustomListingVersionRepository {
+}
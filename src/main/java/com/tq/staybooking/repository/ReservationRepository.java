@@ -13,18 +13,37 @@ package com.tq.staybooking.repository;
 import com.tq.staybooking.model.Reservation;
 import com.tq.staybooking.model.Stay;
 import com.tq.staybooking.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
 
-    List<Reservation> findByGuest(User guest); // 一个 Guest 查看“我自己的所有预订”
+    Reservation findByIdAndGuest(Long id, User guest); // for deletion
 
-    List<Reservation> findByStay(Stay stay); // 查看某个 stay 的所有 reservation
+    // 流式列表（ReservationService.streamByGuest / streamByStay）：先 keyset 分页拿一页 id，再一条 JOIN FETCH 把这一页的 reservation 拿全
+    // Reservation.stay / guest 默认是 EAGER 的 @ManyToOne，序列化时还会碰到 stay.images，
+    // 不 join fetch 的话每个 reservation 都会多出 stay、user、stay_image 三条 select
+    @Query("SELECT r.id FROM Reservation r WHERE r.guest = ?1 AND r.id > ?2 ORDER BY r.id")
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    List<Long> findIdsByGuestAfter(User guest, Long afterId, Pageable pageable);
 
-    Reservation findByIdAndGuest(Long id, User guest); // for deletion
+    @Query("SELECT r.id FROM Reservation r WHERE r.stay = ?1 AND r.id > ?2 ORDER BY r.id")
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    List<Long> findIdsByStayAfter(Stay stay, Long afterId, Pageable pageable);
+
+    @Query("SELECT DISTINCT r FROM Reservation r JOIN FETCH r.guest JOIN FETCH r.stay s LEFT JOIN FETCH s.host LEFT JOIN FETCH s.images WHERE r.id IN ?1 ORDER BY r.id")
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH, value = "false"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500")
+    })
+    List<Reservation> findWithDetailsByIdIn(Collection<Long> ids);
     // 只查“这个 id 且属于当前用户”的 reservation
     // 为什么不能用：findById(id)
     // 因为那样会发生：
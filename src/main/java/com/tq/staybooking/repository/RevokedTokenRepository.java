@@ -0,0 +1,21 @@
+package com.tq.staybooking.repository;
+
+import com.tq.staybooking.model.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    // 增量刷新：只拿上次之后新 revoke 的行
+    List<RevokedToken> findByRevokedAtAfter(Instant since);
+
+    List<RevokedToken> findByExpiresAtAfter(Instant now);
+
+    @Transactional
+    long deleteByExpiresAtBefore(Instant now);
+}
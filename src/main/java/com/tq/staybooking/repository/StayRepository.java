@@ -1,10 +1,16 @@
 package com.tq.staybooking.repository;
 
 import com.tq.staybooking.model.Stay;
+import com.tq.staybooking.model.StayAddress;
 import com.tq.staybooking.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -20,18 +26,23 @@ import java.util.List;
  */
 
 @Repository
-public interface StayRepository extends JpaRepository<Stay, Long> {
-    List<Stay> findByHost(User user);
+public interface StayRepository extends JpaRepository<Stay, Long>, CustomStayRepository {
+    @Query("SELECT DISTINCT s FROM Stay s LEFT JOIN FETCH s.host LEFT JOIN FETCH s.images WHERE s.id = ?1 AND s.host = ?2")
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH, value = "false"))
     Stay findByIdAndHost(Long id, User host);
 
-    // 在给定的一堆 stay id 里，找出能容纳不少于 guestNumber 人的 stay，并把这些 stay 返回给我
-    // 👉 重点：返回的是 stay 本身
-    List<Stay> findByIdInAndGuestNumberGreaterThanEqual(List<Long> ids, int guestNumber);
-    // ES 搜索（location） → 得到 stayIds
-    //        ↓
-    //MySQL 过滤（guestNumber） → 得到 Stay 实体
-    //        ↓
-    //Controller 返回给前端
+    // /stays 和 /search 都是流式的：先拿 id（findIdsByHostAfter / ES + 可用日期），再按块走 StayCache + findWithImagesByIdIn
+    // 以前整表返回的 findByHost / findByIdInAndGuestNumberGreaterThanEqual 已经没人调了，删掉
+
+    // keyset 分页：按 id 顺序一页一页把 (id, address, lat, lon) 拿出来，给 LocationReindexService 对账用
+    // 只查这几列，不加载 images / host
+    List<StayAddress> findByIdGreaterThanOrderByIdAsc(Long lastId, Pageable pageable);
+
+    // keyset 分页只取 id（idx_stay_user 里本来就带着主键），stay 本身再按 id 分块从缓存 / DB 拿
+    // 不进 Hibernate query cache：结果已经缓存在 StayCache 的 host 索引里（按 listing version），见 HibernateCacheConfig
+    @Query("SELECT s.id FROM Stay s WHERE s.host = ?1 AND s.id > ?2 ORDER BY s.id")
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    List<Long> findIdsByHostAfter(User host, Long afterId, Pageable pageable);
 
     // 用一句话把这两个 Repository 方法对比钉死
     // | 方法                                         | 返回类型         | 原因             |
@@ -39,6 +50,16 @@ public interface StayRepository extends JpaRepository<Stay, Long> {
     // | `findByIdAndDateBetween`                   | `Set<Long>`  | 只做“是否可用”的过滤    |
     // | `findByIdInAndGuestNumberGreaterThanEqual` | `List<Stay>` | 要返回完整 stay 给前端 |
 
+    // StayCache 的 loader：缓存没命中的 id 一次批量查出来（带 host + images）
+    @Query("SELECT DISTINCT s FROM Stay s LEFT JOIN FETCH s.host LEFT JOIN FETCH s.images WHERE s.id IN ?1")
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH, value = "false"))
+    List<Stay> findWithImagesByIdIn(Collection<Long> ids);
+
+    // /search 的 loader：guest_number 的条件在 SQL 里，住不下的 stay 不加载、也不进 StayCache
+    @Query("SELECT DISTINCT s FROM Stay s LEFT JOIN FETCH s.host LEFT JOIN FETCH s.images WHERE s.id IN ?1 AND s.guestNumber >= ?2")
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH, value = "false"))
+    List<Stay> findWithImagesByIdInAndGuestNumberGreaterThanEqual(Collection<Long> ids, int guestNumber);
+
 }
 
 /**
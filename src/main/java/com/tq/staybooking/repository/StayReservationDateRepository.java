@@ -3,13 +3,8 @@ package com.tq.staybooking.repository;
 import com.tq.staybooking.model.StayReservedDate;
 import com.tq.staybooking.model.StayReservedDateKey;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDate;
-import java.util.List;
-import java.util.Set;
-
 /**
  * 1. Under the same com.tq.staybooking.repository package, create a new interface called StayReservationDateRepository.
  * 2. Add a method named findByIdInAndDateBetween()
@@ -24,12 +19,9 @@ import java.util.Set;
  */
 
 @Repository
-public interface StayReservationDateRepository extends JpaRepository<StayReservedDate, StayReservedDateKey> {
+public interface StayReservationDateRepository extends JpaRepository<StayReservedDate, StayReservedDateKey>, CustomStayReservationDateRepository {
 
-    // 那什么时候才“应该”用 Set<Long>？
-    // 当返回值只是“标识符集合 / 中间过滤结果”时，用 Set<Long>
-    @Query(value = "SELECT srd.id.stayId FROM StayReservedDate srd WHERE srd.id.stayId IN ?1 AND srd.id.date BETWEEN ?2 AND ?3 GROUP BY srd.id.stayId")
-    Set<Long> findByIdInAndDateBetween(List<Long> stayIds, LocalDate startDate, LocalDate endDate);
+    // 下单 / 搜索都走 CustomStayReservationDateRepository（epoch-day 区间 + JDBC）；以前的 JPQL findByIdInAndDateBetween 已删掉
 }
 /**
  * 一、Spring Data Repository 一共有「三种」查询来源
@@ -23,7 +23,7 @@ import com.tq.staybooking.model.User;
  */
 
 @Repository
-public interface UserRepository extends JpaRepository<User, String> {
+public interface UserRepository extends JpaRepository<User, String>, CustomUserRepository {
 }
 
 
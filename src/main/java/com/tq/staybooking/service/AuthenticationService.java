@@ -1,17 +1,20 @@
 package com.tq.staybooking.service;
 
 
+import com.tq.staybooking.exception.LoginOverloadedException;
+import com.tq.staybooking.exception.LoginThrottledException;
 import com.tq.staybooking.exception.UserNotExistException;
 import com.tq.staybooking.model.Token;
 import com.tq.staybooking.model.User;
 import com.tq.staybooking.model.UserRole;
 import com.tq.staybooking.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 /**
@@ -23,30 +26,54 @@ import org.springframework.stereotype.Service;
  */
 @Service
 public class AuthenticationService {
-    private AuthenticationManager authenticationManager;
+    private UserDetailsService userDetailsService;
+    private PasswordEncoder passwordEncoder;
     private JwtUtil jwtUtil;
+    private PasswordHashingExecutor passwordHashingExecutor;
+    private LoginAttemptThrottle loginAttemptThrottle;
+    private TokenRevocationService tokenRevocationService;
+    private String missingUserPassword;
 
     @Autowired
-    public AuthenticationService(AuthenticationManager authenticationManager, JwtUtil jwtUtil){
-        this.authenticationManager = authenticationManager;
+    public AuthenticationService(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder, JwtUtil jwtUtil,
+                                 PasswordHashingExecutor passwordHashingExecutor, LoginAttemptThrottle loginAttemptThrottle,
+                                 TokenRevocationService tokenRevocationService){
+        this.userDetailsService = userDetailsService;
+        this.passwordEncoder = passwordEncoder;
+        this.missingUserPassword = passwordEncoder.encode("userNotFoundPassword");
         this.jwtUtil = jwtUtil;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.loginAttemptThrottle = loginAttemptThrottle;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
-    public Token authenticate(User user, UserRole role) throws UserNotExistException {
-        Authentication auth = null;
-        try{
-            auth = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(user.getUsername(), user.getPassword()));
+    public Token authenticate(User user, UserRole role, String clientIp)
+            throws UserNotExistException, LoginOverloadedException, LoginThrottledException {
+        // 最近失败太多次的 username / IP 直接拒绝：不查 DB，不跑 BCrypt
+        if (!loginAttemptThrottle.isAllowed(user.getUsername(), clientIp)) {
+            throw new LoginThrottledException("Too many failed login attempts, please retry later");
+        }
 
-        }catch(AuthenticationException e){
+        // 以前整个 authenticationManager.authenticate(...) 都丢进 hashing 池，连查 users 表的 JDBC 也占着那 2 个线程
+        // 现在和 DaoAuthenticationProvider 做的事一样，只是拆开：查用户在当前线程，只有 BCrypt 比对进池子
+        UserDetails userDetails;
+        try {
+            userDetails = userDetailsService.loadUserByUsername(user.getUsername());
+        } catch (UsernameNotFoundException e) {
+            userDetails = null;
+        }
+        // 用户不存在也照样跑一次 BCrypt（和一个假 hash 比），不让响应时间暴露哪些 username 存在
+        String encodedPassword = userDetails == null ? missingUserPassword : userDetails.getPassword();
+        boolean matches = passwordHashingExecutor.execute("verify",
+                () -> passwordEncoder.matches(user.getPassword(), encodedPassword));
+        if (userDetails == null || !matches || !userDetails.isEnabled()) {
+            loginAttemptThrottle.recordFailure(user.getUsername(), clientIp);
             throw new UserNotExistException("Invalid username or password");
-
         }
+        loginAttemptThrottle.recordSuccess(user.getUsername());
 //        if (auth == null || !auth.isAuthenticated() || !auth.getAuthorities().contains(new SimpleGrantedAuthority(role.name())) ){
 //            throw new UserNotExistException("User Doesn't Exist");
 //        }
-        if (auth == null || !auth.isAuthenticated()) {
-            throw new UserNotExistException("Invalid username or password");
-        }
 // SimpleGrantedAuthority 是 Spring Security 官方提供的“权限/角色的最简单实现”。
 // SimpleGrantedAuthority 是 Spring Security 自带的角色/权限封装类，用来表示用户的某个权限（比如 ROLE_GUEST），通常和 auth.getAuthorities() 一起用来做权限匹配。
 // 它表示一个权限或角色标签，比如：
@@ -58,12 +85,26 @@ public class AuthenticationService {
 // new SimpleGrantedAuthority("ROLE_GUEST")
 // Spring Security 在内部存角色时不是用 String，而是用 GrantedAuthority 对象。
 
-        if (!auth.getAuthorities().contains(new SimpleGrantedAuthority(role.name()))) {
+        if (!userDetails.getAuthorities().contains(new SimpleGrantedAuthority(role.name()))) {
             throw new UserNotExistException("User does not have required role: " + role.name());
         }
 
 
-        return new Token(jwtUtil.generateToken(user.getUsername()));
+        return new Token(jwtUtil.generateToken(userDetails.getUsername(), userDetails.getAuthorities()));
+    }
+
+    /**
+     * Revokes the caller's token (everywhere=false) or every token issued to the caller so far (everywhere=true).
+     * The request already passed JwtAuthenticationFilter, so the token here is valid and not yet revoked.
+     */
+    public void logout(String authorization, boolean everywhere) {
+        String token = authorization.startsWith("Bearer ") ? authorization.substring(7).trim() : authorization.trim();
+        Claims claims = jwtUtil.verify(token);
+        if (everywhere) {
+            tokenRevocationService.revokeUser(claims.getSubject());
+        } else {
+            tokenRevocationService.revokeToken(claims);
+        }
     }
 }
 
@@ -0,0 +1,460 @@
+package com.tq.staybooking.service;
+
+import com.tq.staybooking.model.Location;
+import com.tq.staybooking.model.User;
+import com.tq.staybooking.model.UserRole;
+import com.tq.staybooking.repository.LocationRepository;
+import com.tq.staybooking.repository.UserRepository;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.geo.GeoPoint;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fills users / authority / stay / stay_image / reservation / stay_reserved_date and the "loc" index with synthetic data
+ * for benchmarks and load tests. Run it through DatasetGeneratorRunner (--datagen.scale=...).
+ *
+ * Per unit of scale: 1,000 hosts, 20,000 guests, 10,000 stays (~0.9M reserved-date rows with the default occupancy).
+ * - stays are clustered around real city centers (gaussian spread), hosts own a skewed number of stays
+ * - popularity is a power law: the most popular stays are booked ~max-occupancy of the calendar, the tail almost never
+ * - bookings: 1-3 nights most of the time, a weekly peak, a few long stays; lead time is exponential (most bookings are
+ *   for the next weeks), plus history in the past
+ *
+ * Everything is derived from datagen.seed, datagen.anchor-date and the chunk number, so the same settings always
+ * produce the same data, whatever the thread count. The booking calendar is laid out around the anchor date; when it
+ * is not set it defaults to today, and runs on different days then produce different dates. Writes go through JDBC batches (one transaction per chunk) and ES bulk requests.
+ * Stay ids are assigned by the generator (continuing after MAX(id)), so only one generator may run at a time.
+ */
+@Service
+public class DatasetGeneratorService {
+    private static final Logger logger = LoggerFactory.getLogger(DatasetGeneratorService.class);
+
+    private static final String INDEX_ALIAS = "loc";
+    private static final int USERS_PER_CHUNK = 5_000;
+    private static final int STAYS_PER_CHUNK = 1_000;
+
+    private static final String INSERT_STAY =
+            "INSERT INTO stay (id, name, description, address, guest_number, user_id, lat, lon) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_IMAGE = "INSERT INTO stay_image (url, stay_id) VALUES (?, ?)";
+    private static final String INSERT_RESERVATION =
+            "INSERT INTO reservation (checkin_date, checkout_date, user_id, stay_id) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_RESERVED_DATE = "INSERT INTO stay_reserved_date (date, stay_id) VALUES (?, ?)";
+
+    // 城市中心 + 权重（大致按旅游热度），stay 在中心附近按正态分布撒开
+    private static final double[][] CITIES = {
+            // lat, lon, weight, spread (degrees)
+            {40.7128, -74.0060, 10, 0.15},  // New York
+            {34.0522, -118.2437, 8, 0.25},  // Los Angeles
+            {37.7749, -122.4194, 6, 0.10},  // San Francisco
+            {47.6062, -122.3321, 4, 0.12},  // Seattle
+            {25.7617, -80.1918, 6, 0.15},   // Miami
+            {41.8781, -87.6298, 5, 0.15},   // Chicago
+            {36.1699, -115.1398, 5, 0.10},  // Las Vegas
+            {30.2672, -97.7431, 3, 0.10},   // Austin
+            {39.7392, -104.9903, 3, 0.12},  // Denver
+            {42.3601, -71.0589, 4, 0.10},   // Boston
+            {21.3069, -157.8583, 3, 0.20},  // Honolulu
+            {29.9511, -90.0715, 3, 0.08},   // New Orleans
+            {32.7157, -117.1611, 3, 0.12},  // San Diego
+            {45.5152, -122.6784, 2, 0.10},  // Portland
+            {38.9072, -77.0369, 4, 0.10},   // Washington
+    };
+    private static final String[] STREETS = {"Main St", "Oak Ave", "Pine St", "Maple Ave", "Cedar Ln", "Lake Dr", "Park Blvd", "2nd Ave"};
+    private static final String[] KINDS = {"Cozy studio", "Sunny apartment", "Family house", "Loft", "Cabin", "Guest suite", "Condo"};
+    // nights -> relative frequency
+    private static final int[] NIGHTS = {1, 2, 3, 4, 5, 6, 7, 10, 14, 21, 28};
+    private static final double[] NIGHT_WEIGHTS = {18, 22, 18, 11, 8, 5, 9, 3, 3, 1.5, 1.5};
+
+    private UserRepository userRepository;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private PasswordEncoder passwordEncoder;
+    private ObjectProvider<RestHighLevelClient> elasticsearchClient;
+    private LocationRepository locationRepository;
+
+    @Value("${datagen.seed:42}")
+    private long seed;
+
+    @Value("${datagen.threads:4}")
+    private int threads;
+
+    @Value("${datagen.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${datagen.images-per-stay:3}")
+    private int imagesPerStay;
+
+    @Value("${datagen.max-occupancy:0.9}")
+    private double maxOccupancy;
+
+    // occupancy = max-occupancy * (1 - popularity percentile) ^ skew；skew=3 时平均入住率约 max/4
+    @Value("${datagen.popularity-skew:3}")
+    private double popularitySkew;
+
+    @Value("${datagen.history-days:90}")
+    private int historyDays;
+
+    @Value("${datagen.horizon-days:365}")
+    private int horizonDays;
+
+    @Value("${datagen.mean-lead-days:35}")
+    private double meanLeadDays;
+
+    // 日历以这一天为“今天”展开；不设就是运行当天
+    @Value("${datagen.anchor-date:}")
+    private String anchorDate;
+
+    @Value("${datagen.prefix:dg}")
+    private String prefix;
+
+    @Value("${datagen.password:password}")
+    private String password;
+
+    @Value("${gcs.bucket}")
+    private String bucket;
+
+    @Autowired
+    public DatasetGeneratorService(UserRepository userRepository, JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager, PasswordEncoder passwordEncoder,
+                                   ObjectProvider<RestHighLevelClient> elasticsearchClient, LocationRepository locationRepository) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.passwordEncoder = passwordEncoder;
+        this.elasticsearchClient = elasticsearchClient;
+        this.locationRepository = locationRepository;
+    }
+
+    public GenerationReport generate(double scale) throws IOException {
+        int hosts = Math.max(1, (int) Math.round(1_000 * scale));
+        int guests = Math.max(1, (int) Math.round(20_000 * scale));
+        int stays = Math.max(1, (int) Math.round(10_000 * scale));
+        GenerationReport report = new GenerationReport();
+        long start = System.nanoTime();
+        logger.info("Generating scale={} seed={}: {} hosts, {} guests, {} stays", scale, seed, hosts, guests, stays);
+
+        // 所有合成用户共用一个 hash：BCrypt 几百万次要跑几个小时
+        String passwordHash = passwordEncoder.encode(password);
+        Long maxStayId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM stay", Long.class);
+        long firstStayId = (maxStayId == null ? 0 : maxStayId) + 1;
+        LocalDate today = anchorDate == null || anchorDate.isBlank() ? LocalDate.now() : LocalDate.parse(anchorDate.trim());
+        int[] popularityRank = shuffledRanks(stays);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            // 1) users + authority（stay / reservation 的外键要先有）
+            List<Future<?>> pending = new ArrayList<>();
+            for (int from = 0; from < hosts; from += USERS_PER_CHUNK) {
+                int chunkFrom = from;
+                pending.add(executor.submit(() -> writeUsers("host", UserRole.ROLE_HOST, chunkFrom, Math.min(hosts, chunkFrom + USERS_PER_CHUNK), passwordHash, report)));
+            }
+            for (int from = 0; from < guests; from += USERS_PER_CHUNK) {
+                int chunkFrom = from;
+                pending.add(executor.submit(() -> writeUsers("guest", UserRole.ROLE_GUEST, chunkFrom, Math.min(guests, chunkFrom + USERS_PER_CHUNK), passwordHash, report)));
+            }
+            waitFor(pending);
+            logger.info("Users done: {}", report);
+
+            // 2) 每个 chunk：stay + image + reservation + reserved date 一个事务，提交后再写 ES
+            pending.clear();
+            for (int from = 0; from < stays; from += STAYS_PER_CHUNK) {
+                int chunkFrom = from;
+                int chunkTo = Math.min(stays, from + STAYS_PER_CHUNK);
+                pending.add(executor.submit(() -> writeStays(chunkFrom, chunkTo, firstStayId, hosts, guests, popularityRank, today, report)));
+            }
+            waitFor(pending);
+        } finally {
+            executor.shutdown();
+        }
+        report.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        logger.info("Dataset generation finished: {}", report);
+        return report;
+    }
+
+    private void writeUsers(String kind, UserRole role, int from, int to, String passwordHash, GenerationReport report) {
+        List<User> users = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            users.add(new User.Builder().setUsername(username(kind, i)).setPassword(passwordHash).setEnabled(true).build());
+        }
+        for (int i = 0; i < users.size(); i += batchSize) {
+            List<User> batch = users.subList(i, Math.min(users.size(), i + batchSize));
+            // INSERT IGNORE：同样的 seed/prefix 再跑一次时已有的用户直接跳过
+            Integer created = transactionTemplate.execute(status -> userRepository.insertIgnoreWithAuthority(batch, role.name()));
+            report.users.addAndGet(created == null ? 0 : created);
+        }
+    }
+
+    private String username(String kind, int index) {
+        return prefix + "-" + kind + "-" + index;
+    }
+
+    private void writeStays(int from, int to, long firstStayId, int hosts, int guests, int[] popularityRank,
+                            LocalDate today, GenerationReport report) {
+        Random random = new Random(seed * 1_000_003L + from); // 只跟 chunk 有关，和线程数无关
+        int stays = popularityRank.length;
+        LocalDate windowStart = today.minusDays(historyDays);
+        int windowDays = historyDays + horizonDays;
+
+        List<Object[]> stayRows = new ArrayList<>();
+        List<Object[]> imageRows = new ArrayList<>();
+        List<Object[]> reservationRows = new ArrayList<>();
+        List<Object[]> reservedDateRows = new ArrayList<>();
+        List<Location> locations = new ArrayList<>();
+
+        for (int i = from; i < to; i++) {
+            long stayId = firstStayId + i;
+            double[] city = pickCity(random);
+            double lat = city[0] + random.nextGaussian() * city[3];
+            double lon = city[1] + random.nextGaussian() * city[3];
+            // 房东拥有的 stay 数量是偏的：u^2 让编号小的房东分到更多
+            int host = (int) (hosts * Math.pow(random.nextDouble(), 2));
+            String kind = KINDS[random.nextInt(KINDS.length)];
+            stayRows.add(new Object[]{stayId, kind + " #" + stayId,
+                    kind + " with " + (1 + random.nextInt(4)) + " bedrooms",
+                    (1 + random.nextInt(9999)) + " " + STREETS[random.nextInt(STREETS.length)] + " (" + String.format("%.5f,%.5f", lat, lon) + ")",
+                    1 + Math.min(7, (int) Math.abs(random.nextGaussian() * 2.5) + 1),
+                    username("host", host), lat, lon});
+            int images = Math.max(1, imagesPerStay + random.nextInt(3) - 1);
+            for (int j = 0; j < images; j++) {
+                imageRows.add(new Object[]{"https://storage.googleapis.com/" + bucket + "/" + prefix + "-" + stayId + "-" + j + ".jpg", stayId});
+            }
+            locations.add(new Location(stayId, new GeoPoint(lat, lon)));
+
+            // 日历：按人气决定入住率，然后往里塞不重叠的订单
+            double percentile = popularityRank[i] / (double) stays;
+            int targetNights = (int) Math.round(maxOccupancy * Math.pow(1 - percentile, popularitySkew) * windowDays);
+            boolean[] booked = new boolean[windowDays];
+            int bookedNights = 0;
+            for (int attempt = 0; bookedNights < targetNights && attempt < targetNights * 3 + 10; attempt++) {
+                int nights = pickNights(random);
+                int offset = pickCheckinOffset(random, windowDays);
+                if (offset + nights > windowDays || !isFree(booked, offset, nights)) {
+                    continue;
+                }
+                LocalDate checkin = windowStart.plusDays(offset);
+                String guest = username("guest", random.nextInt(guests));
+                reservationRows.add(new Object[]{Date.valueOf(checkin), Date.valueOf(checkin.plusDays(nights)), guest, stayId});
+                for (int d = 0; d < nights; d++) {
+                    booked[offset + d] = true;
+                    reservedDateRows.add(new Object[]{Date.valueOf(checkin.plusDays(d)), stayId});
+                }
+                bookedNights += nights;
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_STAY, stayRows, batchSize, (ps, row) -> {
+                ps.setLong(1, (Long) row[0]);
+                ps.setString(2, (String) row[1]);
+                ps.setString(3, (String) row[2]);
+                ps.setString(4, (String) row[3]);
+                ps.setInt(5, (Integer) row[4]);
+                ps.setString(6, (String) row[5]);
+                ps.setDouble(7, (Double) row[6]);
+                ps.setDouble(8, (Double) row[7]);
+            });
+            jdbcTemplate.batchUpdate(INSERT_IMAGE, imageRows, batchSize, (ps, row) -> {
+                ps.setString(1, (String) row[0]);
+                ps.setLong(2, (Long) row[1]);
+            });
+            jdbcTemplate.batchUpdate(INSERT_RESERVATION, reservationRows, batchSize, (ps, row) -> {
+                ps.setDate(1, (Date) row[0]);
+                ps.setDate(2, (Date) row[1]);
+                ps.setString(3, (String) row[2]);
+                ps.setLong(4, (Long) row[3]);
+            });
+            jdbcTemplate.batchUpdate(INSERT_RESERVED_DATE, reservedDateRows, batchSize, (ps, row) -> {
+                ps.setDate(1, (Date) row[0]);
+                ps.setLong(2, (Long) row[1]);
+            });
+        });
+        report.stays.addAndGet(stayRows.size());
+        report.images.addAndGet(imageRows.size());
+        report.reservations.addAndGet(reservationRows.size());
+        report.reservedDates.addAndGet(reservedDateRows.size());
+
+        indexLocations(locations);
+        report.locations.addAndGet(locations.size());
+        if (from / STAYS_PER_CHUNK % 10 == 0) {
+            logger.info("Stays {}..{} done: {}", from, to, report);
+        }
+    }
+
+    // 没有 Elasticsearch client 的时候（loadtest profile）退回到 LocationRepository
+    private void indexLocations(List<Location> locations) {
+        RestHighLevelClient client = elasticsearchClient.getIfAvailable();
+        if (client == null) {
+            locationRepository.saveAll(locations);
+            return;
+        }
+        for (int i = 0; i < locations.size(); i += batchSize) {
+            BulkRequest bulk = new BulkRequest();
+            for (Location location : locations.subList(i, Math.min(locations.size(), i + batchSize))) {
+                Map<String, Object> geoPoint = new HashMap<>();
+                geoPoint.put("lat", location.getGeoPoint().getLat());
+                geoPoint.put("lon", location.getGeoPoint().getLon());
+                Map<String, Object> document = new HashMap<>();
+                document.put("id", location.getId());
+                document.put("geoPoint", geoPoint);
+                bulk.add(new IndexRequest(INDEX_ALIAS).id(String.valueOf(location.getId())).source(document));
+            }
+            try {
+                BulkResponse response = client.bulk(bulk, RequestOptions.DEFAULT);
+                if (response.hasFailures()) {
+                    throw new IllegalStateException("Bulk index failed: " + response.buildFailureMessage());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static double[] pickCity(Random random) {
+        double total = 0;
+        for (double[] city : CITIES) {
+            total += city[2];
+        }
+        double r = random.nextDouble() * total;
+        for (double[] city : CITIES) {
+            r -= city[2];
+            if (r < 0) {
+                return city;
+            }
+        }
+        return CITIES[CITIES.length - 1];
+    }
+
+    private static int pickNights(Random random) {
+        double total = 0;
+        for (double weight : NIGHT_WEIGHTS) {
+            total += weight;
+        }
+        double r = random.nextDouble() * total;
+        for (int i = 0; i < NIGHTS.length; i++) {
+            r -= NIGHT_WEIGHTS[i];
+            if (r < 0) {
+                return NIGHTS[i];
+            }
+        }
+        return NIGHTS[NIGHTS.length - 1];
+    }
+
+    // 过去的订单在 history 里均匀分布；将来的按提前天数指数分布（大部分订的是最近几周）
+    private int pickCheckinOffset(Random random, int windowDays) {
+        if (random.nextDouble() < historyDays / (double) (historyDays + meanLeadDays * 3)) {
+            return random.nextInt(Math.max(1, historyDays));
+        }
+        int lead = (int) (-Math.log(1 - random.nextDouble()) * meanLeadDays);
+        return Math.min(windowDays - 1, historyDays + lead);
+    }
+
+    private static boolean isFree(boolean[] booked, int offset, int nights) {
+        for (int d = offset; d < offset + nights; d++) {
+            if (booked[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 人气排名和 stay 编号打散，热门 stay 分布在各个城市、各个房东
+    private int[] shuffledRanks(int stays) {
+        int[] ranks = new int[stays];
+        for (int i = 0; i < stays; i++) {
+            ranks[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = stays - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = tmp;
+        }
+        return ranks;
+    }
+
+    private void waitFor(List<Future<?>> pending) throws IOException {
+        try {
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Dataset generation interrupted", e);
+        } catch (Exception e) {
+            throw new IOException("Dataset generation failed", e);
+        }
+    }
+
+    public static class GenerationReport {
+        private final AtomicLong users = new AtomicLong();
+        private final AtomicLong stays = new AtomicLong();
+        private final AtomicLong images = new AtomicLong();
+        private final AtomicLong reservations = new AtomicLong();
+        private final AtomicLong reservedDates = new AtomicLong();
+        private final AtomicLong locations = new AtomicLong();
+        private long elapsedMillis;
+
+        public long getUsers() {
+            return users.get();
+        }
+
+        public long getStays() {
+            return stays.get();
+        }
+
+        public long getImages() {
+            return images.get();
+        }
+
+        public long getReservations() {
+            return reservations.get();
+        }
+
+        public long getReservedDates() {
+            return reservedDates.get();
+        }
+
+        public long getLocations() {
+            return locations.get();
+        }
+
+        @Override
+        public String toString() {
+            return "users=" + users
+                    + ", stays=" + stays
+                    + ", images=" + images
+                    + ", reservations=" + reservations
+                    + ", reservedDates=" + reservedDates
+                    + ", locations=" + locations
+                    + (elapsedMillis > 0 ? ", elapsedMillis=" + elapsedMillis : "");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.tq.staybooking.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tq.staybooking.model.ListingVersion;
+import com.tq.staybooking.repository.ListingVersionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Version numbers behind the ETags of the polled listings (/stays, /reservations, /stays/reservations/{stayId}).
+ *
+ * StayService / ReservationService call bump() inside their write transactions; the listing_version row is the
+ * source of truth and is incremented in the same transaction, just before it commits. Reads go through a bounded in-process cache, so a poll that ends in 304 never touches MySQL.
+ * This instance drops its cached version right after its own writes commit; versions bumped by another instance
+ * are picked up within listing.version-cache.ttl.
+ */
+@Service
+public class ListingVersionService {
+    private ListingVersionRepository listingVersionRepository;
+    // 不是 readOnly：版本号总是从 primary 读，replica 落后时缓存里会留一个 TTL 的旧版本（错误的 304）
+    private TransactionTemplate primaryTransaction;
+    private Cache<String, Long> versions;
+
+    @Autowired
+    public ListingVersionService(ListingVersionRepository listingVersionRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${listing.version-cache.maximum-size:100000}") long maximumSize,
+                                 @Value("${listing.version-cache.ttl:30s}") Duration ttl,
+                                 MeterRegistry meterRegistry) {
+        this.listingVersionRepository = listingVersionRepository;
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "listing.versions");
+    }
+
+    public static String stays(String host) {
+        return "stays:" + host;
+    }
+
+    public static String reservations(String guest) {
+        return "reservations:" + guest;
+    }
+
+    public static String stayReservations(Long stayId) {
+        return "stay-reservations:" + stayId;
+    }
+
+    /**
+     * Read this BEFORE querying the listing, and query the listing on the primary without reusing anything cached
+     * under an older version (StreamingJson.conditionalResponse, StayCache host index): then a write that sneaks in
+     * between only makes the body newer than the ETag, and the next poll gets a 200 again.
+     * A write committed on another instance can still be answered with a 304 until this instance's cached version
+     * expires (listing.version-cache.ttl).
+     */
+    public long current(String listing) {
+        return versions.get(listing, key -> primaryTransaction.execute(status ->
+                listingVersionRepository.findById(key).map(ListingVersion::getVersion).orElse(0L)));
+    }
+
+    /**
+     * Marks the listing as changed by the current write. Inside a transaction the counters are incremented right
+     * before it commits, in key order: the rows are locked only for the commit itself, and two writers touching the
+     * same listings always lock them in the same order (no deadlock between e.g. two reservations of one guest).
+     */
+    public void bump(String listing) {
+        versions.invalidate(listing);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            listingVersionRepository.increment(listing);
+            return;
+        }
+        pendingBumps().add(listing);
+    }
+
+    // 同一个事务里的 bump 先攒着（去重 + 排序），beforeCommit 时一起写
+    @SuppressWarnings("unchecked")
+    private Set<String> pendingBumps() {
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        Set<String> listings = new TreeSet<>();
+        TransactionSynchronizationManager.bindResource(this, listings);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                for (String listing : listings) {
+                    listingVersionRepository.increment(listing);
+                }
+            }
+
+            @Override
+            public void afterCommit() {
+                // 提交前别的请求可能又把旧版本读进缓存了，提交后再清一次（和 StayCache.evict 一样）
+                listings.forEach(versions::invalidate);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ListingVersionService.this);
+            }
+        });
+        return listings;
+    }
+}
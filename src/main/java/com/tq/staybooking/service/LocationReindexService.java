@@ -0,0 +1,422 @@
+package com.tq.staybooking.service;
+
+import com.tq.staybooking.model.Location;
+import com.tq.staybooking.model.StayAddress;
+import com.tq.staybooking.repository.StayRepository;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.GetAliasesResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.geo.GeoPoint;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Service;
+import org.springframework.context.annotation.Profile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the Elasticsearch "loc" index in line with the stay table in MySQL.
+ *
+ * Two modes:
+ * -> reconcile: diff MySQL ids against the live index, index the missing stays and delete orphan docs in place.
+ * -> rebuild:   write every stay into a brand-new index, then atomically point the "loc" alias at it, then reconcile.
+ *
+ * Both modes walk the stay table in keyset order (id > lastId ORDER BY id), one page of reindex.batch-size at a time.
+ * Each page is diffed against the index docs in the same id range only (a range query on "id"), so memory is bounded
+ * by the page size, never by the size of the index. Pages run on reindex.slices workers; when they are all busy
+ * the MySQL scan waits (at most reindex.slices pages in flight).
+ *
+ * StayService keeps writing through the alias, i.e. into the old index, while a rebuild fills the new one: stays added
+ * or deleted in the meantime would be missing from / come back in the new index. So a rebuild ends with a reconcile
+ * pass once the alias points at the new index (from then on writes land there), which fixes exactly those.
+ *
+ * Both modes also backfill stay.lat / lon (V5) for stays that don't have them yet: the point comes from the index doc
+ * when there is one, otherwise from geocoding. The other way round, a stay missing from the index reuses the
+ * coordinates MySQL already has instead of calling the geocoding API.
+ */
+@Service
+@Profile("!loadtest") // needs a real Elasticsearch
+public class LocationReindexService {
+    private static final Logger logger = LoggerFactory.getLogger(LocationReindexService.class);
+
+    // Location 的 @Document(indexName = "loc")，rebuild 之后它就变成了 alias
+    private static final String INDEX_ALIAS = "loc";
+
+    private RestHighLevelClient client;
+    private ElasticsearchOperations elasticsearchOperations;
+    private StayRepository stayRepository;
+    private GeoCodingService geoCodingService;
+
+    @Value("${reindex.slices:4}")
+    private int slices;
+
+    @Value("${reindex.batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    public LocationReindexService(RestHighLevelClient client, ElasticsearchOperations elasticsearchOperations, StayRepository stayRepository, GeoCodingService geoCodingService) {
+        this.client = client;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.stayRepository = stayRepository;
+        this.geoCodingService = geoCodingService;
+    }
+
+    public ReindexReport reconcile() throws IOException {
+        return run(false);
+    }
+
+    public ReindexReport rebuild() throws IOException {
+        ReindexReport report = run(true);
+        // alias 已经切到新 index：把 rebuild 期间写进旧 index 的 add / delete 补到新 index 上
+        report.afterSwap = run(false);
+        return report;
+    }
+
+    private ReindexReport run(boolean rebuild) throws IOException {
+        ReindexReport report = new ReindexReport(rebuild ? "rebuild" : "reconcile");
+        String targetIndex = rebuild ? createTargetIndex() : INDEX_ALIAS;
+        boolean indexExists = client.indices().exists(new GetIndexRequest(INDEX_ALIAS), RequestOptions.DEFAULT);
+
+        int workers = Math.max(1, slices);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        // 最多 workers 个 page 在处理中：都忙的时候 MySQL 扫描停下来等（而不是把 page 无限堆进线程池的队列）
+        Semaphore inFlight = new Semaphore(workers);
+        List<Future<?>> pending = new ArrayList<>();
+        try {
+            // 1) MySQL：keyset 分页扫 stay；每一页只和 ES 里同一段 id 的文档比
+            long lastId = 0L;
+            while (true) {
+                List<StayAddress> page = stayRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, batchSize));
+                if (page.isEmpty()) {
+                    break;
+                }
+                long fromId = lastId; // (fromId, toId]
+                long toId = page.get(page.size() - 1).getId();
+                lastId = toId;
+                report.staysScanned.addAndGet(page.size());
+                submit(executor, inFlight, pending, () -> {
+                    Map<Long, GeoPoint> indexed = indexExists ? readRange(fromId, toId) : Map.of();
+                    repair(targetIndex, diffPage(page, indexed, rebuild), rebuild, report);
+                });
+            }
+
+            // 2) 比 MySQL 最大 id 还大的文档全是 orphan
+            if (indexExists) {
+                long fromId = lastId;
+                submit(executor, inFlight, pending, () ->
+                        repair(targetIndex, diffPage(List.of(), readRange(fromId, Long.MAX_VALUE), rebuild), rebuild, report));
+            }
+            waitFor(pending);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 3) rebuild：新 index 写完之后再切 alias，切换是原子的
+        if (rebuild) {
+            swapAlias(targetIndex);
+        }
+        logger.info("Location reindex finished: {}", report);
+        return report;
+    }
+
+    private void submit(ExecutorService executor, Semaphore inFlight, List<Future<?>> pending, Runnable task) throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Reindex interrupted", e);
+        }
+        pending.add(executor.submit(() -> {
+            try {
+                task.run();
+            } finally {
+                inFlight.release();
+            }
+        }));
+        // 做完的 future 立刻收掉（有异常就马上失败），列表最多 workers 个
+        reapCompleted(pending);
+    }
+
+    /**
+     * What one page of stays needs: stays to (re)index, the points already known for them (no geocoding needed),
+     * index points to copy into stay rows that have no coordinates, and the docs in the page's id range whose stay
+     * no longer exists.
+     */
+    static PageDiff diffPage(List<StayAddress> page, Map<Long, GeoPoint> indexed, boolean rebuild) {
+        PageDiff diff = new PageDiff();
+        diff.indexedBefore = indexed.size();
+        Map<Long, GeoPoint> remaining = new HashMap<>(indexed);
+        for (StayAddress stay : page) {
+            GeoPoint point = remaining.remove(stay.getId());
+            GeoPoint stored = storedPoint(stay);
+            if (rebuild || point == null) {
+                diff.toIndex.add(stay);
+                // ES 里的点优先（rebuild 前后文档不变），没有的话用 MySQL 里的，都没有才 geocode
+                GeoPoint known = hasCoordinates(point) || stored == null ? point : stored;
+                if (known != null) {
+                    diff.knownPoints.put(stay.getId(), known);
+                }
+            }
+            if (stored == null && hasCoordinates(point)) {
+                diff.toBackfill.put(stay.getId(), point);
+            }
+        }
+        diff.orphanIds.addAll(remaining.keySet());
+        Collections.sort(diff.orphanIds);
+        return diff;
+    }
+
+    private static GeoPoint storedPoint(StayAddress stay) {
+        return stay.getLat() == null || stay.getLon() == null ? null : new GeoPoint(stay.getLat(), stay.getLon());
+    }
+
+    private static boolean hasCoordinates(GeoPoint point) {
+        return point != null && !Double.isNaN(point.getLat());
+    }
+
+    private void repair(String targetIndex, PageDiff diff, boolean rebuild, ReindexReport report) {
+        report.indexedBefore.addAndGet(diff.indexedBefore);
+        report.orphans.addAndGet(diff.orphanIds.size());
+        Map<Long, GeoPoint> backfill = new HashMap<>(diff.toBackfill);
+        if (!diff.toIndex.isEmpty()) {
+            indexBatch(targetIndex, diff.toIndex, diff.knownPoints, backfill, report);
+        }
+        // V5 之前建的 stay：把坐标也写回 MySQL，Elasticsearch 挂了的时候 /search 才搜得到它们
+        report.backfilled.addAndGet(stayRepository.fillMissingLocations(backfill));
+        // rebuild 不用删：orphan 根本不会写进新 index
+        if (!rebuild) {
+            for (int from = 0; from < diff.orphanIds.size(); from += batchSize) {
+                deleteBatch(diff.orphanIds.subList(from, Math.min(from + batchSize, diff.orphanIds.size())), report);
+            }
+        }
+    }
+
+    // id 在 (fromId, toId] 里的文档：按 id 排序 + search_after 翻页，一次最多 batchSize 条
+    private Map<Long, GeoPoint> readRange(long fromId, long toId) {
+        Map<Long, GeoPoint> indexed = new HashMap<>();
+        Object[] searchAfter = null;
+        try {
+            while (true) {
+                SearchSourceBuilder source = new SearchSourceBuilder()
+                        .query(QueryBuilders.rangeQuery("id").gt(fromId).lte(toId))
+                        .size(batchSize)
+                        .fetchSource(new String[]{"geoPoint"}, null)
+                        .sort("id", SortOrder.ASC);
+                if (searchAfter != null) {
+                    source.searchAfter(searchAfter);
+                }
+                SearchHit[] hits = client.search(new SearchRequest(INDEX_ALIAS).source(source), RequestOptions.DEFAULT)
+                        .getHits().getHits();
+                for (SearchHit hit : hits) {
+                    indexed.put(Long.parseLong(hit.getId()), readGeoPoint(hit.getSourceAsMap()));
+                }
+                if (hits.length < batchSize) {
+                    return indexed;
+                }
+                searchAfter = hits[hits.length - 1].getSortValues();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 没有坐标的文档用 (NaN, NaN) 占位，会重新 geocode
+    private GeoPoint readGeoPoint(Map<String, Object> source) {
+        Object value = source == null ? null : source.get("geoPoint");
+        if (value instanceof Map) {
+            Object lat = ((Map<?, ?>) value).get("lat");
+            Object lon = ((Map<?, ?>) value).get("lon");
+            if (lat instanceof Number && lon instanceof Number) {
+                return new GeoPoint(((Number) lat).doubleValue(), ((Number) lon).doubleValue());
+            }
+        }
+        return new GeoPoint(Double.NaN, Double.NaN);
+    }
+
+    private void indexBatch(String targetIndex, List<StayAddress> stays, Map<Long, GeoPoint> knownPoints,
+                            Map<Long, GeoPoint> backfill, ReindexReport report) {
+        BulkRequest bulk = new BulkRequest();
+        for (StayAddress stay : stays) {
+            GeoPoint point = knownPoints.get(stay.getId());
+            if (!hasCoordinates(point)) {
+                try {
+                    Location location = geoCodingService.getLatLng(stay.getId(), stay.getAddress());
+                    point = location.getGeoPoint();
+                    report.geocoded.incrementAndGet();
+                    if (storedPoint(stay) == null) {
+                        backfill.put(stay.getId(), point);
+                    }
+                } catch (RuntimeException e) {
+                    // 地址解析失败的 stay 先跳过，下一次 reconcile 还会再试
+                    logger.warn("Failed to geocode stay {}: {}", stay.getId(), e.getMessage());
+                    report.failed.incrementAndGet();
+                    continue;
+                }
+            }
+            Map<String, Object> geoPoint = new HashMap<>();
+            geoPoint.put("lat", point.getLat());
+            geoPoint.put("lon", point.getLon());
+            Map<String, Object> document = new HashMap<>();
+            document.put("id", stay.getId());
+            document.put("geoPoint", geoPoint);
+            bulk.add(new IndexRequest(targetIndex).id(String.valueOf(stay.getId())).source(document));
+        }
+        report.indexed.addAndGet(execute(bulk, report));
+    }
+
+    private void deleteBatch(List<Long> ids, ReindexReport report) {
+        BulkRequest bulk = new BulkRequest();
+        for (Long id : ids) {
+            bulk.add(new DeleteRequest(INDEX_ALIAS, String.valueOf(id)));
+        }
+        report.deleted.addAndGet(execute(bulk, report));
+    }
+
+    private int execute(BulkRequest bulk, ReindexReport report) {
+        if (bulk.numberOfActions() == 0) {
+            return 0;
+        }
+        try {
+            BulkResponse response = client.bulk(bulk, RequestOptions.DEFAULT);
+            int failures = 0;
+            if (response.hasFailures()) {
+                for (var item : response.getItems()) {
+                    if (item.isFailed()) {
+                        failures++;
+                        logger.warn("Bulk item {} failed: {}", item.getId(), item.getFailureMessage());
+                    }
+                }
+                report.failed.addAndGet(failures);
+            }
+            return bulk.numberOfActions() - failures;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String createTargetIndex() {
+        String indexName = INDEX_ALIAS + "_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+        // mapping 直接从 Location 的注解生成，跟 Spring Data 自动建的 index 保持一致
+        Document mapping = elasticsearchOperations.indexOps(Location.class).createMapping(Location.class);
+        IndexOperations indexOps = elasticsearchOperations.indexOps(IndexCoordinates.of(indexName));
+        indexOps.create();
+        indexOps.putMapping(mapping);
+        return indexName;
+    }
+
+    private void swapAlias(String newIndex) throws IOException {
+        IndicesAliasesRequest request = new IndicesAliasesRequest();
+        request.addAliasAction(IndicesAliasesRequest.AliasActions.add().index(newIndex).alias(INDEX_ALIAS));
+
+        GetAliasesResponse aliases = client.indices().getAlias(new GetAliasesRequest(INDEX_ALIAS), RequestOptions.DEFAULT);
+        Set<String> oldIndices = aliases.getAliases().keySet();
+        if (!oldIndices.isEmpty()) {
+            for (String oldIndex : oldIndices) {
+                request.addAliasAction(IndicesAliasesRequest.AliasActions.remove().index(oldIndex).alias(INDEX_ALIAS));
+            }
+        } else if (client.indices().exists(new GetIndexRequest(INDEX_ALIAS), RequestOptions.DEFAULT)) {
+            // 第一次 rebuild："loc" 还是 Spring Data 自动建的真实 index，alias 不能跟它重名，只能在同一个请求里删掉它
+            request.addAliasAction(IndicesAliasesRequest.AliasActions.removeIndex().index(INDEX_ALIAS));
+        }
+        client.indices().updateAliases(request, RequestOptions.DEFAULT);
+        logger.info("Alias {} now points to {} (previous: {})", INDEX_ALIAS, newIndex, oldIndices);
+    }
+
+    private void waitFor(List<Future<?>> pending) throws IOException {
+        try {
+            for (Future<?> future : pending) {
+                future.get(1, TimeUnit.HOURS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Reindex interrupted", e);
+        } catch (Exception e) {
+            throw new IOException("Reindex failed", e);
+        }
+    }
+
+    private void reapCompleted(List<Future<?>> pending) throws IOException {
+        List<Future<?>> done = new ArrayList<>();
+        for (Future<?> future : pending) {
+            if (future.isDone()) {
+                done.add(future);
+            }
+        }
+        waitFor(done);
+        pending.removeAll(done);
+    }
+
+    static class PageDiff {
+        final List<StayAddress> toIndex = new ArrayList<>();
+        final Map<Long, GeoPoint> knownPoints = new HashMap<>();
+        final Map<Long, GeoPoint> toBackfill = new HashMap<>();
+        final List<Long> orphanIds = new ArrayList<>();
+        int indexedBefore;
+    }
+
+    public static class ReindexReport {
+        private final String mode;
+        private final AtomicLong indexedBefore = new AtomicLong();
+        private final AtomicLong staysScanned = new AtomicLong();
+        private final AtomicLong indexed = new AtomicLong();
+        private final AtomicLong geocoded = new AtomicLong();
+        private final AtomicLong orphans = new AtomicLong();
+        private final AtomicLong deleted = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong backfilled = new AtomicLong();
+        // rebuild 之后那一遍 reconcile
+        private volatile ReindexReport afterSwap;
+
+        private ReindexReport(String mode) {
+            this.mode = mode;
+        }
+
+        @Override
+        public String toString() {
+            return "mode=" + mode
+                    + ", indexedBefore=" + indexedBefore
+                    + ", staysScanned=" + staysScanned
+                    + ", indexed=" + indexed
+                    + ", geocoded=" + geocoded
+                    + ", orphans=" + orphans
+                    + ", deleted=" + deleted
+                    + ", failed=" + failed
+                    + ", backfilled=" + backfilled
+                    + (afterSwap == null ? "" : ", afterSwap=[" + afterSwap + "]");
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.tq.staybooking.service;
+
+import com.tq.staybooking.exception.InvalidSearchAreaException;
+import com.tq.staybooking.repository.LocationRepository;
+import com.tq.staybooking.repository.StayRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.unit.DistanceUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The geo step of /search with Elasticsearch allowed to fail.
+ *
+ * The ES query runs on its own small pool and gets search.es.timeout; when it errors, times out, or the pool is full,
+ * the same distance search runs on MySQL instead (StayRepository.findIdsWithinDistance: stay.lat / lon, SPATIAL index),
+ * on the caller's thread and transaction. After search.es.failure-threshold failures in a row ES is skipped entirely
+ * for search.es.open-duration, so nobody waits for the timeout while the cluster is down; then it is tried again.
+ *
+ * Degraded mode is visible in metrics: search.fallback{reason} per fallback search, search.degraded = 1 while ES is
+ * skipped, search.location.latency{source} for both paths.
+ */
+@Service
+public class LocationSearchService implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(LocationSearchService.class);
+    // 和 CustomLocationRepositoryImpl 一样：不传就是 50，没有单位就是公里
+    private static final String DEFAULT_DISTANCE = "50";
+
+    private LocationRepository locationRepository;
+    private StayRepository stayRepository;
+    private ThreadPoolExecutor executor;
+    private long timeoutNanos;
+    private int failureThreshold;
+    private long openNanos;
+    private int maxResults;
+
+    private AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openUntil = System.nanoTime();
+
+    private MeterRegistry meterRegistry;
+    // 构造时注册一次：fallback 正好是最忙的时候，不该每次都去 registry 里查
+    private Counter circuitOpenFallbacks;
+    private Counter rejectedFallbacks;
+    private Counter timeoutFallbacks;
+    private Counter errorFallbacks;
+    private Timer elasticsearchLatency;
+    private Timer mysqlLatency;
+
+    @Autowired
+    public LocationSearchService(LocationRepository locationRepository, StayRepository stayRepository,
+                                 @Value("${search.es.timeout:500ms}") Duration timeout,
+                                 @Value("${search.es.threads:16}") int threads,
+                                 @Value("${search.es.queue-capacity:64}") int queueCapacity,
+                                 @Value("${search.es.failure-threshold:5}") int failureThreshold,
+                                 @Value("${search.es.open-duration:10s}") Duration openDuration,
+                                 @Value("${search.fallback.max-results:10000}") int maxResults,
+                                 MeterRegistry meterRegistry) {
+        this.locationRepository = locationRepository;
+        this.stayRepository = stayRepository;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "location-search-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()); // ES 卡住时线程会被占满：直接拒绝，走 MySQL
+        this.timeoutNanos = timeout.toNanos();
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.maxResults = maxResults;
+        this.meterRegistry = meterRegistry;
+        this.circuitOpenFallbacks = fallbackCounter("circuit_open", meterRegistry);
+        this.rejectedFallbacks = fallbackCounter("rejected", meterRegistry);
+        this.timeoutFallbacks = fallbackCounter("timeout", meterRegistry);
+        this.errorFallbacks = fallbackCounter("error", meterRegistry);
+        this.elasticsearchLatency = latencyTimer("elasticsearch", meterRegistry);
+        this.mysqlLatency = latencyTimer("mysql", meterRegistry);
+        Gauge.builder("search.degraded", this, service -> service.isDegraded() ? 1 : 0)
+                .description("1 while Elasticsearch is skipped and /search runs on MySQL only")
+                .register(meterRegistry);
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "location-search");
+    }
+
+    /**
+     * Same contract as LocationRepository.searchByDistance.
+     *
+     * @throws InvalidSearchAreaException if distance can't be parsed
+     */
+    public List<Long> searchByDistance(double lat, double lon, String distance) {
+        if (distance == null || distance.isEmpty()) {
+            distance = DEFAULT_DISTANCE;
+        }
+        // 先在这里解析：写错的 distance 是 400，不能算成 ES 的失败
+        double distanceMeters;
+        try {
+            distanceMeters = DistanceUnit.METERS.parse(distance, DistanceUnit.KILOMETERS);
+        } catch (ElasticsearchParseException | IllegalArgumentException e) {
+            throw new InvalidSearchAreaException("Invalid distance");
+        }
+        if (!(distanceMeters > 0)) {
+            throw new InvalidSearchAreaException("Invalid distance");
+        }
+
+        if (isDegraded()) {
+            return fallback(circuitOpenFallbacks, lat, lon, distanceMeters);
+        }
+
+        String esDistance = distance;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Future<List<Long>> future;
+        try {
+            future = executor.submit(() -> locationRepository.searchByDistance(lat, lon, esDistance));
+        } catch (RejectedExecutionException e) {
+            recordFailure(e);
+            return fallback(rejectedFallbacks, lat, lon, distanceMeters);
+        }
+        try {
+            List<Long> stayIds = future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            consecutiveFailures.set(0);
+            sample.stop(elasticsearchLatency);
+            return stayIds;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            recordFailure(e);
+            return fallback(timeoutFallbacks, lat, lon, distanceMeters);
+        } catch (ExecutionException e) {
+            recordFailure(e.getCause());
+            return fallback(errorFallbacks, lat, lon, distanceMeters);
+        } catch (InterruptedException e) {
+            // 请求线程自己被打断（比如客户端断开），不是 ES 的问题
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        }
+    }
+
+    public boolean isDegraded() {
+        return openUntil - System.nanoTime() > 0;
+    }
+
+    private List<Long> fallback(Counter reason, double lat, double lon, double distanceMeters) {
+        reason.increment();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return stayRepository.findIdsWithinDistance(lat, lon, distanceMeters, maxResults);
+        } finally {
+            sample.stop(mysqlLatency);
+        }
+    }
+
+    private void recordFailure(Throwable cause) {
+        if (consecutiveFailures.incrementAndGet() < failureThreshold) {
+            logger.debug("Elasticsearch distance search failed, falling back to MySQL", cause);
+            return;
+        }
+        consecutiveFailures.set(0);
+        openUntil = System.nanoTime() + openNanos;
+        logger.warn("Elasticsearch distance search failed {} times in a row, /search uses MySQL only for the next {} ms",
+                failureThreshold, TimeUnit.NANOSECONDS.toMillis(openNanos), cause);
+    }
+
+    private static Counter fallbackCounter(String reason, MeterRegistry meterRegistry) {
+        return Counter.builder("search.fallback")
+                .description("/search requests answered from MySQL instead of Elasticsearch")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static Timer latencyTimer(String source, MeterRegistry meterRegistry) {
+        return Timer.builder("search.location.latency")
+                .description("Geo step of /search, by where it was answered")
+                .tag("source", source)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
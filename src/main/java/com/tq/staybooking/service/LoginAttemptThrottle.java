@@ -0,0 +1,217 @@
+package com.tq.staybooking.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Failed-login counters per username and per client IP, checked before the user lookup
+ * so a brute-force attempt is rejected without a DB lookup or a BCrypt verification.
+ * A successful login forgives the username's failures so far (not the IP's).
+ *
+ * Counters live in a fixed-size, lock-free count-min sketch (DEPTH rows x width slots of AtomicLongArray),
+ * so memory is bounded no matter how many usernames / IPs an attacker sprays. Every row hashes the key with its own
+ * random 64-bit seed, so two keys only share a count if they collide in all rows, and which keys collide can't be
+ * worked out ahead of time. A collision can only over-count.
+ *
+ * Slots are shared, so a successful login never clears them (that would also clear every key that collides with the
+ * username, e.g. an attacker's). Instead the username's estimate at that moment is remembered as "forgiven" in a small
+ * bounded cache keyed by the exact username, and subtracted from its estimate later on. The sketch only ever decays
+ * the failures from before the success, so failures made after it are never forgiven. Losing an entry to eviction
+ * only makes the throttle stricter again.
+ *
+ * The client IP is request.getRemoteAddr(): behind the reverse proxy that is the X-Forwarded-For hop the proxy added,
+ * see server.forward-headers-strategy.
+ *
+ * Each slot packs [window id | count in that window | count in the previous window] into one long and is
+ * updated with CAS. The estimate is a sliding window: current + previous * (part of the previous window
+ * still inside the last `auth.throttle.window`), so counters decay on their own and never need a cleanup job.
+ */
+@Component
+public class LoginAttemptThrottle {
+    private static final int DEPTH = 4;
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long WINDOW_MASK = (1L << (64 - 2 * COUNT_BITS)) - 1;
+
+    // 每一行一个独立的随机 seed：以前所有行都从同一个 String.hashCode() 算出来，hashCode 相同的 key 每一行都撞
+    private long[] seeds;
+    private AtomicLongArray slots;
+    private int widthMask;
+    private long windowMillis;
+    private int maxFailuresPerUser;
+    private int maxFailuresPerIp;
+
+    // username key -> 登录成功那一刻的估计值；过了两个窗口 sketch 里那些失败也都过期了
+    private Cache<String, Double> forgiven;
+
+    private Counter failures;
+    private Counter rejectedByUser;
+    private Counter rejectedByIp;
+    private LongSupplier clock;
+
+    @Autowired
+    public LoginAttemptThrottle(@Value("${auth.throttle.width:65536}") int width,
+                                @Value("${auth.throttle.window:5m}") Duration window,
+                                @Value("${auth.throttle.max-failures-per-user:10}") int maxFailuresPerUser,
+                                @Value("${auth.throttle.max-failures-per-ip:50}") int maxFailuresPerIp,
+                                MeterRegistry meterRegistry) {
+        this(width, window, maxFailuresPerUser, maxFailuresPerIp, meterRegistry, System::currentTimeMillis);
+    }
+
+    LoginAttemptThrottle(int width, Duration window, int maxFailuresPerUser, int maxFailuresPerIp,
+                         MeterRegistry meterRegistry, LongSupplier clock) {
+        // width 取 2 的幂，下标用位运算
+        int roundedWidth = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.slots = new AtomicLongArray(DEPTH * roundedWidth);
+        this.widthMask = roundedWidth - 1;
+        this.windowMillis = window.toMillis();
+        this.maxFailuresPerUser = maxFailuresPerUser;
+        this.maxFailuresPerIp = maxFailuresPerIp;
+        this.clock = clock;
+        this.forgiven = Caffeine.newBuilder()
+                .maximumSize(roundedWidth)
+                .expireAfterWrite(Duration.ofMillis(2 * windowMillis))
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.getAsLong()))
+                .build();
+        this.seeds = new long[DEPTH];
+        SecureRandom random = new SecureRandom();
+        for (int row = 0; row < DEPTH; row++) {
+            seeds[row] = random.nextLong();
+        }
+
+        this.failures = Counter.builder("auth.throttle.failures")
+                .description("Failed logins recorded by the login throttle")
+                .register(meterRegistry);
+        this.rejectedByUser = Counter.builder("auth.throttle.rejected").tag("key", "username")
+                .description("Logins rejected before password verification")
+                .register(meterRegistry);
+        this.rejectedByIp = Counter.builder("auth.throttle.rejected").tag("key", "ip")
+                .description("Logins rejected before password verification")
+                .register(meterRegistry);
+        meterRegistry.gauge("auth.throttle.slots", slots, AtomicLongArray::length);
+    }
+
+    /**
+     * @return false if the username or the client IP has too many recent failures and should not be verified at all
+     */
+    public boolean isAllowed(String username, String clientIp) {
+        long now = clock.getAsLong();
+        String userKey = userKey(username);
+        Double forgivenFailures = forgiven.getIfPresent(userKey);
+        double userFailures = estimate(userKey, now) - (forgivenFailures == null ? 0 : forgivenFailures);
+        if (userFailures >= maxFailuresPerUser) {
+            rejectedByUser.increment();
+            return false;
+        }
+        if (clientIp != null && estimate(ipKey(clientIp), now) >= maxFailuresPerIp) {
+            rejectedByIp.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public void recordFailure(String username, String clientIp) {
+        long now = clock.getAsLong();
+        increment(userKey(username), now);
+        if (clientIp != null) {
+            increment(ipKey(clientIp), now);
+        }
+        failures.increment();
+    }
+
+    // 密码对了：这个 username 之前的失败不再算（IP 的照算，否则一个自己的账号就能给整个 IP 解锁）
+    // 不清 sketch：slot 是共享的，清掉会把撞在一起的别的 key（比如攻击者的）也一起清零
+    public void recordSuccess(String username) {
+        String key = userKey(username);
+        forgiven.put(key, estimate(key, clock.getAsLong()));
+    }
+
+    private static String userKey(String username) {
+        return "u:" + (username == null ? "" : username);
+    }
+
+    private static String ipKey(String clientIp) {
+        return "ip:" + clientIp;
+    }
+
+    private double estimate(String key, long now) {
+        long window = (now / windowMillis) & WINDOW_MASK;
+        // 上一个窗口还有多少比例落在“最近一个 window”里
+        double previousWeight = 1.0 - (double) (now % windowMillis) / windowMillis;
+        double min = Double.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            long slot = slots.get(index(row, key));
+            double value;
+            long slotWindow = slot >>> (2 * COUNT_BITS);
+            if (slotWindow == window) {
+                value = current(slot) + previous(slot) * previousWeight;
+            } else if (slotWindow == ((window - 1) & WINDOW_MASK)) {
+                value = current(slot) * previousWeight;
+            } else {
+                value = 0;
+            }
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    private void increment(String key, long now) {
+        long window = (now / windowMillis) & WINDOW_MASK;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(row, key);
+            while (true) {
+                long slot = slots.get(index);
+                long slotWindow = slot >>> (2 * COUNT_BITS);
+                long updated;
+                if (slotWindow == window) {
+                    updated = pack(window, Math.min(current(slot) + 1, COUNT_MASK), previous(slot));
+                } else if (slotWindow == ((window - 1) & WINDOW_MASK)) {
+                    // 进入新窗口：当前计数挪到 previous
+                    updated = pack(window, 1, current(slot));
+                } else {
+                    updated = pack(window, 1, 0);
+                }
+                if (slots.compareAndSet(index, slot, updated)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private int index(int row, String key) {
+        // 带 seed 的 FNV-1a (64 位) + murmur3 的 fmix64 收尾
+        long h = seeds[row];
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return row * (widthMask + 1) + ((int) h & widthMask);
+    }
+
+    private static long pack(long window, long current, long previous) {
+        return (window << (2 * COUNT_BITS)) | (current << COUNT_BITS) | previous;
+    }
+
+    private static long current(long slot) {
+        return (slot >>> COUNT_BITS) & COUNT_MASK;
+    }
+
+    private static long previous(long slot) {
+        return slot & COUNT_MASK;
+    }
+}
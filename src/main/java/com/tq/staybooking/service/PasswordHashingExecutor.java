@@ -0,0 +1,113 @@
+package com.tq.staybooking.service;
+
+import com.tq.staybooking.exception.LoginOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulkhead for BCrypt: password hashing (register) and verification (login) run on a small dedicated pool
+ * with a bounded queue, instead of on Tomcat worker threads.
+ *
+ * A login spike can only ever use `auth.hashing.threads` cores; once the queue is full new requests fail fast
+ * with LoginOverloadedException (429) and /search, /reservations keep their threads.
+ */
+@Component
+public class PasswordHashingExecutor implements DisposableBean {
+    private ThreadPoolExecutor executor;
+    private long timeoutMillis;
+
+    private MeterRegistry meterRegistry;
+    private Counter rejected;
+    // operation -> timer，每种 operation 只 register 一次
+    private Map<String, Timer> latencyTimers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PasswordHashingExecutor(@Value("${auth.hashing.threads:2}") int threads,
+                                   @Value("${auth.hashing.queue-capacity:50}") int queueCapacity,
+                                   @Value("${auth.hashing.timeout-ms:5000}") long timeoutMillis,
+                                   MeterRegistry meterRegistry) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()); // 队列满了直接拒绝，不阻塞调用方
+        this.timeoutMillis = timeoutMillis;
+        this.meterRegistry = meterRegistry;
+        this.rejected = Counter.builder("auth.hashing.rejected")
+                .description("Login/register requests rejected because the hashing pool was full or too slow")
+                .register(meterRegistry);
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "password-hashing");
+    }
+
+    /**
+     * Runs the task on the hashing pool and waits for it.
+     * operation is only used as a metrics tag (e.g. "verify", "encode").
+     *
+     * @throws LoginOverloadedException if the queue is full or the task didn't finish within the timeout
+     */
+    public <T> T execute(String operation, Callable<T> task) throws LoginOverloadedException {
+        Timer latency = latencyTimers.computeIfAbsent(operation, op -> Timer.builder("auth.hashing.latency")
+                .description("Queue wait + execution time of password hashing tasks")
+                .tag("operation", op)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry));
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new LoginOverloadedException("Too many login requests, please retry later");
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new LoginOverloadedException("Too many login requests, please retry later");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new LoginOverloadedException("Login interrupted");
+        } catch (ExecutionException e) {
+            // 把任务里的异常原样抛出去（比如 AuthenticationException），调用方的 catch 不用改
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            sample.stop(latency);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
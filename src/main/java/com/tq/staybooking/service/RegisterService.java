@@ -2,16 +2,15 @@ package com.tq.staybooking.service;
 
 
 import com.tq.staybooking.exception.UserAlreadyExistException;
-import com.tq.staybooking.model.Authority;
 import com.tq.staybooking.model.User;
 import com.tq.staybooking.model.UserRole;
-import com.tq.staybooking.repository.AuthorityRepository;
 import com.tq.staybooking.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Go to com.tq.staybooking.service package. Create a new class called RegisterService.
@@ -37,12 +36,14 @@ public class RegisterService {
     // 两个 Repository：
         // 1. userRepository → 负责“用户表”
         // 2. authorityRepository → 负责“角色/权限表”
+        // （现在 authority 那一行由 userRepository.insertWithAuthority 一起写，不再单独注入 authorityRepository）
     //Repository 的功能就是: 让你可以不用写 SQL，就能把数据存进数据库。
 
     private UserRepository userRepository;
-    private AuthorityRepository authorityRepository;
 
     private PasswordEncoder passwordEncoder;
+    private PasswordHashingExecutor passwordHashingExecutor;
+    private TransactionTemplate transactionTemplate;
 
     // constructor + @Autowired —— 把数据库工具传进来
     // 它告诉 Spring：“创建 RegisterService 的时候，请把 UserRepository 和 AuthorityRepository 这两个对象注入给我，我需要使用它们。”
@@ -62,10 +63,12 @@ public class RegisterService {
         // -> add on private field
         // -> add on constructor
     @Autowired
-    public RegisterService(UserRepository userRepository, AuthorityRepository authorityRepository, PasswordEncoder passwordEncoder) {
+    public RegisterService(UserRepository userRepository, PasswordEncoder passwordEncoder, PasswordHashingExecutor passwordHashingExecutor,
+                           PlatformTransactionManager transactionManager) {
         this.userRepository = userRepository;
-        this.authorityRepository = authorityRepository;
         this.passwordEncoder = passwordEncoder;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
     // @Transactional —— 一次成功或全部失败
     // add() 方法做两件事：
@@ -93,14 +96,13 @@ public class RegisterService {
     //    role.name() → 返回 enum 的名字（永远不会被 override） -> 把enum常量变成一个string
     //    role.toString() → 可以被重写，不一定可靠
 
-    @Transactional(isolation = Isolation.SERIALIZABLE)
+    // 以前是 SERIALIZABLE + existsById 先查再写：并发注册会在 users 上抢 gap lock
+    // 现在直接 INSERT，让主键来判断重名：重复就是 DuplicateKeyException -> UserAlreadyExistException
+    // 两条 INSERT 在同一个（默认隔离级别的）事务里，还是一起成功或一起失败
+    // 事务只包住两条 INSERT：BCrypt 在事务开始前跑完，等 hashing 池的时候不占 DB 连接
     public void add(User user, UserRole role) throws UserAlreadyExistException{
-        // -> use UserAlreadyExistException exception 做 user是否存在的check
-        if (userRepository.existsById(user.getUsername())){
-            throw new UserAlreadyExistException("User already exist");
-        }
         // -> use the passwordEncoder to do the encryption.
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
+        user.setPassword(passwordHashingExecutor.execute("encode", () -> passwordEncoder.encode(user.getPassword())));
         user.setEnabled(true);
         // 🎯 这个 enabled -> Spring Security 或你自己的程序可以根据这个字段判断：
             // -> 用户是否被允许登录
@@ -112,8 +114,11 @@ public class RegisterService {
             // -> 初次注册时，你必须把账号设为可用
             // -> 否则用户一注册完就被“禁用”，无法登录
 
-        userRepository.save(user);
-        authorityRepository.save(new Authority(user.getUsername(), role.name()));
+        try {
+            transactionTemplate.executeWithoutResult(status -> userRepository.insertWithAuthority(user, role.name()));
+        } catch (DuplicateKeyException e) {
+            throw new UserAlreadyExistException("User already exist");
+        }
     }
 }
 
@@ -1,20 +1,21 @@
 package com.tq.staybooking.service;
 
+import com.tq.staybooking.config.datasource.ReadYourWritesTracker;
 import com.tq.staybooking.exception.ReservationCollisionException;
 import com.tq.staybooking.exception.ReservationNotFoundException;
 import com.tq.staybooking.model.*;
 import com.tq.staybooking.repository.ReservationRepository;
 import com.tq.staybooking.repository.StayReservationDateRepository;
+import com.tq.staybooking.util.EpochDayRange;
+import com.tq.staybooking.util.KeysetStreams;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * 1. Go to com.tq.staybooking.service package and create ReservationService.
@@ -29,19 +30,36 @@ public class ReservationService {
 
     private ReservationRepository reservationRepository;
     private StayReservationDateRepository stayReservationDateRepository;
+    private ReadYourWritesTracker readYourWritesTracker;
+    private ListingVersionService listingVersionService;
+
+    @Value("${streaming.chunk-size:500}")
+    private int chunkSize;
 
     @Autowired
-    public ReservationService(ReservationRepository reservationRepository, StayReservationDateRepository stayReservationDateRepository){
+    public ReservationService(ReservationRepository reservationRepository, StayReservationDateRepository stayReservationDateRepository,
+                              ReadYourWritesTracker readYourWritesTracker, ListingVersionService listingVersionService){
         this.reservationRepository = reservationRepository;
         this.stayReservationDateRepository = stayReservationDateRepository;
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.listingVersionService = listingVersionService;
     }
 
-    public List<Reservation> listByGuest(String username){
-        return reservationRepository.findByGuest(new User.Builder().setUsername(username).build());
+    // 列表是 lazy stream（给 StreamingJson 边查边写）：keyset 分页，每页一个 id 查询 + 一个 JOIN FETCH，
+    // 内存里最多一页 reservation，历史再长也一样。
+    // 每页都是 repository 自己的只读事务：配置了 replica 时走副本（刚下过单的用户除外，见 ReadYourWritesTracker）
+    public Stream<Reservation> streamByGuest(String username){
+        User guest = new User.Builder().setUsername(username).build();
+        return KeysetStreams.byKeyset(
+                (afterId, limit) -> reservationRepository.findIdsByGuestAfter(guest, afterId, PageRequest.of(0, limit)),
+                reservationRepository::findWithDetailsByIdIn, chunkSize);
     }
 
-    public List<Reservation> listByStay(Long stayId){
-        return reservationRepository.findByStay(new Stay.Builder().setId(stayId).build());
+    public Stream<Reservation> streamByStay(Long stayId){
+        Stay stay = new Stay.Builder().setId(stayId).build();
+        return KeysetStreams.byKeyset(
+                (afterId, limit) -> reservationRepository.findIdsByStayAfter(stay, afterId, PageRequest.of(0, limit)),
+                reservationRepository::findWithDetailsByIdIn, chunkSize);
     }
 
     // 这段代码的目标是什么？
@@ -52,45 +70,28 @@ public class ReservationService {
     // StayReservedDate：记录这个 stay 的“每天是否被占用”（按天拆开）
     @Transactional(isolation = Isolation.SERIALIZABLE)
     public void add(Reservation reservation) throws ReservationCollisionException {
-        // 1) 先查：这段日期有没有被占用
-        Set<Long> stayIds = stayReservationDateRepository.findByIdInAndDateBetween(
-                Arrays.asList(reservation.getStay().getId()),
-                reservation.getCheckinDate(),
-                reservation.getCheckoutDate().minusDays(1));
+        // 入住的每一晚用 epoch day 表示：[checkin, checkout)，整段只有两个 int，不再每晚一个 LocalDate / 复合主键对象
+        EpochDayRange nights = EpochDayRange.ofStay(reservation.getCheckinDate(), reservation.getCheckoutDate());
+        long stayId = reservation.getStay().getId();
 
+        // 1) 先查：这段日期有没有被占用
         // 2) 如果有冲突：直接拒绝
-        if (!stayIds.isEmpty()) {
+        if (stayReservationDateRepository.isReserved(stayId, nights)) {
             throw new ReservationCollisionException("Duplicate reservation");
         }
-        // stayReservationDateRepository.findByIdInAndDateBetween() -> “在我想订的这段日期里，有没有已经被占用的 stay？”
-        // 如果 没有任何一天被占用
-        //→ 数据库查不到记录
-        //→ 返回 空集合
-        //如果 哪怕有一天被占用
-        //→ 数据库能查到至少 1 条记录
-        //→ 返回 非空集合（里面有 stayId）
-
-        // 3) 如果没冲突：生成每一天的占用记录
-        List<StayReservedDate> reservedDates = new ArrayList<>();
-
-        for (LocalDate date = reservation.getCheckinDate();
-             date.isBefore(reservation.getCheckoutDate());
-             date = date.plusDays(1))
-        {
-            reservedDates.add(
-                    new StayReservedDate(
-                            new StayReservedDateKey(reservation.getStay().getId(), date),
-                            reservation.getStay()));
-            // 每一条 StayReservedDate 的主键通常是复合主键：(stay_id, date)
-        }
-        // 4) 批量写入“占用日期表”
-        // 把刚才生成的每天占用写进数据库。
-        //为什么先写这个？因为它是“防冲突的锁”。
+
+        // 3) + 4) 如果没冲突：每一晚一行占用记录，一个 JDBC batch 写进“占用日期表”
+        // 为什么先写这个？因为它是“防冲突的锁”（主键是 (date, stay_id)）。
         //如果先写 Reservation，再写日期，出错时会留下脏数据更麻烦。
-        stayReservationDateRepository.saveAll(reservedDates);
+        stayReservationDateRepository.insertNights(stayId, nights);
         // 5) 再写入 Reservation 本体（订单记录）
         // ✅ 先占坑（每天） → ✅ 再记订单（区间）
         reservationRepository.save(reservation);
+        // 接下来几秒这个 guest 的读请求走 primary，马上能看到自己刚订的
+        readYourWritesTracker.markWrite(reservation.getGuest().getUsername());
+        // 同一个事务里改版本号：guest 的 /reservations 和这个 stay 的 /stays/reservations/{id} 的 ETag 都变了
+        listingVersionService.bump(ListingVersionService.reservations(reservation.getGuest().getUsername()));
+        listingVersionService.bump(ListingVersionService.stayReservations(stayId));
     }
 
     @Transactional(isolation = Isolation.SERIALIZABLE)
@@ -101,17 +102,13 @@ public class ReservationService {
             throw new ReservationNotFoundException("Reservation is not available");
         }
 
-        // 这里的stayReservationDateRepository.deleteById(id)是默认function
-        // 这里的id是复合id (stay_id, date)
-        for (
-                LocalDate date = reservation.getCheckinDate();
-                date.isBefore(reservation.getCheckoutDate());
-                date = date.plusDays(1))
-        {
-            stayReservationDateRepository.deleteById(
-                    new StayReservedDateKey(reservation.getStay().getId(), date));
-        }
+        // 以前是每一晚一次 deleteById（复合 id (stay_id, date)），现在整段一条 DELETE
+        stayReservationDateRepository.deleteNights(reservation.getStay().getId(),
+                EpochDayRange.ofStay(reservation.getCheckinDate(), reservation.getCheckoutDate()));
         reservationRepository.deleteById(reservationId);
+        readYourWritesTracker.markWrite(username);
+        listingVersionService.bump(ListingVersionService.reservations(username));
+        listingVersionService.bump(ListingVersionService.stayReservations(reservation.getStay().getId()));
 
     }
 
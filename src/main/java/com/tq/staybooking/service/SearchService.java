@@ -1,17 +1,24 @@
 package com.tq.staybooking.service;
 
+import com.tq.staybooking.exception.InvalidSearchAreaException;
+import com.tq.staybooking.model.GeoCluster;
 import com.tq.staybooking.model.Stay;
 import com.tq.staybooking.repository.LocationRepository;
 import com.tq.staybooking.repository.StayRepository;
 import com.tq.staybooking.repository.StayReservationDateRepository;
+import com.tq.staybooking.util.EpochDayRange;
+import com.tq.staybooking.util.KeysetStreams;
+import com.tq.staybooking.util.LongHashSet;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 1. Go to com.tq.staybooking.service package and create the SearchService class.
@@ -25,50 +32,128 @@ public class SearchService {
     private StayRepository stayRepository;
     private LocationRepository locationRepository;
     private StayReservationDateRepository stayReservationDateRepository;
+    private StayCache stayCache;
+    private LocationSearchService locationSearchService;
+
+    private static final int MAX_GEOTILE_PRECISION = 29;
+    private static final int CLUSTER_PRECISION_OFFSET = 2;
+
+    @Value("${streaming.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${search.viewport.max-stays:2000}")
+    private int viewportMaxStays;
+
+    @Value("${search.clusters.max-clusters:1000}")
+    private int maxClusters;
 
     @Autowired
-    public SearchService(StayRepository stayRepository, StayReservationDateRepository stayReservationDateRepository, LocationRepository locationRepository){
+    public SearchService(StayRepository stayRepository, StayReservationDateRepository stayReservationDateRepository, LocationRepository locationRepository, StayCache stayCache, LocationSearchService locationSearchService){
         this.stayRepository = stayRepository;
         this.stayReservationDateRepository = stayReservationDateRepository;
         this.locationRepository = locationRepository;
+        this.stayCache = stayCache;
+        this.locationSearchService = locationSearchService;
     }
 
+    // readOnly：配置了 replica 时，日期过滤和 stay 查询都走副本
+    @Transactional(readOnly = true)
     public List<Stay> search(int guestNumber, LocalDate checkinDate, LocalDate checkoutDate, double lat, double lon, String distance){
+        return streamSearch(guestNumber, checkinDate, checkoutDate, lat, lon, distance).collect(Collectors.toList());
+    }
+
+    /**
+     * Same as search, for StreamingJson: the geo + date filtering (1-4) runs right away,
+     * the stays are loaded and filtered by guest number streaming.chunk-size at a time while the result is consumed.
+     */
+    @Transactional(readOnly = true)
+    public Stream<Stay> streamSearch(int guestNumber, LocalDate checkinDate, LocalDate checkoutDate, double lat, double lon, String distance){
 
         // 1) 基本校验（强烈建议）
         if (checkinDate == null || checkoutDate == null || !checkoutDate.isAfter(checkinDate)) {
-            return Collections.emptyList();
+            return Stream.empty();
         }
-        List<Stay> filteredStays = new ArrayList<>();
 
-        // 2) ES：按距离找候选 stayIds
-        List<Long> stayIds = locationRepository.searchByDistance(lat, lon, distance);
+        // 2) ES：按距离找候选 stayIds（ES 慢了 / 挂了就用 MySQL 的 stay.lat / lon 兜底，见 LocationSearchService）
+        List<Long> stayIds = locationSearchService.searchByDistance(lat, lon, distance);
         // ❓ 既然在 CustomLocationRepositoryImpl.searchByDistance() 里已经处理过了
         // ❓ 这里是不是多余？
         // -> Impl 里做的“判断”是什么性质？ -> “保证这个 Repository 方法本身健壮” -> 输入参数合法/ 方法本身能安全执行
         // -> 那 Service 层的判断是在干嘛？（这是关键）-> “如果第一阶段搜索结果为空，整个搜索流程可以提前结束”
         if (stayIds == null || stayIds.isEmpty()){
-            return filteredStays;
+            return Stream.empty();
         }
+        return availableStays(stayIds, guestNumber, checkinDate, checkoutDate);
+    }
 
+    /**
+     * Map view: the stays inside the viewport (at most search.viewport.max-stays, ES decides which ones),
+     * with the same date / guest number filtering as search.
+     */
+    @Transactional(readOnly = true)
+    public Stream<Stay> streamViewport(int guestNumber, LocalDate checkinDate, LocalDate checkoutDate,
+                                       double top, double left, double bottom, double right){
+        checkBoundingBox(top, left, bottom, right);
+        if (checkinDate == null || checkoutDate == null || !checkoutDate.isAfter(checkinDate)) {
+            return Stream.empty();
+        }
+        List<Long> stayIds = locationRepository.searchByBoundingBox(top, left, bottom, right, viewportMaxStays);
+        if (stayIds.isEmpty()){
+            return Stream.empty();
+        }
+        return availableStays(stayIds, guestNumber, checkinDate, checkoutDate);
+    }
+
+    /**
+     * Zoomed-out map view: pins aggregated by Elasticsearch (count + centroid per geotile cell), no stay ids, no MySQL.
+     * Counts are listings in the area; availability for dates is only checked once the map is zoomed in (streamViewport).
+     */
+    public List<GeoCluster> clusters(double top, double left, double bottom, double right, int zoom){
+        checkBoundingBox(top, left, bottom, right);
+        if (zoom < 0) {
+            throw new InvalidSearchAreaException("Invalid zoom level");
+        }
+        // 一个 256px 的地图瓦片再切成 4x4 个格子（precision = zoom + 2）：每个 pin 大约占 64px
+        int precision = Math.min(MAX_GEOTILE_PRECISION, zoom + CLUSTER_PRECISION_OFFSET);
+        return locationRepository.clusterByBoundingBox(top, left, bottom, right, precision, maxClusters);
+    }
+
+    private static void checkBoundingBox(double top, double left, double bottom, double right){
+        // left > right 是合法的：viewport 跨过了 180 度经线
+        if (!(bottom >= -90 && top <= 90 && bottom <= top && left >= -180 && left <= 180 && right >= -180 && right <= 180)) {
+            throw new InvalidSearchAreaException("Invalid bounding box");
+        }
+    }
+
+    // 3-5 是 search 和 viewport 共用的：日期过滤 + 按块加载 stay + guestNumber 过滤
+    private Stream<Stay> availableStays(List<Long> stayIds, int guestNumber, LocalDate checkinDate, LocalDate checkoutDate){
         // 3) DB：找在日期区间内已被预订的 stayIds（注意 checkout 不包含）
             // -> 入住日（check-in）包含，退房日（check-out）不包含
-            // -> [checkin, checkout) —— 左闭右开区间 -> checkoutDate.minusDays(1)
-        Set<Long> reservedStayIds = stayReservationDateRepository.findByIdInAndDateBetween(stayIds, checkinDate, checkoutDate.minusDays(1));
-
-        // 4) Service：剔除已被订的
-        List<Long> filteredStayIds = new ArrayList<>();
-        for (Long stayId : stayIds) {
-            if (!reservedStayIds.contains(stayId)) {
-                filteredStayIds.add(stayId);
+            // -> [checkin, checkout) —— 左闭右开区间，EpochDayRange 就是这个区间
+        LongHashSet reservedStayIds = stayReservationDateRepository.findReservedStayIds(
+                stayIds, EpochDayRange.ofStay(checkinDate, checkoutDate));
+
+        // 4) Service：剔除已被订的（primitive set 查找，不装箱；没有被订的就直接用原来的 list）
+        List<Long> filteredStayIds = stayIds;
+        if (!reservedStayIds.isEmpty()) {
+            filteredStayIds = new ArrayList<>(stayIds.size());
+            for (Long stayId : stayIds) {
+                if (!reservedStayIds.contains(stayId)) {
+                    filteredStayIds.add(stayId);
+                }
             }
+            // 以前这个判断写在 for 循环里面：第一个候选被订了就直接返回空结果
             if (filteredStayIds.isEmpty()) {
-                return Collections.emptyList();
+                return Stream.empty();
             }
         }
 
-        // 5) DB：按 guestNumber 过滤并返回最终 Stay
-        filteredStays = stayRepository.findByIdInAndGuestNumberGreaterThanEqual(filteredStayIds, guestNumber);
-        return filteredStays;
+        // 5) 缓存（没命中才查 DB）：按 id 一块一块拿 stay
+        //    没命中的那些 guest_number 直接在 SQL 里过滤，住不下的不加载也不进缓存；
+        //    缓存命中的没经过 SQL，在内存里再判断一次（对 DB 查出来的那些是 no-op）
+        return KeysetStreams.byChunks(filteredStayIds, chunk -> stayCache.getAll(chunk,
+                        missingIds -> stayRepository.findWithImagesByIdInAndGuestNumberGreaterThanEqual(missingIds, guestNumber)),
+                        chunkSize)
+                .filter(stay -> stay.getGuestNumber() >= guestNumber);
     }
 }
@@ -0,0 +1,249 @@
+package com.tq.staybooking.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.tq.staybooking.model.Stay;
+import com.tq.staybooking.model.StayImage;
+import com.tq.staybooking.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Read-through cache for stay details (stay + host + images), keyed by stay id,
+ * plus a small host -> stay ids index for the /stays list view.
+ * The host index remembers the listing version it was loaded under (ListingVersionService) and is only reused for
+ * that version, so an index loaded before a write on another instance can't be served under the newer ETag.
+ *
+ * What is cached is an immutable snapshot (CachedStay), never the entity: every read gets its own detached Stay,
+ * so no two requests share a mutable object and no lazy collection (reservedDates) is ever reachable from the cache.
+ *
+ * Bounded by size and TTL. Entries are evicted by StayService on add/delete (now and again after the transaction
+ * commits). For spring.datasource.replica.sticky-window after that commit, loads of the same stay / host are served
+ * but not cached: they may come from a replica that hasn't caught up yet, and must not be pinned for the whole TTL.
+ * Hit/miss/eviction counters are published as cache.* metrics (names: stay.details, stay.host-index).
+ */
+@Component
+public class StayCache {
+    private Cache<Long, CachedStay> stays;
+    private Cache<String, HostIndex> hostStayIds;
+    // 刚写过的 stay / host：这段时间里查到的数据可能来自落后的 replica，只返回不缓存
+    private Cache<Long, Boolean> recentlyWrittenStays;
+    private Cache<String, Boolean> recentlyWrittenHosts;
+
+    @Autowired
+    public StayCache(@Value("${stay.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${stay.cache.ttl:10m}") Duration ttl,
+                     @Value("${spring.datasource.replica.sticky-window:5s}") Duration writeWindow,
+                     MeterRegistry meterRegistry) {
+        this(maximumSize, ttl, writeWindow, meterRegistry, Ticker.systemTicker());
+    }
+
+    StayCache(long maximumSize, Duration ttl, Duration writeWindow, MeterRegistry meterRegistry, Ticker ticker) {
+        this.stays = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.hostStayIds = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.recentlyWrittenStays = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(writeWindow)
+                .ticker(ticker)
+                .build();
+        this.recentlyWrittenHosts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(writeWindow)
+                .ticker(ticker)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, stays, "stay.details");
+        CaffeineCacheMetrics.monitor(meterRegistry, hostStayIds, "stay.host-index");
+    }
+
+    // loader 返回 null（stay 不存在）时不会被缓存
+    public Stay get(Long stayId, Function<Long, Stay> loader) {
+        CachedStay cached = stays.getIfPresent(stayId);
+        if (cached == null) {
+            Stay loaded = loader.apply(stayId);
+            if (loaded == null) {
+                return null;
+            }
+            cached = new CachedStay(loaded);
+            cache(cached);
+        }
+        return cached.toStay();
+    }
+
+    /**
+     * Returns the cached stays for the given ids, in the same order as the ids.
+     * Missing ids are loaded with ONE call to the loader; ids the loader can't find are skipped.
+     */
+    public List<Stay> getAll(Collection<Long> stayIds, Function<Collection<Long>, List<Stay>> loader) {
+        // 全部命中（热门搜索的常态）：逐个 getIfPresent，不经过 loader
+        List<CachedStay> cached = new ArrayList<>(stayIds.size());
+        List<Long> missingIds = null;
+        for (Long stayId : stayIds) {
+            CachedStay stay = stays.getIfPresent(stayId);
+            if (stay == null) {
+                if (missingIds == null) {
+                    missingIds = new ArrayList<>();
+                }
+                missingIds.add(stayId);
+            }
+            cached.add(stay);
+        }
+        if (missingIds != null) {
+            Map<Long, CachedStay> loaded = new HashMap<>();
+            for (Stay stay : loader.apply(missingIds)) {
+                CachedStay snapshot = new CachedStay(stay);
+                cache(snapshot);
+                loaded.put(snapshot.id, snapshot);
+            }
+            int i = 0;
+            for (Long stayId : stayIds) {
+                if (cached.get(i) == null) {
+                    cached.set(i, loaded.get(stayId));
+                }
+                i++;
+            }
+        }
+        List<Stay> result = new ArrayList<>(cached.size());
+        for (CachedStay stay : cached) {
+            if (stay != null) {
+                result.add(stay.toStay());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param version the host's current listing version; a cached index loaded under another version is reloaded
+     */
+    public List<Long> getHostStayIds(String username, long version, Function<String, List<Long>> loader) {
+        HostIndex cached = hostStayIds.getIfPresent(username);
+        if (cached != null && cached.version == version) {
+            return cached.stayIds;
+        }
+        List<Long> loaded = List.copyOf(loader.apply(username));
+        if (recentlyWrittenHosts.getIfPresent(username) == null) {
+            hostStayIds.put(username, new HostIndex(version, loaded));
+        }
+        return loaded;
+    }
+
+    /**
+     * Evicts the stay (and its host's list) now and again once the current transaction commits,
+     * and opens the no-caching window for both. stayId may be null for a host-only eviction.
+     */
+    public void evict(Long stayId, String username) {
+        doEvict(stayId, username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    // replica 的延迟从提交开始算，窗口也从这里重新算
+                    doEvict(stayId, username);
+                }
+            });
+        }
+    }
+
+    private void cache(CachedStay stay) {
+        // 查询可能是在写之前开始的：放进去之前再看一眼窗口（窗口在 evict 时就已经打开了）
+        if (recentlyWrittenStays.getIfPresent(stay.id) == null) {
+            stays.put(stay.id, stay);
+        }
+    }
+
+    private void doEvict(Long stayId, String username) {
+        if (stayId != null) {
+            recentlyWrittenStays.put(stayId, Boolean.TRUE);
+            stays.invalidate(stayId);
+        }
+        if (username != null) {
+            recentlyWrittenHosts.put(username, Boolean.TRUE);
+            hostStayIds.invalidate(username);
+        }
+    }
+
+    // version 是加载时 listing 的版本号：版本变了（哪怕是别的实例写的）就不再用这份 id 列表
+    private static final class HostIndex {
+        private final long version;
+        private final List<Long> stayIds;
+
+        private HostIndex(long version, List<Long> stayIds) {
+            this.version = version;
+            this.stayIds = stayIds;
+        }
+    }
+
+    // 缓存里真正存的东西：全是 final + 不可变 list；每次读都 new 一个新的 Stay 出去
+    static final class CachedStay {
+        private final Long id;
+        private final String name;
+        private final String description;
+        private final String address;
+        private final int guestNumber;
+        private final String hostUsername;
+        private final List<String> imageUrls;
+        private final Double lat;
+        private final Double lon;
+
+        CachedStay(Stay stay) {
+            this.id = stay.getId();
+            this.name = stay.getName();
+            this.description = stay.getDescription();
+            this.address = stay.getAddress();
+            this.guestNumber = stay.getGuestNumber();
+            this.hostUsername = stay.getHost() == null ? null : stay.getHost().getUsername();
+            List<String> urls = new ArrayList<>();
+            if (stay.getImages() != null) {
+                for (StayImage image : stay.getImages()) {
+                    urls.add(image.getUrl());
+                }
+            }
+            this.imageUrls = List.copyOf(urls);
+            this.lat = stay.getLat();
+            this.lon = stay.getLon();
+        }
+
+        Stay toStay() {
+            Stay stay = new Stay.Builder()
+                    .setId(id)
+                    .setName(name)
+                    .setDescription(description)
+                    .setAddress(address)
+                    .setGuestNumber(guestNumber)
+                    .setHost(hostUsername == null ? null : new User.Builder().setUsername(hostUsername).build())
+                    .build();
+            List<StayImage> images = new ArrayList<>(imageUrls.size());
+            for (String url : imageUrls) {
+                images.add(new StayImage(url, stay));
+            }
+            stay.setImages(images);
+            if (lat != null && lon != null) {
+                stay.setLocation(lat, lon);
+            }
+            return stay;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.tq.staybooking.service;
 
+import com.tq.staybooking.config.datasource.ReadYourWritesTracker;
 import com.tq.staybooking.exception.StayDeleteException;
 import com.tq.staybooking.exception.StayNotExistException;
 import com.tq.staybooking.model.*;
@@ -7,10 +8,16 @@ import com.tq.staybooking.repository.LocationRepository;
 import com.tq.staybooking.repository.ReservationRepository;
 import com.tq.staybooking.repository.StayRepository;
 import com.tq.staybooking.repository.StayReservationDateRepository;
+import com.tq.staybooking.util.KeysetStreams;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.geo.GeoPoint;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDate;
@@ -18,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 1. Go to the com.tq.staybooking.service package and create a new class StayService.
@@ -44,31 +52,62 @@ public class StayService {
     private ReservationRepository reserveRepository;
     private StayReservationDateRepository stayReservationDateRepository;
 
+    private StayCache stayCache;
+    private ReadYourWritesTracker readYourWritesTracker;
+    private ListingVersionService listingVersionService;
+
+    @Value("${streaming.chunk-size:500}")
+    private int chunkSize;
 
     @Autowired
-    public StayService(StayRepository stayRepository, ImageStorageService imageStorageService, LocationRepository locationRepository, GeoCodingService geoCodingService, ReservationRepository reserveRepository,StayReservationDateRepository stayReservationDateRepository ) {
+    public StayService(StayRepository stayRepository, ImageStorageService imageStorageService, LocationRepository locationRepository, GeoCodingService geoCodingService, ReservationRepository reserveRepository,StayReservationDateRepository stayReservationDateRepository, StayCache stayCache, ReadYourWritesTracker readYourWritesTracker, ListingVersionService listingVersionService) {
         this.stayRepository = stayRepository;
         this.imageStorageService = imageStorageService;
         this.locationRepository = locationRepository;
         this.geoCodingService = geoCodingService;
         this.reserveRepository= reserveRepository;
         this.stayReservationDateRepository = stayReservationDateRepository;
+        this.stayCache = stayCache;
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.listingVersionService = listingVersionService;
     }
 
-    public List<Stay> listByUser(String username){
-        return stayRepository.findByHost(new User.Builder().setUsername(username).build());
+    // 先查缓存里这个 host 有哪些 stay id，再按 id 从缓存拿 stay；都命中时完全不访问 MySQL
+    // 返回 lazy stream（给 StreamingJson 边查边写）：stay 每次只加载 streaming.chunk-size 个。
+    // 不要在事务里消费：每一块都是 repository 自己的只读事务，缓存没命中时的查询走 replica（如果配置了）
+    // listingVersion：ETag 用的版本号，host 索引只在同一个版本下复用（见 StayCache）
+    public Stream<Stay> streamByUser(String username, long listingVersion){
+        List<Long> stayIds = stayCache.getHostStayIds(username, listingVersion, host -> {
+            User user = new User.Builder().setUsername(host).build();
+            // 建 host 索引只需要 id，不用把房东所有 stay 整个加载进内存
+            List<Long> ids = new ArrayList<>();
+            KeysetStreams.byKeyset((afterId, limit) -> stayRepository.findIdsByHostAfter(user, afterId, PageRequest.of(0, limit)),
+                    page -> page, chunkSize).forEach(ids::add);
+            return ids;
+        });
+        return KeysetStreams.byChunks(stayIds, chunk -> stayCache.getAll(chunk, stayRepository::findWithImagesByIdIn), chunkSize);
     }
 
+    @Transactional(readOnly = true)
     public Stay findByIdAndHost(Long stayId, String username) throws StayNotExistException {
-        Stay stay = stayRepository.findByIdAndHost(stayId, new User.Builder().setUsername(username).build());
-        if (stay == null){
+        Stay stay = stayCache.get(stayId, id -> {
+            List<Stay> stays = stayRepository.findWithImagesByIdIn(List.of(id));
+            return stays.isEmpty() ? null : stays.get(0);
+        });
+        // 缓存是按 id 存的，所以 host 的校验放在这里做
+        if (stay == null || stay.getHost() == null || !username.equals(stay.getHost().getUsername())){
             throw new StayNotExistException("Stay doesn't exist.");
         }
         return stay;
     }
 
+    // 事务：stay 和 listing 版本号一起提交（而且 bump 不会在事务外再去连接池里拿第二个连接）
+    @Transactional
     public void add(Stay stay) {
         stayRepository.save(stay);
+        stayCache.evict(stay.getId(), stay.getHost().getUsername());
+        readYourWritesTracker.markWrite(stay.getHost().getUsername());
+        listingVersionService.bump(ListingVersionService.stays(stay.getHost().getUsername()));
     }
 
     @Transactional(isolation = Isolation.SERIALIZABLE)
@@ -82,6 +121,17 @@ public class StayService {
             throw new StayDeleteException("Cannot delete stay with active reservation");
         }
         stayRepository.delete(stay);
+        stayCache.evict(stayId, username);
+        readYourWritesTracker.markWrite(username);
+        listingVersionService.bump(ListingVersionService.stays(username));
+        // ES 里的 Location 文档也要一起删，不然 /search 会一直搜到已经不存在的 stay id
+        // 但要等 MySQL 提交之后：事务回滚的话 stay 还在，ES 文档不能先没了（提交后删除失败只会留下 orphan，reconcile 会清掉）
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                locationRepository.deleteById(stayId);
+            }
+        });
     }
 
     /**
@@ -101,11 +151,18 @@ public class StayService {
         }
         stay.setImages(stayImages);
 
+        // 先解析地址：经纬度和 stay 一起 INSERT 进 MySQL（ES 不可用时 /search 的兜底），地址不对也不会写任何数据
+        GeoPoint geoPoint = geoCodingService.getLatLng(null, stay.getAddress()).getGeoPoint();
+        stay.setLocation(geoPoint.getLat(), geoPoint.getLon());
+
         stayRepository.save(stay);
+        // 新 stay + 新图片：host 的列表要失效，stay 本身如果被缓存过也一起清掉
+        stayCache.evict(stay.getId(), stay.getHost().getUsername());
+        readYourWritesTracker.markWrite(stay.getHost().getUsername());
+        listingVersionService.bump(ListingVersionService.stays(stay.getHost().getUsername()));
 
-        // add location
-        Location location = geoCodingService.getLatLng(stay.getId(), stay.getAddress());
-        locationRepository.save(location);
+        // add location：ES 文档要用数据库生成的 stay.id
+        locationRepository.save(new Location(stay.getId(), geoPoint));
     }
 }
 /**
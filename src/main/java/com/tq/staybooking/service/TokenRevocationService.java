@@ -0,0 +1,216 @@
+package com.tq.staybooking.service;
+
+import com.tq.staybooking.config.security.UserDetailsCache;
+import com.tq.staybooking.model.RevokedToken;
+import com.tq.staybooking.repository.RevokedTokenRepository;
+import com.tq.staybooking.util.BloomFilter;
+import com.tq.staybooking.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revocation list for JWTs: logout revokes one token (by jti), "logout everywhere" revokes every token of a user
+ * issued before the revocation (id "u:" + username). The comparison uses the millisecond "iat_ms" claim, so a
+ * token issued earlier in the same second is revoked while a re-login right after it is kept. Tokens signed
+ * before that claim existed only have the 1-second iat and are revoked up to and including the revocation's second.
+ *
+ * Rows are persisted in the revoked_token table so every instance sees them; each instance mirrors the
+ * non-expired rows in memory. JwtAuthenticationFilter calls isRevoked() on every request:
+ * the Bloom filter answers "definitely not revoked" for almost every token, only possible hits
+ * touch the exact map, and nothing on the request path goes to the DB.
+ *
+ * refresh() pulls only rows revoked since the last refresh; once per rebuild-interval the whole snapshot
+ * is rebuilt from the DB so expired rows (and their Bloom bits) go away.
+ */
+@Service
+public class TokenRevocationService {
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+    private static final String USER_PREFIX = "u:";
+
+    private RevokedTokenRepository revokedTokenRepository;
+    private UserDetailsCache userDetailsCache;
+
+    private long expectedRevocations;
+    private double falsePositiveRate;
+    private Duration rebuildInterval;
+    // 别的实例刚 commit 的行 revoked_at 可能比我们的游标早一点，多往回看一点，重复的行无所谓
+    private Duration refreshOverlap;
+
+    private volatile Snapshot snapshot;
+    private volatile Instant refreshCursor = Instant.EPOCH;
+    private volatile Instant lastRebuild = Instant.EPOCH;
+
+    private Counter bloomHits;
+    private Counter revokedRejections;
+
+    @Autowired
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  UserDetailsCache userDetailsCache,
+                                  @Value("${jwt.revocation.expected-size:100000}") long expectedRevocations,
+                                  @Value("${jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate,
+                                  @Value("${jwt.revocation.rebuild-interval:1h}") Duration rebuildInterval,
+                                  @Value("${jwt.revocation.refresh-overlap:10s}") Duration refreshOverlap,
+                                  MeterRegistry meterRegistry) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.userDetailsCache = userDetailsCache;
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildInterval = rebuildInterval;
+        this.refreshOverlap = refreshOverlap;
+        this.snapshot = new Snapshot(new BloomFilter(expectedRevocations, falsePositiveRate));
+
+        this.bloomHits = Counter.builder("jwt.revocation.bloom.hits")
+                .description("Token checks that passed the Bloom filter and had to look at the exact set")
+                .register(meterRegistry);
+        this.revokedRejections = Counter.builder("jwt.revocation.rejected")
+                .description("Requests rejected because their token was revoked")
+                .register(meterRegistry);
+        meterRegistry.gauge("jwt.revocation.size", this, service -> service.snapshot.revokedAt.size());
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            // lastRebuild 还是 EPOCH，第一次 refresh() 会再 rebuild
+            logger.warn("Failed to load revoked tokens at startup", e);
+        }
+    }
+
+    /**
+     * Request path: no DB, no locks. Old tokens without a jti are still covered by the user-wide check.
+     */
+    public boolean isRevoked(Claims claims) {
+        Snapshot current = snapshot;
+        String jti = claims.getId();
+        if (jti != null && isMarked(current, jti)) {
+            revokedRejections.increment();
+            return true;
+        }
+        String userKey = USER_PREFIX + claims.getSubject();
+        if (current.bloom.mightContain(userKey)) {
+            bloomHits.increment();
+            Long revokedAt = current.revokedAt.get(userKey);
+            // 只杀 revoke 那一刻以前签发的 token，之后重新登录拿到的新 token 不受影响
+            if (revokedAt != null && issuedBefore(claims, revokedAt)) {
+                revokedRejections.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean issuedBefore(Claims claims, long revokedAtMillis) {
+        Long issuedAtMillis = JwtUtil.issuedAtMillis(claims);
+        if (issuedAtMillis != null) {
+            return issuedAtMillis < revokedAtMillis;
+        }
+        // 老 token 只有秒级的 iat：revoke 的那一秒里签发的也算，宁可让它重新登录也不放过 revoke 之前的
+        // （这一秒里重新登录拿到的新 token 都有 iat_ms，不受影响）
+        if (claims.getIssuedAt() == null) {
+            return true;
+        }
+        return Math.floorDiv(claims.getIssuedAt().getTime(), 1000) <= Math.floorDiv(revokedAtMillis, 1000);
+    }
+
+    private boolean isMarked(Snapshot current, String key) {
+        if (!current.bloom.mightContain(key)) {
+            return false;
+        }
+        bloomHits.increment();
+        return current.revokedAt.containsKey(key);
+    }
+
+    // logout：只 revoke 这一个 token
+    public void revokeToken(Claims claims) {
+        if (claims.getId() == null) {
+            // 升级前签发的 token 没有 jti，只能按用户整体 revoke
+            revokeUser(claims.getSubject());
+            return;
+        }
+        Instant expiresAt = claims.getExpiration() == null
+                ? Instant.now().plusMillis(JwtUtil.TOKEN_TTL_MILLIS)
+                : claims.getExpiration().toInstant();
+        save(new RevokedToken(claims.getId(), Instant.now(), expiresAt));
+    }
+
+    // logout everywhere / 禁用用户：revoke 这个用户到现在为止签发的所有 token
+    public void revokeUser(String username) {
+        Instant now = Instant.now();
+        save(new RevokedToken(USER_PREFIX + username, now, now.plusMillis(JwtUtil.TOKEN_TTL_MILLIS)));
+        userDetailsCache.evict(username);
+    }
+
+    private void save(RevokedToken revokedToken) {
+        revokedTokenRepository.save(revokedToken);
+        // 本实例马上生效，其他实例等下一次 refresh
+        snapshot.add(revokedToken);
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.refresh-interval-ms:5000}",
+            initialDelayString = "${jwt.revocation.refresh-interval-ms:5000}")
+    public void refresh() {
+        try {
+            if (Instant.now().isAfter(lastRebuild.plus(rebuildInterval))) {
+                rebuild();
+                return;
+            }
+            Instant since = refreshCursor.minus(refreshOverlap);
+            Snapshot current = snapshot;
+            Instant newest = refreshCursor;
+            for (RevokedToken revokedToken : revokedTokenRepository.findByRevokedAtAfter(since)) {
+                current.add(revokedToken);
+                if (revokedToken.getRevokedAt().isAfter(newest)) {
+                    newest = revokedToken.getRevokedAt();
+                }
+            }
+            refreshCursor = newest;
+        } catch (RuntimeException e) {
+            // DB 暂时连不上：继续用手上的 snapshot，下次再试
+            logger.warn("Failed to refresh revoked tokens", e);
+        }
+    }
+
+    private void rebuild() {
+        Instant start = Instant.now();
+        revokedTokenRepository.deleteByExpiresAtBefore(start);
+        List<RevokedToken> active = revokedTokenRepository.findByExpiresAtAfter(start);
+        Snapshot rebuilt = new Snapshot(new BloomFilter(Math.max(expectedRevocations, 2L * active.size()), falsePositiveRate));
+        for (RevokedToken revokedToken : active) {
+            rebuilt.add(revokedToken);
+        }
+        snapshot = rebuilt;
+        // 从 rebuild 开始的时间接着增量刷新，rebuild 期间新 revoke 的行不会漏
+        refreshCursor = start;
+        lastRebuild = start;
+    }
+
+    private static class Snapshot {
+        private final BloomFilter bloom;
+        private final ConcurrentHashMap<String, Long> revokedAt = new ConcurrentHashMap<>();
+
+        private Snapshot(BloomFilter bloom) {
+            this.bloom = bloom;
+        }
+
+        // 先放 map 再放 Bloom：Bloom 说“可能有”的时候 map 里一定已经有了
+        private void add(RevokedToken revokedToken) {
+            revokedAt.merge(revokedToken.getId(), revokedToken.getRevokedAt().toEpochMilli(), Math::max);
+            bloom.put(revokedToken.getId());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.tq.staybooking.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tq.staybooking.exception.InvalidProvisioningRequestException;
+import com.tq.staybooking.model.ProvisioningReport;
+import com.tq.staybooking.model.User;
+import com.tq.staybooking.model.UserRole;
+import com.tq.staybooking.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk user provisioning for partner onboarding.
+ *
+ * The request body is a JSON array of {"username": ..., "password": ...}, read as a stream so a large file never
+ * sits in memory. Users are handled in chunks: passwords are hashed on a small dedicated pool (separate from the
+ * login pool, so onboarding can't starve logins), then the chunk is written with one INSERT IGNORE batch
+ * per table. Usernames that already exist are skipped and counted, not treated as errors.
+ *
+ * The pool's queue is bounded. When hashing falls behind, the request thread waits for a free slot before
+ * submitting more (it never hashes itself: BCrypt stays off Tomcat threads), which slows down reading the
+ * stream instead of buffering it.
+ *
+ * A body that isn't a JSON array of objects, isn't valid JSON, or doesn't end with the closing "]" fails the request
+ * (InvalidProvisioningRequestException, 400) instead of returning a report for the part before the problem.
+ * Chunks written before that point stay committed (the users are skipped as duplicates when the fixed file is resent).
+ */
+@Service
+public class UserProvisioningService implements DisposableBean {
+    private UserRepository userRepository;
+    private PasswordEncoder passwordEncoder;
+    private ObjectMapper objectMapper;
+    private TransactionTemplate transactionTemplate;
+    private ThreadPoolExecutor hashingPool;
+    // 池子里（排队 + 正在跑）最多这么多个任务；满了提交的人就等着
+    private Semaphore hashingSlots;
+    private int batchSize;
+
+    @Autowired
+    public UserProvisioningService(UserRepository userRepository, PasswordEncoder passwordEncoder, ObjectMapper objectMapper,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${provisioning.hashing-threads:2}") int hashingThreads,
+                                   @Value("${provisioning.batch-size:100}") int batchSize,
+                                   MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.hashingPool = new ThreadPoolExecutor(hashingThreads, hashingThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.batchSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "provisioning-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.hashingSlots = new Semaphore(this.batchSize + hashingThreads);
+        ExecutorServiceMetrics.monitor(meterRegistry, hashingPool, "provisioning-hashing");
+    }
+
+    public ProvisioningReport provision(InputStream body, UserRole role) throws IOException {
+        long received = 0;
+        long created = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new InvalidProvisioningRequestException("Expected a JSON array of users");
+            }
+            List<User> chunk = new ArrayList<>(batchSize);
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                ProvisionedUser provisioned = parser.readValueAs(ProvisionedUser.class);
+                if (provisioned.username == null || provisioned.username.isEmpty() || provisioned.password == null) {
+                    continue;
+                }
+                chunk.add(new User.Builder()
+                        .setUsername(provisioned.username)
+                        .setPassword(provisioned.password)
+                        .setEnabled(true)
+                        .build());
+                received++;
+                if (chunk.size() == batchSize) {
+                    created += writeChunk(chunk, role);
+                    chunk.clear();
+                }
+            }
+            // 以前遇到第一个不是对象的元素（或者 body 被截断）就直接停了，还返回一个“成功”的 report
+            if (token != JsonToken.END_ARRAY) {
+                throw new InvalidProvisioningRequestException("Expected a user object or the end of the array, got "
+                        + (token == null ? "end of input" : token.asString() != null ? token.asString() : token.name())
+                        + progress(received, created));
+            }
+            created += writeChunk(chunk, role);
+        } catch (JsonProcessingException e) {
+            // 不是合法的 JSON，或者字段类型不对（比如 "username": {}）
+            throw new InvalidProvisioningRequestException("Malformed user list: " + e.getOriginalMessage()
+                    + progress(received, created));
+        }
+        return new ProvisioningReport(received, created);
+    }
+
+    private static String progress(long received, long created) {
+        return " (after " + received + " users, " + created + " created)";
+    }
+
+    private int writeChunk(List<User> chunk, UserRole role) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        List<Future<String>> hashes = new ArrayList<>(chunk.size());
+        for (User user : chunk) {
+            String rawPassword = user.getPassword();
+            hashes.add(submitHash(rawPassword));
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            chunk.get(i).setPassword(await(hashes.get(i)));
+        }
+        // 每个 chunk 一个事务：users 和 authority 两个 batch 一起提交；已经提交的 chunk 不会因为后面出错而回滚
+        Integer created = transactionTemplate.execute(status -> userRepository.insertIgnoreWithAuthority(chunk, role.name()));
+        return created == null ? 0 : created;
+    }
+
+    private Future<String> submitHash(String rawPassword) {
+        try {
+            hashingSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Provisioning interrupted", e);
+        }
+        try {
+            return hashingPool.submit(() -> {
+                try {
+                    return passwordEncoder.encode(rawPassword);
+                } finally {
+                    hashingSlots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 只有 shutdown 之后才会走到这里
+            hashingSlots.release();
+            throw e;
+        }
+    }
+
+    private static String await(Future<String> hash) {
+        try {
+            return hash.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Provisioning interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to hash password", e.getCause());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        hashingPool.shutdownNow();
+    }
+
+    // 只读 username / password，其他字段（比如 enabled）一律忽略
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static class ProvisionedUser {
+        public String username;
+        public String password;
+    }
+}
@@ -0,0 +1,84 @@
+package com.tq.staybooking.util;
+
+import java.time.LocalDate;
+
+/**
+ * The nights of a stay as epoch days: [first, end), i.e. check-in night included, check-out day excluded.
+ * Two ints instead of one LocalDate per night; a LocalDate is only created at the JDBC boundary.
+ */
+public final class EpochDayRange {
+    private final int first;
+    private final int end;
+
+    private EpochDayRange(int first, int end) {
+        this.first = first;
+        this.end = end;
+    }
+
+    public static EpochDayRange of(int first, int end) {
+        if (end < first) {
+            throw new IllegalArgumentException("end " + end + " is before first " + first);
+        }
+        return new EpochDayRange(first, end);
+    }
+
+    // checkout 当天不算：[checkin, checkout)
+    public static EpochDayRange ofStay(LocalDate checkinDate, LocalDate checkoutDate) {
+        return of(Math.toIntExact(checkinDate.toEpochDay()), Math.toIntExact(checkoutDate.toEpochDay()));
+    }
+
+    public int first() {
+        return first;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    public int nights() {
+        return end - first;
+    }
+
+    public boolean isEmpty() {
+        return end == first;
+    }
+
+    public boolean contains(int epochDay) {
+        return epochDay >= first && epochDay < end;
+    }
+
+    public boolean overlaps(EpochDayRange other) {
+        return first < other.end && other.first < end;
+    }
+
+    public LocalDate firstDate() {
+        return LocalDate.ofEpochDay(first);
+    }
+
+    // 不包含：查询时用 date >= firstDate AND date < endDate
+    public LocalDate endDate() {
+        return LocalDate.ofEpochDay(end);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EpochDayRange)) {
+            return false;
+        }
+        EpochDayRange that = (EpochDayRange) o;
+        return first == that.first && end == that.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * first + end;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + firstDate() + ", " + endDate() + ")";
+    }
+}
@@ -0,0 +1,43 @@
+package com.tq.staybooking.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Smile and CBOR ObjectMappers built from Spring Boot's Jackson2ObjectMapperBuilder, so they carry exactly the same
+ * configuration as the JSON one (spring.jackson.*, JavaTimeModule, dates as "yyyy-MM-dd").
+ * Annotations (@JsonProperty, @JsonIgnore, @JsonDeserialize(builder = ...)) don't depend on the format,
+ * so Stay / Reservation / User map the same way in all three encodings.
+ *
+ * Used by BinaryEncodingConfig (plain @RestController responses and request bodies) and by StreamingJson (streamed lists).
+ */
+@Component
+public class JacksonBinaryMappers {
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(APPLICATION_SMILE_VALUE);
+    public static final String APPLICATION_CBOR_VALUE = MediaType.APPLICATION_CBOR_VALUE;
+    public static final MediaType APPLICATION_CBOR = MediaType.APPLICATION_CBOR;
+
+    private ObjectMapper smile;
+    private ObjectMapper cbor;
+
+    // Boot 的 builder 是 prototype bean，这里拿到的是自己的一份，改 factory 不会影响 JSON 那个 ObjectMapper
+    @Autowired
+    public JacksonBinaryMappers(Jackson2ObjectMapperBuilder builder) {
+        this.smile = builder.factory(new SmileFactory()).build();
+        this.cbor = builder.factory(new CBORFactory()).build();
+    }
+
+    public ObjectMapper getSmile() {
+        return smile;
+    }
+
+    public ObjectMapper getCbor() {
+        return cbor;
+    }
+}
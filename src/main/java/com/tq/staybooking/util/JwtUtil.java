@@ -1,17 +1,35 @@
 package com.tq.staybooking.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
 
+import javax.annotation.PostConstruct;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * Create a new package called com.tq.staybooking.util and add a new class JwtUtil to it.
@@ -36,14 +54,63 @@ public class JwtUtil {
     @Value("${jwt.secret}")
     private String secret; // 注意：这里 application.properties 里要写 jwt.secret，不要拼成 secrete 哦
 
+    public static final String ROLES_CLAIM = "roles";
+
+    // 标准的 iat 只到秒；logout everywhere 要按毫秒比，所以另外签一个毫秒的签发时间
+    public static final String ISSUED_AT_MILLIS_CLAIM = "iat_ms";
+
+    // token 有效期 24 小时；TokenRevocationService 也用它算 revoke 记录什么时候可以删
+    public static final long TOKEN_TTL_MILLIS = 1000L * 60 * 60 * 24;
+
+    @Value("${jwt.cache.maximum-size:10000}")
+    private long cacheMaximumSize;
+
+    @Value("${jwt.cache.max-ttl:5m}")
+    private Duration cacheMaxTtl;
+
+    // secret 启动后不会变，Key 和 parser 只建一次，不用每次请求都重新算
+    private Key signingKey;
+    private JwtParser parser;
+
+    // 最近验证通过的 token：key = token 的 SHA-256，value = 已验证的 Claims
+    // 每条缓存最晚在 token 的 exp 过期，所以缓存命中的 token 一定还没过期
+    private Cache<String, Claims> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        long untilExpiration = claims.getExpiration() == null
+                                ? 0
+                                : Duration.ofMillis(claims.getExpiration().getTime() - System.currentTimeMillis()).toNanos();
+                        return Math.max(0, Math.min(untilExpiration, cacheMaxTtl.toNanos()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, claims, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
     /**
      * 把字符串 secret 转成真正的签名 Key
      * HS256 要求 key 至少 256 bit（32 字节）,
      * 所以 secret 字符串你最好写得长一点。
      */
     private Key getSigningKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signingKey;
     }
 //    public String generateToken(String subject){
 //        return Jwts.builder()
@@ -56,12 +123,30 @@ public class JwtUtil {
 //    }
     // 生成 token
     public String generateToken(String subject) {
+        return generateToken(subject, Collections.emptyList());
+    }
+
+    /**
+     * Same as generateToken(subject), plus a signed "roles" claim (e.g. ["ROLE_GUEST"]).
+     * With jwt.roles-claim.enabled=true the filter trusts this claim and never loads the user from the DB.
+     */
+    public String generateToken(String subject, Collection<? extends GrantedAuthority> authorities) {
+        Map<String, Object> claims = new HashMap<>();
+        if (!authorities.isEmpty()) {
+            List<String> roles = new ArrayList<>();
+            for (GrantedAuthority authority : authorities) {
+                roles.add(authority.getAuthority());
+            }
+            claims.put(ROLES_CLAIM, roles);
+        }
+        long now = System.currentTimeMillis();
+        claims.put(ISSUED_AT_MILLIS_CLAIM, now);
         return Jwts.builder()
-                .setClaims(new HashMap<>())                      // 自定义的 payload（你现在用空 map）
+                .setClaims(claims)                               // 自定义的 payload：roles
+                .setId(UUID.randomUUID().toString())             // jti：logout 时按它 revoke 这一个 token
                 .setSubject(subject)                             // 这里放 username, 把“你是谁”写进 token（你选择写 username）
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis()
-                        + 1000 * 60 * 60 * 24))           // 24 小时
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + TOKEN_TTL_MILLIS)) // 24 小时
                 .signWith(getSigningKey(), SignatureAlgorithm.HS256) // 防伪：服务器用 secret 签名，别人造不出来
                 .compact();
 }
@@ -85,23 +170,66 @@ public class JwtUtil {
         //}
     // Claims 是一个接口，本质就是：Map<String, Object>
     private Claims extractClaims(String token) {
-        return Jwts
-                .parserBuilder()    // ⬅️ 新版本必须用 parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
+        return parser    // ⬅️ 新版本必须用 parserBuilder()，在 init() 里建好了
                 .parseClaimsJws(token) // 它一次性做了 3 件事（这是“逻辑必然”，不是 Spring 规定）：1️⃣ 验证签名2️⃣ 检查结构是否合法3️⃣ 解析 payload(把 payload JSON 转成一个 Java Map（Claims））
                 .getBody();
     }
 
+    /**
+     * Parse-once verification: checks signature + expiration and returns the claims.
+     * A token verified recently is served from the cache (one SHA-256 + one map lookup).
+     *
+     * @throws JwtException if the token is malformed, forged or expired
+     */
+    public Claims verify(String token) throws JwtException {
+        String digest = digest(token);
+        Claims claims = verifiedTokens.getIfPresent(digest);
+        if (claims != null) {
+            return claims;
+        }
+        claims = extractClaims(token); // 过期的 token 这里会直接抛 ExpiredJwtException
+        verifiedTokens.put(digest, claims);
+        return claims;
+    }
+
+    // 毫秒的签发时间；这个 claim 加上之前签发的 token 没有，返回 null
+    public static Long issuedAtMillis(Claims claims) {
+        Object value = claims.get(ISSUED_AT_MILLIS_CLAIM);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    // token 里的角色；老 token 没有 roles claim 时返回空 list
+    public List<GrantedAuthority> extractAuthorities(Claims claims) {
+        Object roles = claims.get(ROLES_CLAIM);
+        if (!(roles instanceof List)) {
+            return Collections.emptyList();
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        for (Object role : (List<?>) roles) {
+            authorities.add(new SimpleGrantedAuthority(String.valueOf(role)));
+        }
+        return authorities;
+    }
+
     public String extractUsername(String token){
-        return extractClaims(token).getSubject();
+        return verify(token).getSubject();
     }
     public Date extractExpiration(String token){
-        return extractClaims(token).getExpiration();
+        return verify(token).getExpiration();
     }
     public boolean validateToken(String token){
         return extractExpiration(token).after(new Date());
     }
+
+    // 缓存的 key 用 token 的摘要，不直接存 token 原文
+    private String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 }
 
 // 用户登录（/login） → 校验用户名密码 → 生成 JWT token → 返回给前端
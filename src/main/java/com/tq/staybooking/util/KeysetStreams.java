@@ -0,0 +1,84 @@
+package com.tq.staybooking.util;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy streams over id-ordered results, one chunk of entities in memory at a time.
+ *
+ * Each chunk is a separate, short repository call (its own read-only transaction), so a slow client never keeps
+ * a connection or a growing persistence context open while the response is being written.
+ */
+public final class KeysetStreams {
+
+    private KeysetStreams() {
+    }
+
+    /**
+     * Walks a keyset-paged id query and hydrates every page.
+     *
+     * @param idPage (afterId, limit) -> ids greater than afterId, ascending, at most limit of them
+     * @param load   ids -> entities (same order)
+     */
+    public static <T> Stream<T> byKeyset(BiFunction<Long, Integer, List<Long>> idPage, Function<List<Long>, List<T>> load, int chunkSize) {
+        checkChunkSize(chunkSize);
+        Spliterator<List<T>> chunks = new Spliterators.AbstractSpliterator<List<T>>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private long afterId = 0L;
+            private boolean done;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super List<T>> action) {
+                if (done) {
+                    return false;
+                }
+                List<Long> ids = idPage.apply(afterId, chunkSize);
+                if (ids.size() < chunkSize) {
+                    done = true; // 最后一页，不用再多查一次空页
+                }
+                if (ids.isEmpty()) {
+                    return false;
+                }
+                afterId = ids.get(ids.size() - 1);
+                action.accept(load.apply(ids));
+                return true;
+            }
+        };
+        return StreamSupport.stream(chunks, false).flatMap(List::stream);
+    }
+
+    /**
+     * Same for ids that are already known (search candidates, cached host index): only the hydration is chunked.
+     */
+    public static <T> Stream<T> byChunks(List<Long> ids, Function<List<Long>, List<T>> load, int chunkSize) {
+        checkChunkSize(chunkSize);
+        Spliterator<List<T>> chunks = new Spliterators.AbstractSpliterator<List<T>>(
+                (ids.size() + chunkSize - 1) / chunkSize, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private int from = 0;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super List<T>> action) {
+                if (from >= ids.size()) {
+                    return false;
+                }
+                int to = Math.min(ids.size(), from + chunkSize);
+                List<Long> chunk = ids.subList(from, to);
+                from = to;
+                action.accept(load.apply(chunk));
+                return true;
+            }
+        };
+        return StreamSupport.stream(chunks, false).flatMap(List::stream);
+    }
+
+    private static void checkChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.tq.staybooking.util;
+
+/**
+ * Open-addressing hash set of primitive longs (linear probing, power-of-two table, no removal).
+ * For id sets on hot paths: add / contains never box and never allocate once the table is sized.
+ * Not thread-safe.
+ */
+public class LongHashSet {
+    private static final int MIN_CAPACITY = 8;
+
+    // 0 当作空槽，0 本身单独用 containsZero 记
+    private long[] table;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongHashSet(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * @return true if the value was not in the set yet
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = slot(value);
+        while (table[slot] != 0) {
+            if (table[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        size++;
+        // 装载因子 <= 1/2，探测链保持很短
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        int slot = slot(value);
+        while (table[slot] != 0) {
+            if (table[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int slot(long value) {
+        // murmur3 fmix64：连续的自增 id 也能均匀散开
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = table;
+        allocate(capacity);
+        size = containsZero ? 1 : 0;
+        for (long value : old) {
+            if (value != 0) {
+                int slot = slot(value);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = value;
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < (long) expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,58 @@
+package com.tq.staybooking.util;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Runs a filter's "request is done" work at the point the request is really done.
+ *
+ * For a normal request that is right after filterChain.doFilter returns. For the streamed lists
+ * (StreamingResponseBody, see StreamingJson) doFilter returns as soon as the controller does: the body is still being
+ * written on a response-stream-* thread, and the final status / duration are only known at AsyncListener.onComplete.
+ * Filters call whenDone() from the finally around doFilter and get the callback exactly once, either way.
+ */
+public final class RequestCompletion {
+
+    public interface Callback {
+        /**
+         * @param failed doFilter threw, or the async part timed out / failed
+         */
+        void done(int status, boolean failed);
+    }
+
+    private RequestCompletion() {
+    }
+
+    public static void whenDone(HttpServletRequest request, HttpServletResponse response, boolean failed,
+                                Callback callback) {
+        if (!request.isAsyncStarted()) {
+            callback.done(response.getStatus(), failed);
+            return;
+        }
+        request.getAsyncContext().addListener(new AsyncListener() {
+            // onTimeout / onError 之后容器还会再调一次 onComplete，统一在 onComplete 里收尾
+            private volatile boolean asyncFailed = failed;
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+                callback.done(response.getStatus(), asyncFailed);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                asyncFailed = true;
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                asyncFailed = true;
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+    }
+}
@@ -0,0 +1,182 @@
+package com.tq.staybooking.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Structured, sampled request logging that never blocks a request thread.
+ *
+ * Request threads only do offer() into a bounded ring buffer; a single background thread formats
+ * and writes the lines. When the buffer is full the event is dropped (and counted) instead of waiting.
+ * When logging is disabled, or a request is not sampled, nothing is allocated.
+ *
+ * request-logging.enabled=true
+ * request-logging.level=INFO
+ * request-logging.sample-rate=0.01                          (default for every route)
+ * request-logging.route-sample-rates=/reservations=1.0,/search=0.05   (longest prefix wins)
+ */
+@Component
+public class RequestLogger implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger("staybooking.request");
+
+    private final boolean enabled;
+    private final Level level;
+    private final double defaultSampleRate;
+    private final String[] routePrefixes;
+    private final double[] routeSampleRates;
+
+    private final BlockingQueue<RequestLogEvent> buffer;
+    private final AtomicLong dropped = new AtomicLong();
+    // 只有 writer 线程读写：上一行日志写出时 dropped 的值
+    private long droppedReported;
+    private final Thread writer;
+
+    public RequestLogger(@Value("${request-logging.enabled:true}") boolean enabled,
+                         @Value("${request-logging.level:INFO}") String level,
+                         @Value("${request-logging.sample-rate:0.01}") double defaultSampleRate,
+                         @Value("${request-logging.route-sample-rates:}") String routeSampleRates,
+                         @Value("${request-logging.buffer-size:8192}") int bufferSize,
+                         MeterRegistry meterRegistry) {
+        this.level = Level.valueOf(level.trim().toUpperCase());
+        this.enabled = enabled && isLevelEnabled(this.level);
+        this.defaultSampleRate = defaultSampleRate;
+
+        // "/search=0.05,/reservations=1.0" -> 按前缀长度从长到短排好，匹配时不需要分配任何对象
+        List<String[]> routes = new ArrayList<>();
+        for (String entry : routeSampleRates.split(",")) {
+            String[] pair = entry.trim().split("=");
+            if (pair.length == 2) {
+                routes.add(new String[]{pair[0].trim(), pair[1].trim()});
+            }
+        }
+        routes.sort((a, b) -> b[0].length() - a[0].length());
+        this.routePrefixes = new String[routes.size()];
+        this.routeSampleRates = new double[routes.size()];
+        for (int i = 0; i < routes.size(); i++) {
+            routePrefixes[i] = routes.get(i)[0];
+            this.routeSampleRates[i] = Double.parseDouble(routes.get(i)[1]);
+        }
+
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferSize));
+        FunctionCounter.builder("request-logging.dropped", dropped, AtomicLong::get)
+                .description("Sampled request log lines dropped because the buffer was full")
+                .register(meterRegistry);
+        this.writer = new Thread(this::drain, "request-logger");
+        this.writer.setDaemon(true);
+        if (this.enabled) {
+            this.writer.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Decides whether this request should be logged. Cheap and allocation-free; call it before collecting any fields.
+     */
+    public boolean shouldSample(String uri) {
+        if (!enabled) {
+            return false;
+        }
+        double rate = defaultSampleRate;
+        for (int i = 0; i < routePrefixes.length; i++) {
+            if (uri.startsWith(routePrefixes[i])) {
+                rate = routeSampleRates[i];
+                break;
+            }
+        }
+        return rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    // 只 offer，不等待：buffer 满了就丢掉这一条
+    public void log(String method, String uri, int status, String username, long durationNanos) {
+        if (!buffer.offer(new RequestLogEvent(method, uri, status, username, durationNanos))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    // 从启动到现在一共丢了多少条（只增不减）
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void drain() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                write(buffer.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        RequestLogEvent event;
+        while ((event = buffer.poll()) != null) {
+            write(event);
+        }
+    }
+
+    private void write(RequestLogEvent event) {
+        long droppedTotal = dropped.get();
+        long droppedSoFar = droppedTotal - droppedReported;
+        droppedReported = droppedTotal;
+        String line = "method=" + event.method
+                + " uri=" + event.uri
+                + " status=" + event.status
+                + " user=" + (event.username == null ? "-" : event.username)
+                + " duration_ms=" + TimeUnit.NANOSECONDS.toMicros(event.durationNanos) / 1000.0
+                + (droppedSoFar > 0 ? " dropped_before=" + droppedSoFar : "");
+        switch (level) {
+            case ERROR: logger.error(line); break;
+            case WARN: logger.warn(line); break;
+            case DEBUG: logger.debug(line); break;
+            case TRACE: logger.trace(line); break;
+            default: logger.info(line);
+        }
+    }
+
+    private static boolean isLevelEnabled(Level level) {
+        switch (level) {
+            case ERROR: return logger.isErrorEnabled();
+            case WARN: return logger.isWarnEnabled();
+            case DEBUG: return logger.isDebugEnabled();
+            case TRACE: return logger.isTraceEnabled();
+            default: return logger.isInfoEnabled();
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        writer.interrupt();
+        writer.join(1000);
+    }
+
+    private static class RequestLogEvent {
+        private final String method;
+        private final String uri;
+        private final int status;
+        private final String username;
+        private final long durationNanos;
+
+        private RequestLogEvent(String method, String uri, int status, String username, long durationNanos) {
+            this.method = method;
+            this.uri = uri;
+            this.status = status;
+            this.username = username;
+            this.durationNanos = durationNanos;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.tq.staybooking.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JDBC statements executed by the current HTTP request: count, total time and how often each SQL string ran.
+ * Started / finished by SqlStatsFilter, filled by SqlInstrumentationListener. Outside a request (jobs,
+ * scheduled refreshes) there is no current instance and only the global sql.* metrics are recorded.
+ *
+ * A streamed response runs its queries on a response-stream-* thread: SqlStatsFilter binds the same instance there
+ * too, so one instance can be written by two threads one after the other (hence synchronized).
+ */
+public class SqlRequestStats {
+    private static final ThreadLocal<SqlRequestStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long elapsedMillis;
+    // 同一条 SQL（带 ? 的原文）在这个请求里执行了几次；batch 不算
+    private final Map<String, Integer> executionsBySql = new HashMap<>();
+
+    public static SqlRequestStats start() {
+        SqlRequestStats stats = new SqlRequestStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    // 异步线程接着记同一个请求
+    public static void bind(SqlRequestStats stats) {
+        CURRENT.set(stats);
+    }
+
+    public static SqlRequestStats current() {
+        return CURRENT.get();
+    }
+
+    public static void finish() {
+        CURRENT.remove();
+    }
+
+    public synchronized void record(String sql, long elapsedMillis, boolean batch) {
+        statements++;
+        this.elapsedMillis += elapsedMillis;
+        if (!batch) {
+            executionsBySql.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    public synchronized int getStatements() {
+        return statements;
+    }
+
+    public synchronized long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * The statement that ran the most times in this request, if it ran at least threshold times (likely an N+1), else null.
+     */
+    public synchronized Map.Entry<String, Integer> mostRepeated(int threshold) {
+        Map.Entry<String, Integer> worst = null;
+        for (Map.Entry<String, Integer> entry : executionsBySql.entrySet()) {
+            if (entry.getValue() >= threshold && (worst == null || entry.getValue() > worst.getValue())) {
+                worst = entry;
+            }
+        }
+        return worst;
+    }
+}
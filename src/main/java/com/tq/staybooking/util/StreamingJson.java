@@ -0,0 +1,200 @@
+package com.tq.staybooking.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.tq.staybooking.config.datasource.ReadWriteRoutingDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes a Stream of entities to the response as it is consumed, instead of collecting a List and serializing it at the end.
+ *
+ * Default output is a JSON array (same body as before, clients don't change).
+ * With "Accept: application/x-ndjson" every element is one line of JSON, so clients can start parsing right away.
+ * "application/x-jackson-smile" / "application/cbor" give the same array in a binary encoding (JacksonBinaryMappers).
+ * The output is flushed every streaming.flush-every elements.
+ *
+ * Once the first bytes are out the status is already 200: a failure halfway through truncates the body
+ * (the JSON array stays unclosed, so the client still sees an error) and is logged here.
+ */
+@Component
+public class StreamingJson {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingJson.class);
+
+    private ObjectMapper objectMapper;
+    private JacksonBinaryMappers binaryMappers;
+    private int flushEvery;
+
+    @Autowired
+    public StreamingJson(ObjectMapper objectMapper, JacksonBinaryMappers binaryMappers,
+                         @Value("${streaming.flush-every:100}") int flushEvery) {
+        this.objectMapper = objectMapper;
+        this.binaryMappers = binaryMappers;
+        this.flushEvery = Math.max(1, flushEvery);
+    }
+
+    /**
+     * Picks the body format from the Accept header, highest quality first. Types with q=0 are refused by the client
+     * and never picked. Anything else we can't serve (no header, text/html, a malformed header) gets JSON, like before;
+     * a wildcard gets the first format it covers that isn't refused.
+     */
+    public static Format negotiate(String accept) {
+        if (accept == null || accept.isEmpty()) {
+            return Format.JSON;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return Format.JSON;
+        }
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        for (MediaType mediaType : mediaTypes) {
+            // q=0 是“不要这个”，不是最低优先级
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            for (Format format : Format.values()) {
+                if (mediaType.includes(format.mediaType) && !refused(format, mediaTypes)) {
+                    return format;
+                }
+            }
+        }
+        for (Format format : Format.values()) {
+            if (!refused(format, mediaTypes)) {
+                return format;
+            }
+        }
+        return Format.JSON;
+    }
+
+    private static boolean refused(Format format, List<MediaType> mediaTypes) {
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.getQualityValue() == 0 && mediaType.equalsTypeAndSubtype(format.mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param items closed once the body is written (or failed)
+     */
+    public ResponseEntity<StreamingResponseBody> response(Stream<?> items, String accept) {
+        Format format = negotiate(accept);
+        StreamingResponseBody body = out -> write(items, out, format);
+        return ResponseEntity.ok()
+                .contentType(format.mediaType)
+                .body(body);
+    }
+
+    /**
+     * Conditional GET on top of response(): the strong ETag is the listing's version (ListingVersionService) plus the
+     * representation. When If-None-Match matches, the answer is 304 and items is never called, so the listing
+     * query doesn't run at all.
+     *
+     * The version comes from the primary, so the body does too (ReadWriteRoutingDataSource.onPrimary, both for
+     * items.get() here and for the streaming thread): a body read from a lagging replica would be stored by the
+     * client under the new ETag and never re-fetched.
+     *
+     * @param version read before items is called; items must not serve anything older than it (cached data included)
+     */
+    public ResponseEntity<StreamingResponseBody> conditionalResponse(ServletWebRequest request, String listing, long version,
+                                                                     Supplier<Stream<?>> items, String accept) {
+        Format format = negotiate(accept);
+        // 同一个版本号，JSON / NDJSON / Smile / CBOR 是不同的表示，ETag 也要不同；listing 的 hash 让不同用户的 ETag 不会撞
+        String etag = "\"" + Integer.toHexString(listing.hashCode()) + "-" + version + "-" + format.tag + "\"";
+        HttpServletResponse response = request.getResponse();
+        if (response != null) {
+            // private：按用户的数据，共享缓存不能存；no-cache：可以存，但每次都要带 If-None-Match 回来问
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        // 不管命中没有，ETag header 都由 checkNotModified 写到 response 上
+        if (request.checkNotModified(etag)) {
+            return null; // 304，没有 body
+        }
+        Stream<?> body = ReadWriteRoutingDataSource.onPrimary(items::get);
+        return ResponseEntity.ok()
+                .contentType(format.mediaType)
+                .body(out -> ReadWriteRoutingDataSource.onPrimary(() -> {
+                    write(body, out, format);
+                    return null;
+                }));
+    }
+
+    private ObjectMapper mapper(Format format) {
+        switch (format) {
+            case SMILE: return binaryMappers.getSmile();
+            case CBOR: return binaryMappers.getCbor();
+            default: return objectMapper;
+        }
+    }
+
+    private void write(Stream<?> items, OutputStream out, Format format) throws IOException {
+        // SequenceWriter 关闭时不要顺带关掉 response 的 OutputStream，交给容器
+        OutputStream target = StreamUtils.nonClosing(out);
+        boolean ndjson = format == Format.NDJSON;
+        long written = 0;
+        try (Stream<?> source = items;
+             SequenceWriter writer = ndjson
+                     ? objectMapper.writer().withRootValueSeparator("\n").writeValues(target)
+                     : mapper(format).writer().writeValuesAsArray(target)) {
+            Iterator<?> iterator = source.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+                if (++written % flushEvery == 0) {
+                    writer.flush();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Streaming response aborted after {} elements: {}", written, e.toString());
+            throw e;
+        }
+        if (ndjson && written > 0) {
+            target.write('\n');
+        }
+    }
+
+    public enum Format {
+        JSON(MediaType.APPLICATION_JSON, "json"),
+        NDJSON(APPLICATION_NDJSON, "ndjson"),
+        SMILE(JacksonBinaryMappers.APPLICATION_SMILE, "smile"),
+        CBOR(JacksonBinaryMappers.APPLICATION_CBOR, "cbor");
+
+        private final MediaType mediaType;
+        // ETag 里区分表示用
+        private final String tag;
+
+        Format(MediaType mediaType, String tag) {
+            this.mediaType = mediaType;
+            this.tag = tag;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.tq.staybooking.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TCP-Vegas style concurrency limit estimator.
+ *
+ * Keeps the lowest latency seen so far (rttNoLoad) and, for each finished request, estimates how many requests
+ * are queued somewhere downstream: queue = limit * (1 - rttNoLoad / rtt).
+ * Small queue -> the service has headroom, grow the limit; big queue -> requests are waiting on something
+ * (usually the Hikari pool), shrink it. A failed / timed out request also shrinks it.
+ *
+ * rttNoLoad is kept per route (e.g. "GET /search"): a 50µs cache hit on one endpoint says nothing about how long an
+ * unloaded /search takes, and comparing the two would read as a huge queue and collapse the limit.
+ *
+ * Every probeInterval samples of a route its rttNoLoad is re-measured, so the estimator can notice that the
+ * "no load" latency itself went up (e.g. a slower DB after failover) instead of shrinking the limit forever.
+ *
+ * Lock-free: samples race on a CAS of the limit, and a sample that loses the race is simply dropped
+ * (another thread has just adjusted the limit from a sample that is just as recent).
+ */
+public class VegasLimit {
+    private final int minLimit;
+    private final int maxLimit;
+    private final int probeInterval;
+
+    private final AtomicInteger limit;
+    // route -> 空载延迟；key 是路由模板（个数有限），不是原始 URI
+    private final ConcurrentHashMap<String, Baseline> baselines = new ConcurrentHashMap<>();
+
+    public VegasLimit(int initialLimit, int minLimit, int maxLimit, int probeInterval) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = new AtomicInteger(Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit)));
+        this.probeInterval = Math.max(1, probeInterval);
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    /**
+     * @param route    which endpoint the sample is from; latencies are only compared within a route
+     * @param rttNanos how long the request took
+     * @param inflight how many requests were in flight when it started
+     * @param dropped  true if the request failed in a way that means "overloaded" (timeout, 5xx, pool exhausted)
+     */
+    public void onSample(String route, long rttNanos, int inflight, boolean dropped) {
+        if (rttNanos <= 0) {
+            return;
+        }
+        int current = limit.get();
+        double log = Math.max(1, Math.log10(current));
+        int next;
+        if (dropped) {
+            next = (int) (current - log);
+        } else {
+            long rttNoLoadNanos = baselines.computeIfAbsent(route, r -> new Baseline()).update(rttNanos, probeInterval);
+            if (rttNoLoadNanos == 0) {
+                // 这个样本刚成为新的空载延迟，没有可比的
+                return;
+            }
+            if (inflight * 2 < current) {
+                // 只用了不到一半的 limit：样本说明不了什么，不调整
+                return;
+            }
+            int queue = (int) Math.ceil(current * (1 - (double) rttNoLoadNanos / rttNanos));
+            if (queue <= 3 * log) {
+                next = (int) (current + log);
+            } else if (queue >= 6 * log) {
+                next = (int) (current - log);
+            } else {
+                return;
+            }
+        }
+        limit.compareAndSet(current, Math.min(maxLimit, Math.max(minLimit, next)));
+    }
+
+    private static final class Baseline {
+        private final AtomicLong rttNoLoadNanos = new AtomicLong();
+        private final AtomicLong samples = new AtomicLong();
+
+        // 返回要比较的空载延迟；0 表示这个样本自己就成了新的空载延迟
+        long update(long rttNanos, int probeInterval) {
+            if (samples.incrementAndGet() % probeInterval == 0) {
+                // 重新测一次“空载延迟”
+                rttNoLoadNanos.set(rttNanos);
+                return 0;
+            }
+            long current = rttNoLoadNanos.get();
+            while (current == 0 || rttNanos < current) {
+                if (rttNoLoadNanos.compareAndSet(current, rttNanos)) {
+                    return 0;
+                }
+                current = rttNoLoadNanos.get();
+            }
+            return current;
+        }
+    }
+}
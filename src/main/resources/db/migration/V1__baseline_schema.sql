@@ -0,0 +1,59 @@
+-- Baseline: the schema exactly as ddl-auto=update created it (MySQL8Dialect).
+-- Databases that already have these tables are baselined at version 1 (spring.flyway.baseline-on-migrate)
+-- and only run the migrations after this one.
+
+CREATE TABLE users (
+    username VARCHAR(255) NOT NULL,
+    enabled  BIT          NOT NULL,
+    password VARCHAR(255),
+    PRIMARY KEY (username)
+) ENGINE = InnoDB;
+
+CREATE TABLE authority (
+    username  VARCHAR(255) NOT NULL,
+    authority VARCHAR(255),
+    PRIMARY KEY (username)
+) ENGINE = InnoDB;
+
+CREATE TABLE stay (
+    id           BIGINT  NOT NULL AUTO_INCREMENT,
+    address      VARCHAR(255),
+    description  VARCHAR(255),
+    guest_number INTEGER NOT NULL,
+    name         VARCHAR(255),
+    user_id      VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_stay_user FOREIGN KEY (user_id) REFERENCES users (username)
+) ENGINE = InnoDB;
+
+CREATE TABLE stay_image (
+    url     VARCHAR(255) NOT NULL,
+    stay_id BIGINT,
+    PRIMARY KEY (url),
+    CONSTRAINT fk_stay_image_stay FOREIGN KEY (stay_id) REFERENCES stay (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE reservation (
+    id            BIGINT NOT NULL AUTO_INCREMENT,
+    checkin_date  DATE,
+    checkout_date DATE,
+    user_id       VARCHAR(255),
+    stay_id       BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_reservation_user FOREIGN KEY (user_id) REFERENCES users (username),
+    CONSTRAINT fk_reservation_stay FOREIGN KEY (stay_id) REFERENCES stay (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE stay_reserved_date (
+    date    DATE   NOT NULL,
+    stay_id BIGINT NOT NULL,
+    PRIMARY KEY (date, stay_id),
+    CONSTRAINT fk_stay_reserved_date_stay FOREIGN KEY (stay_id) REFERENCES stay (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE revoked_token (
+    id         VARCHAR(255) NOT NULL,
+    expires_at DATETIME(6)  NOT NULL,
+    revoked_at DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
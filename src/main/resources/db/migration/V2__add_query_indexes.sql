@@ -0,0 +1,22 @@
+-- Explicit indexes for the hot queries (instead of relying on whatever ddl-auto / the FK happened to create).
+-- InnoDB drops the implicit FK index once one of these can serve the foreign key.
+
+-- GET /reservations: ReservationRepository.findByGuest
+CREATE INDEX idx_reservation_user ON reservation (user_id);
+
+-- GET /reservations/{stayId} and "active reservations" check before deleting a stay:
+-- findByStay, findByStayAndCheckoutDateAfter
+CREATE INDEX idx_reservation_stay_checkout ON reservation (stay_id, checkout_date);
+
+-- GET /stays: StayRepository.findByHost
+CREATE INDEX idx_stay_user ON stay (user_id);
+
+-- stay images are always loaded per stay
+CREATE INDEX idx_stay_image_stay ON stay_image (stay_id);
+
+-- /search: findByIdInAndDateBetween filters by stay_id first, the PK starts with date
+CREATE INDEX idx_stay_reserved_date_stay_date ON stay_reserved_date (stay_id, date);
+
+-- TokenRevocationService: incremental refresh and purge
+CREATE INDEX idx_revoked_token_revoked_at ON revoked_token (revoked_at);
+CREATE INDEX idx_revoked_token_expires_at ON revoked_token (expires_at);
@@ -0,0 +1,4 @@
+-- Keyset pagination for the streamed list endpoints: WHERE <fk> = ? AND id > ? ORDER BY id LIMIT n.
+-- idx_stay_user and idx_reservation_user already serve it (InnoDB secondary indexes end with the primary key);
+-- idx_reservation_stay_checkout does not, so GET /stays/reservations/{stayId} gets its own.
+CREATE INDEX idx_reservation_stay_id ON reservation (stay_id, id);
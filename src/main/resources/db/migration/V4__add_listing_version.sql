@@ -0,0 +1,7 @@
+-- Change counter per listing ("stays:<host>", "reservations:<guest>", "stay-reservations:<stayId>"),
+-- bumped in the same transaction as the write; ListingVersionService turns it into ETags for conditional GETs.
+CREATE TABLE listing_version (
+    listing VARCHAR(320) NOT NULL,
+    version BIGINT       NOT NULL,
+    PRIMARY KEY (listing)
+) ENGINE = InnoDB;
@@ -0,0 +1,82 @@
+package com.tq.staybooking.config.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Two in-memory H2 databases stand in for primary and replica; each one has a single row saying which one it is.
+ */
+class ReadWriteRoutingDataSourceTests {
+    private ReadYourWritesTracker tracker;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new ReadYourWritesTracker(Duration.ofMinutes(1), 100);
+        DataSource routing = ReadWriteRoutingDataSource.wrap(database("primary"), database("replica"), tracker);
+        jdbcTemplate = new JdbcTemplate(routing);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransactionGoesToReplica() {
+        assertEquals("replica", readOnlyTransaction.execute(status -> whichDatabase()));
+    }
+
+    @Test
+    void writeTransactionGoesToPrimary() {
+        assertEquals("primary", writeTransaction.execute(status -> whichDatabase()));
+    }
+
+    @Test
+    void noTransactionGoesToPrimary() {
+        assertEquals("primary", whichDatabase());
+    }
+
+    @Test
+    void userWhoJustWroteReadsFromPrimary() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("guest", null, List.of()));
+        tracker.markWrite("guest");
+        assertEquals("primary", readOnlyTransaction.execute(status -> whichDatabase()));
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("other", null, List.of()));
+        assertEquals("replica", readOnlyTransaction.execute(status -> whichDatabase()));
+    }
+
+    private String whichDatabase() {
+        return jdbcTemplate.queryForObject("SELECT name FROM marker", String.class);
+    }
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate setup = new JdbcTemplate(dataSource);
+        setup.execute("CREATE TABLE IF NOT EXISTS marker (name VARCHAR(16))");
+        setup.execute("DELETE FROM marker");
+        setup.update("INSERT INTO marker (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
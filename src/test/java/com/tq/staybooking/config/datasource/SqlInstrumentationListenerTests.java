@@ -0,0 +1,60 @@
+package com.tq.staybooking.config.datasource;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.StatementType;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Slow-query log lines keep SELECT parameters (to reproduce the query) but never print what a write stores.
+ */
+class SqlInstrumentationListenerTests {
+    private static final String HASH = "$2a$10$abcdefghijklmnopqrstuu";
+
+    private final SqlInstrumentationListener listener = new SqlInstrumentationListener(100);
+
+    @Test
+    void selectParametersAreLogged() throws Exception {
+        String entry = listener.slowQueryLogEntry(execution(false),
+                List.of(query("select username, password, enabled from users where username = ?", "alice")));
+        assertTrue(entry.contains("alice"), entry);
+    }
+
+    @Test
+    void writeParametersAreMasked() throws Exception {
+        String entry = listener.slowQueryLogEntry(execution(true),
+                List.of(query("INSERT IGNORE INTO users (username, password, enabled) VALUES (?, ?, ?)", "alice", HASH)));
+        assertFalse(entry.contains(HASH), entry);
+        assertFalse(entry.contains("alice"), entry);
+        assertTrue(entry.contains("INSERT IGNORE INTO users"), entry);
+    }
+
+    private static ExecutionInfo execution(boolean batch) {
+        ExecutionInfo execInfo = new ExecutionInfo();
+        execInfo.setStatementType(StatementType.PREPARED);
+        execInfo.setBatch(batch);
+        execInfo.setBatchSize(batch ? 1 : 0);
+        execInfo.setSuccess(true);
+        execInfo.setElapsedTime(250);
+        return execInfo;
+    }
+
+    private static QueryInfo query(String sql, String... params) throws Exception {
+        QueryInfo queryInfo = new QueryInfo(sql);
+        List<ParameterSetOperation> operations = new ArrayList<>();
+        for (int i = 0; i < params.length; i++) {
+            operations.add(new ParameterSetOperation(PreparedStatement.class.getMethod("setString", int.class, String.class),
+                    new Object[]{i + 1, params[i]}));
+        }
+        queryInfo.getParametersList().add(operations);
+        return queryInfo;
+    }
+}
@@ -0,0 +1,115 @@
+package com.tq.staybooking.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tq.staybooking.model.User;
+import com.tq.staybooking.repository.UserRepository;
+import com.tq.staybooking.service.UserProvisioningService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * POST /provisioning/users with bodies that aren't a well-formed array of users: always 400, never a 500
+ * or a "successful" report for the part before the problem.
+ */
+class ProvisioningControllerTests {
+    private static final String KEY = "partner-key";
+
+    // insertIgnoreWithAuthority 收到的 username
+    private final List<String> inserted = new ArrayList<>();
+    private UserProvisioningService provisioningService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        UserRepository userRepository = (UserRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("insertIgnoreWithAuthority")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    @SuppressWarnings("unchecked")
+                    List<User> users = (List<User>) args[0];
+                    users.forEach(user -> inserted.add(user.getUsername()));
+                    return users.size();
+                });
+        PlatformTransactionManager transactionManager = (PlatformTransactionManager) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{PlatformTransactionManager.class},
+                (proxy, method, args) -> method.getName().equals("getTransaction") ? new SimpleTransactionStatus() : null);
+        PasswordEncoder passwordEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return "{hashed}" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encodedPassword.equals(encode(rawPassword));
+            }
+        };
+        provisioningService = new UserProvisioningService(userRepository, passwordEncoder, new ObjectMapper(),
+                transactionManager, 1, 100, new SimpleMeterRegistry());
+        mockMvc = MockMvcBuilders.standaloneSetup(new ProvisioningController(provisioningService, KEY))
+                .setControllerAdvice(new CustomExceptionHandler())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        provisioningService.destroy();
+    }
+
+    @Test
+    void wellFormedArrayIsProvisioned() throws Exception {
+        provision("[{\"username\": \"a\", \"password\": \"p\"}, {\"username\": \"b\", \"password\": \"p\", \"enabled\": false}]")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(2))
+                .andExpect(jsonPath("$.created").value(2));
+        assertEquals(List.of("a", "b"), inserted);
+    }
+
+    @Test
+    void malformedBodiesAreRejected() throws Exception {
+        String[] bodies = {
+                "{\"username\": \"a\", \"password\": \"p\"}",          // 不是数组
+                "[{\"username\" \"a\"}]",                                // 不是合法的 JSON
+                "[{\"username\": {}, \"password\": \"p\"}]",             // 字段类型不对
+                "[{\"username\": \"a\", \"password\": \"p\"}, 42]",      // 中间有一个不是对象
+                "[{\"username\": \"a\", \"password\": \"p\"},",          // 被截断了
+                "",
+        };
+        for (String body : bodies) {
+            provision(body)
+                    .andExpect(status().isBadRequest())
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN));
+        }
+        // 出错的都在第一个 chunk 写库之前
+        assertTrue(inserted.isEmpty(), inserted.toString());
+    }
+
+    private ResultActions provision(String body) throws Exception {
+        return mockMvc.perform(post("/provisioning/users")
+                .header("X-Provisioning-Key", KEY)
+                .param("role", "ROLE_GUEST")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body));
+    }
+}
@@ -0,0 +1,136 @@
+package com.tq.staybooking.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tq.staybooking.model.GeoCluster;
+import com.tq.staybooking.repository.LocationRepository;
+import com.tq.staybooking.service.SearchService;
+import com.tq.staybooking.util.JacksonBinaryMappers;
+import com.tq.staybooking.util.StreamingJson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /search/viewport and /search/clusters down to the LocationRepository call: which boxes are rejected,
+ * that a box across the 180° meridian is passed through as is, and how zoom / the cluster cap reach the repository.
+ */
+class SearchControllerTests {
+    private static final int MAX_STAYS = 2000;
+    private static final int MAX_CLUSTERS = 3;
+
+    // LocationRepository 收到的调用："方法名 参数..."
+    private final List<String> calls = new ArrayList<>();
+    private List<GeoCluster> clusters = List.of();
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        LocationRepository locationRepository = (LocationRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{LocationRepository.class}, (proxy, method, args) -> {
+                    calls.add(method.getName() + " " + Arrays.toString(args));
+                    switch (method.getName()) {
+                        case "searchByBoundingBox": return List.of();
+                        case "clusterByBoundingBox": return clusters;
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        // 其余依赖在 viewport 没有命中 / clusters 里用不到
+        SearchService searchService = new SearchService(null, null, locationRepository, null, null);
+        ReflectionTestUtils.setField(searchService, "viewportMaxStays", MAX_STAYS);
+        ReflectionTestUtils.setField(searchService, "maxClusters", MAX_CLUSTERS);
+        StreamingJson streamingJson = new StreamingJson(new ObjectMapper(),
+                new JacksonBinaryMappers(new Jackson2ObjectMapperBuilder()), 100);
+        mockMvc = MockMvcBuilders.standaloneSetup(new SearchController(searchService, streamingJson))
+                .setControllerAdvice(new CustomExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void invalidBoxesAreRejected() throws Exception {
+        String[][] boxes = {
+                {"10", "0", "20", "10"},    // bottom 在 top 上面
+                {"91", "0", "0", "10"},     // 纬度越界
+                {"10", "0", "-91", "10"},
+                {"10", "-181", "0", "10"},  // 经度越界
+                {"10", "0", "0", "180.5"},
+                {"NaN", "0", "0", "10"},
+        };
+        for (String[] box : boxes) {
+            mockMvc.perform(get("/search/clusters").params(box(box)).param("zoom", "3"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get("/search/viewport").params(box(box)).params(dates()))
+                    .andExpect(status().isBadRequest());
+        }
+        mockMvc.perform(get("/search/clusters").params(box("10", "0", "0", "10")).param("zoom", "-1"))
+                .andExpect(status().isBadRequest());
+        assertTrue(calls.isEmpty(), calls.toString());
+    }
+
+    @Test
+    void viewportAcrossTheAntimeridianIsPassedThrough() throws Exception {
+        MvcResult result = mockMvc.perform(get("/search/viewport").params(box("10", "170", "-10", "-170")).params(dates()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+        assertEquals(List.of("searchByBoundingBox [10.0, 170.0, -10.0, -170.0, " + MAX_STAYS + "]"), calls);
+    }
+
+    @Test
+    void clustersUseZoomPlusTwoAndTheCap() throws Exception {
+        clusters = List.of(new GeoCluster("7/10/20", 9, 1.5, 2.5), new GeoCluster("7/11/20", 4, 1.0, 3.0));
+
+        mockMvc.perform(get("/search/clusters").params(box("10", "170", "-10", "-170")).param("zoom", "5"))
+                .andExpect(status().isOk())
+                // 顺序原样返回（ES 按数量从多到少）
+                .andExpect(jsonPath("$[0].key").value("7/10/20"))
+                .andExpect(jsonPath("$[0].count").value(9))
+                .andExpect(jsonPath("$[1].key").value("7/11/20"));
+        // 再放大也不超过 geotile 的最大精度 29
+        mockMvc.perform(get("/search/clusters").params(box("10", "0", "0", "10")).param("zoom", "40"))
+                .andExpect(status().isOk());
+
+        assertEquals(List.of(
+                "clusterByBoundingBox [10.0, 170.0, -10.0, -170.0, 7, " + MAX_CLUSTERS + "]",
+                "clusterByBoundingBox [10.0, 0.0, 0.0, 10.0, 29, " + MAX_CLUSTERS + "]"), calls);
+    }
+
+    private static MultiValueMap<String, String> box(String... box) {
+        LinkedMultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("top", box[0]);
+        params.add("left", box[1]);
+        params.add("bottom", box[2]);
+        params.add("right", box[3]);
+        return params;
+    }
+
+    private static MultiValueMap<String, String> dates() {
+        LinkedMultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("guest_number", "2");
+        params.add("checkin_date", LocalDate.now().plusDays(1).toString());
+        params.add("checkout_date", LocalDate.now().plusDays(3).toString());
+        return params;
+    }
+}
@@ -0,0 +1,128 @@
+package com.tq.staybooking.repository;
+
+import com.tq.staybooking.model.GeoCluster;
+import com.tq.staybooking.model.Location;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.GeoBoundingBoxQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoGridAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.geogrid.ParsedGeoTileGrid;
+import org.elasticsearch.search.aggregations.metrics.ParsedGeoCentroid;
+import org.elasticsearch.xcontent.DeprecationHandler;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
+import org.elasticsearch.xcontent.ParseField;
+import org.elasticsearch.xcontent.XContentParser;
+import org.elasticsearch.xcontent.json.JsonXContent;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.core.ElasticsearchAggregations;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHitsImpl;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.geo.GeoPoint;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The Elasticsearch requests behind /search/viewport and /search/clusters, without an Elasticsearch:
+ * ElasticsearchOperations is a stub that keeps the query and answers with a canned response
+ * (aggregations are parsed from JSON, the same way the REST client does it).
+ */
+class CustomLocationRepositoryImplTests {
+    private final List<NativeSearchQuery> queries = new ArrayList<>();
+    private SearchHitsImpl<Location> response = hits(List.of(), null);
+    private final CustomLocationRepositoryImpl repository = new CustomLocationRepositoryImpl(
+            (ElasticsearchOperations) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{ElasticsearchOperations.class}, (proxy, method, args) -> {
+                        if (!method.getName().equals("search")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        queries.add((NativeSearchQuery) args[0]);
+                        return response;
+                    }));
+
+    @Test
+    void viewportKeepsCornersAcrossTheAntimeridianAndTheCap() {
+        response = hits(List.of(hit(7L), hit(3L)), null);
+
+        assertEquals(List.of(7L, 3L), repository.searchByBoundingBox(10, 170, -10, -170, 50));
+
+        NativeSearchQuery query = queries.get(0);
+        assertBoundingBox(query.getFilter(), 10, 170, -10, -170);
+        assertEquals(50, query.getMaxResults());
+    }
+
+    @Test
+    void clustersAreCappedAndKeepElasticsearchOrder() throws IOException {
+        response = hits(List.of(), aggregations("{\"geotile_grid#clusters\": {\"buckets\": ["
+                + "{\"key\": \"7/127/63\", \"doc_count\": 9, \"geo_centroid#centroid\": {\"location\": {\"lat\": 1.5, \"lon\": 179.5}, \"count\": 9}},"
+                + "{\"key\": \"7/0/63\", \"doc_count\": 4, \"geo_centroid#centroid\": {\"location\": {\"lat\": -2.0, \"lon\": -179.0}, \"count\": 4}}"
+                + "]}}"));
+
+        List<GeoCluster> clusters = repository.clusterByBoundingBox(10, 170, -10, -170, 7, 2);
+
+        assertEquals(2, clusters.size());
+        assertEquals("7/127/63", clusters.get(0).getKey());
+        assertEquals(9, clusters.get(0).getCount());
+        assertEquals(1.5, clusters.get(0).getLat(), 1e-9);
+        assertEquals(179.5, clusters.get(0).getLon(), 1e-9);
+        assertEquals("7/0/63", clusters.get(1).getKey());
+        assertEquals(4, clusters.get(1).getCount());
+
+        NativeSearchQuery query = queries.get(0);
+        // 只要聚合，不要 hit
+        assertEquals(0, query.getMaxResults());
+        BoolQueryBuilder bool = (BoolQueryBuilder) query.getQuery();
+        assertBoundingBox(bool.filter().get(0), 10, 170, -10, -170);
+        GeoGridAggregationBuilder tiles = (GeoGridAggregationBuilder) query.getAggregations().get(0);
+        assertEquals(7, tiles.precision());
+        assertEquals(2, tiles.size());
+    }
+
+    @Test
+    void noAggregationsMeansNoClusters() {
+        assertTrue(repository.clusterByBoundingBox(10, 0, 0, 10, 3, 100).isEmpty());
+    }
+
+    private static void assertBoundingBox(QueryBuilder filter, double top, double left, double bottom, double right) {
+        GeoBoundingBoxQueryBuilder box = (GeoBoundingBoxQueryBuilder) filter;
+        assertEquals("geoPoint", box.fieldName());
+        // left > right 原样交给 ES，不能被“纠正”成反方向的那一大片
+        assertEquals(top, box.topLeft().getLat(), 1e-9);
+        assertEquals(left, box.topLeft().getLon(), 1e-9);
+        assertEquals(bottom, box.bottomRight().getLat(), 1e-9);
+        assertEquals(right, box.bottomRight().getLon(), 1e-9);
+    }
+
+    private static SearchHit<Location> hit(long id) {
+        return new SearchHit<>("location", String.valueOf(id), null, 1f, null, null,
+                new Location(id, new GeoPoint(0, 0)));
+    }
+
+    private static SearchHitsImpl<Location> hits(List<SearchHit<Location>> hits, ElasticsearchAggregations aggregations) {
+        return new SearchHitsImpl<>(hits.size(), TotalHitsRelation.EQUAL_TO, 1f, null, hits, aggregations, null);
+    }
+
+    // 和 RestHighLevelClient 一样用 typed_keys 解析：拿到的是 ParsedGeoTileGrid / ParsedGeoCentroid
+    private static ElasticsearchAggregations aggregations(String json) throws IOException {
+        NamedXContentRegistry registry = new NamedXContentRegistry(List.of(
+                new NamedXContentRegistry.Entry(Aggregation.class, new ParseField("geotile_grid"),
+                        (p, name) -> ParsedGeoTileGrid.fromXContent(p, (String) name)),
+                new NamedXContentRegistry.Entry(Aggregation.class, new ParseField("geo_centroid"),
+                        (p, name) -> ParsedGeoCentroid.fromXContent(p, (String) name))));
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(registry,
+                DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json)) {
+            parser.nextToken();
+            return new ElasticsearchAggregations(Aggregations.fromXContent(parser));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.tq.staybooking.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.core.geo.GeoPoint;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The MySQL query of findIdsWithinDistance (MBRContains + ST_Distance_Sphere), run as is on H2:
+ * the four spatial functions it uses are stood in for by MySqlFunctions below, with MySQL's argument order
+ * (POINT(x = lon, y = lat)), and stay.location is generated from lat / lon like in db/vendor/mysql/V5.
+ * Catches swapped lat / lon, a wrong envelope or wrong parameter order; not the SPATIAL index itself.
+ */
+class CustomStayRepositoryImplTests {
+    private static final GeoPoint SEATTLE = new GeoPoint(47.6062, -122.3321);
+    private static final GeoPoint TACOMA = new GeoPoint(47.2529, -122.4443);
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private CustomStayRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() throws MetaDataAccessException {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        jdbcTemplate = new JdbcTemplate(database);
+        String functions = MySqlFunctions.class.getName();
+        jdbcTemplate.execute("CREATE ALIAS POINT FOR '" + functions + ".point'");
+        jdbcTemplate.execute("CREATE ALIAS ST_MakeEnvelope FOR '" + functions + ".makeEnvelope'");
+        jdbcTemplate.execute("CREATE ALIAS MBRContains FOR '" + functions + ".mbrContains'");
+        jdbcTemplate.execute("CREATE ALIAS ST_Distance_Sphere FOR '" + functions + ".distanceSphere'");
+        jdbcTemplate.execute("CREATE TABLE stay (id BIGINT PRIMARY KEY, lat DOUBLE NULL, lon DOUBLE NULL,"
+                + " location VARCHAR(64) GENERATED ALWAYS AS (POINT(COALESCE(lon, 0), COALESCE(lat, 0))))");
+
+        repository = new CustomStayRepositoryImpl(jdbcTemplate);
+        // 元数据里是 H2：强制走 MySQL 那句
+        ReflectionTestUtils.setField(repository, "mysql", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void nearestFirstWithinDistance() {
+        insert(1, 47.6062, -122.3321);  // downtown
+        insert(2, 47.6687, -122.3847);  // ballard, ~7.5 km
+        insert(3, 47.2529, -122.4443);  // tacoma, ~40 km
+
+        assertEquals(List.of(1L, 2L), repository.findIdsWithinDistance(47.6062, -122.3321, 10_000, 100));
+        assertEquals(List.of(1L, 2L, 3L), repository.findIdsWithinDistance(47.6062, -122.3321, 50_000, 100));
+        assertEquals(List.of(3L, 1L), repository.findIdsWithinDistance(47.30, -122.44, 50_000, 2));
+    }
+
+    @Test
+    void staysWithoutCoordinatesAreNotAtNullIsland() {
+        // location 是 POINT(0, 0)，但 lat 是 NULL
+        jdbcTemplate.update("INSERT INTO stay (id) VALUES (1)");
+        insert(2, 0.01, 0.01);
+
+        assertEquals(List.of(2L), repository.findIdsWithinDistance(0, 0, 50_000, 100));
+    }
+
+    @Test
+    void circleAcrossTheAntimeridianSearchesAllLongitudes() {
+        insert(1, 0, 179.95);
+        insert(2, 0, -179.95);
+        insert(3, 0, 178);
+
+        assertEquals(List.of(2L, 1L), repository.findIdsWithinDistance(0, -179.99, 20_000, 100));
+    }
+
+    @Test
+    void fillMissingLocationsOnlyFillsNulls() {
+        jdbcTemplate.update("INSERT INTO stay (id) VALUES (1)");
+        insert(2, TACOMA.getLat(), TACOMA.getLon());
+
+        assertEquals(1, repository.fillMissingLocations(Map.of(1L, SEATTLE, 2L, SEATTLE)));
+
+        // 1 补上以后生成列跟着变，空间查询能搜到；2 还是 StayService.add 写的坐标
+        assertEquals(List.of(1L), repository.findIdsWithinDistance(SEATTLE.getLat(), SEATTLE.getLon(), 1_000, 100));
+        assertEquals(TACOMA.getLat(), jdbcTemplate.queryForObject("SELECT lat FROM stay WHERE id = 2", Double.class));
+        assertEquals(0, repository.fillMissingLocations(Map.of()));
+    }
+
+    @Test
+    void nothingMatchesFarAway() {
+        insert(1, SEATTLE.getLat(), SEATTLE.getLon());
+
+        assertTrue(repository.findIdsWithinDistance(-33.8688, 151.2093, 50_000, 100).isEmpty());
+    }
+
+    private void insert(long id, double lat, double lon) {
+        jdbcTemplate.update("INSERT INTO stay (id, lat, lon) VALUES (?, ?, ?)", id, lat, lon);
+    }
+
+    // MySQL 空间函数的替身：点用 "x y"，矩形用 "minX minY maxX maxY"（public：H2 要能反射调用）
+    public static class MySqlFunctions {
+        public static String point(double x, double y) {
+            return x + " " + y;
+        }
+
+        public static String makeEnvelope(String corner1, String corner2) {
+            double[] a = coordinates(corner1);
+            double[] b = coordinates(corner2);
+            return Math.min(a[0], b[0]) + " " + Math.min(a[1], b[1]) + " " + Math.max(a[0], b[0]) + " " + Math.max(a[1], b[1]);
+        }
+
+        public static boolean mbrContains(String envelope, String point) {
+            double[] box = coordinates(envelope);
+            double[] p = coordinates(point);
+            return p[0] >= box[0] && p[1] >= box[1] && p[0] <= box[2] && p[1] <= box[3];
+        }
+
+        // MySQL 的 ST_Distance_Sphere：x 是经度，y 是纬度
+        public static double distanceSphere(String point1, String point2) {
+            double[] a = coordinates(point1);
+            double[] b = coordinates(point2);
+            double dLat = Math.toRadians(b[1] - a[1]);
+            double dLon = Math.toRadians(b[0] - a[0]);
+            double h = Math.pow(Math.sin(dLat / 2), 2)
+                    + Math.cos(Math.toRadians(a[1])) * Math.cos(Math.toRadians(b[1])) * Math.pow(Math.sin(dLon / 2), 2);
+            return 2 * CustomStayRepositoryImpl.EARTH_RADIUS_METERS * Math.asin(Math.sqrt(Math.min(1, h)));
+        }
+
+        private static double[] coordinates(String value) {
+            String[] parts = value.split(" ");
+            double[] coordinates = new double[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                coordinates[i] = Double.parseDouble(parts[i]);
+            }
+            return coordinates;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.tq.staybooking.repository;
+
+import com.tq.staybooking.model.ListingVersion;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * increment() is a single MySQL upsert: the first write of a listing creates its row at 1, later writes add one.
+ */
+@DataJpaTest(properties = {
+        // ON DUPLICATE KEY UPDATE needs H2's MySQL mode
+        "spring.datasource.url=jdbc:h2:mem:listing-version;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        // migrations are MySQL-only; the in-memory H2 schema comes from the entities
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ListingVersionRepositoryTests {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ListingVersionRepository listingVersionRepository;
+
+    @Test
+    void incrementCreatesThenBumps() {
+        String listing = "stays:host";
+        assertFalse(listingVersionRepository.findById(listing).isPresent());
+
+        listingVersionRepository.increment(listing);
+        assertEquals(1, version(listing));
+
+        listingVersionRepository.increment(listing);
+        listingVersionRepository.increment(listing);
+        assertEquals(3, version(listing));
+        // 其他 listing 不受影响
+        assertFalse(listingVersionRepository.findById("stays:other").isPresent());
+    }
+
+    private long version(String listing) {
+        // upsert 绕过了 Hibernate，persistence context 里的旧实体要清掉
+        entityManager.clear();
+        return listingVersionRepository.findById(listing).map(ListingVersion::getVersion).orElse(0L);
+    }
+}
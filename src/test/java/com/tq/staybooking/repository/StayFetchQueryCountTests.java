@@ -0,0 +1,168 @@
+package com.tq.staybooking.repository;
+
+import com.tq.staybooking.model.Reservation;
+import com.tq.staybooking.model.Stay;
+import com.tq.staybooking.model.StayImage;
+import com.tq.staybooking.model.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Guards against N+1 selects on the list endpoints:
+ * streamed /stays pages -> findIdsByHostAfter + findWithImagesByIdIn, /search chunks -> findWithImagesByIdIn,
+ * streamed /reservations and /stays/{stayId}/reservations pages -> findIdsByGuestAfter / findIdsByStayAfter + findWithDetailsByIdIn.
+ * Each one must cost a fixed number of statements per page no matter how many stays / images come back.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        // migrations are MySQL-only; the in-memory H2 schema comes from the entities
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class StayFetchQueryCountTests {
+    private static final int STAY_COUNT = 10;
+    private static final int IMAGES_PER_STAY = 3;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private StayRepository stayRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    private User host;
+    private User guest;
+    private List<Long> stayIds;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        host = entityManager.persist(new User.Builder().setUsername("host").setPassword("pw").setEnabled(true).build());
+        guest = entityManager.persist(new User.Builder().setUsername("guest").setPassword("pw").setEnabled(true).build());
+
+        stayIds = new ArrayList<>();
+        for (int i = 0; i < STAY_COUNT; i++) {
+            Stay stay = new Stay.Builder()
+                    .setName("stay" + i)
+                    .setAddress("address" + i)
+                    .setDescription("description" + i)
+                    .setGuestNumber(1 + i % 2) // 一半住 1 人，一半住 2 人
+                    .setHost(host)
+                    .build();
+            List<StayImage> images = new ArrayList<>();
+            for (int j = 0; j < IMAGES_PER_STAY; j++) {
+                images.add(new StayImage("https://img/" + i + "/" + j, stay));
+            }
+            stay.setImages(images);
+            entityManager.persist(stay);
+            stayIds.add(stay.getId());
+
+            entityManager.persist(new Reservation.Builder()
+                    .setGuest(guest)
+                    .setStay(stay)
+                    .setCheckinDate(LocalDate.now().plusDays(i + 1))
+                    .setCheckoutDate(LocalDate.now().plusDays(i + 2))
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void stayPageByHostUsesTwoStatements() {
+        List<Long> ids = stayRepository.findIdsByHostAfter(new User.Builder().setUsername("host").build(), 0L,
+                PageRequest.of(0, STAY_COUNT));
+        List<Stay> stays = stayRepository.findWithImagesByIdIn(ids);
+
+        assertEquals(STAY_COUNT, stays.size());
+        touch(stays);
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void searchHydrationUsesOneStatement() {
+        List<Stay> stays = stayRepository.findWithImagesByIdIn(stayIds);
+
+        assertEquals(STAY_COUNT, stays.size());
+        touch(stays);
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void searchHydrationFiltersGuestNumberInTheSameStatement() {
+        List<Stay> stays = stayRepository.findWithImagesByIdInAndGuestNumberGreaterThanEqual(stayIds, 2);
+
+        // 住不下的 stay 根本不会被加载
+        assertEquals(STAY_COUNT / 2, stays.size());
+        for (Stay stay : stays) {
+            assertEquals(2, stay.getGuestNumber());
+        }
+        touch(stays);
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void reservationPageByStayUsesTwoStatements() {
+        Stay stayRef = new Stay.Builder().setId(stayIds.get(0)).build();
+        List<Long> ids = reservationRepository.findIdsByStayAfter(stayRef, 0L, PageRequest.of(0, STAY_COUNT));
+        List<Reservation> reservations = reservationRepository.findWithDetailsByIdIn(ids);
+
+        assertEquals(1, reservations.size());
+        List<Stay> stays = new ArrayList<>();
+        for (Reservation reservation : reservations) {
+            reservation.getGuest().getUsername();
+            stays.add(reservation.getStay());
+        }
+        touch(stays);
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void reservationPageUsesTwoStatements() {
+        User guestRef = new User.Builder().setUsername("guest").build();
+        List<Long> firstPage = reservationRepository.findIdsByGuestAfter(guestRef, 0L, PageRequest.of(0, 4));
+        List<Long> secondPage = reservationRepository.findIdsByGuestAfter(guestRef, firstPage.get(3), PageRequest.of(0, 4));
+        assertEquals(4, firstPage.size());
+        assertTrue(secondPage.get(0) > firstPage.get(3));
+        statistics.clear();
+
+        List<Long> ids = reservationRepository.findIdsByGuestAfter(guestRef, 0L, PageRequest.of(0, STAY_COUNT));
+        List<Reservation> reservations = reservationRepository.findWithDetailsByIdIn(ids);
+
+        assertEquals(STAY_COUNT, reservations.size());
+        List<Stay> stays = new ArrayList<>();
+        for (Reservation reservation : reservations) {
+            reservation.getGuest().getUsername();
+            stays.add(reservation.getStay());
+        }
+        touch(stays);
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    // 模拟 Jackson 序列化时会访问到的关联
+    private void touch(List<Stay> stays) {
+        for (Stay stay : stays) {
+            stay.getHost().getUsername();
+            assertEquals(IMAGES_PER_STAY, stay.getImages().size());
+        }
+    }
+}
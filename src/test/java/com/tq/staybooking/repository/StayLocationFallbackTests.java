@@ -0,0 +1,91 @@
+package com.tq.staybooking.repository;
+
+import com.tq.staybooking.model.Stay;
+import com.tq.staybooking.model.User;
+import com.tq.staybooking.service.LocationSearchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The MySQL side of /search when Elasticsearch is down: distance search on stay.lat / lon (the portable H2 query here;
+ * MySQL runs the ST_Distance_Sphere one with the same bounding box), and LocationSearchService switching to it.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        // migrations are MySQL-only; the in-memory H2 schema comes from the entities
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class StayLocationFallbackTests {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private StayRepository stayRepository;
+
+    private long downtown;
+    private long ballard;
+    private long tacoma;
+
+    @BeforeEach
+    void setUp() {
+        User host = entityManager.persist(new User.Builder().setUsername("host").setPassword("pw").setEnabled(true).build());
+        // 以 Seattle downtown (47.6062, -122.3321) 为中心：~0 km、~7.5 km、~40 km
+        downtown = entityManager.persist(stay("downtown", host).setLocation(47.6062, -122.3321)).getId();
+        ballard = entityManager.persist(stay("ballard", host).setLocation(47.6687, -122.3847)).getId();
+        tacoma = entityManager.persist(stay("tacoma", host).setLocation(47.2529, -122.4443)).getId();
+        // V5 之前建的 stay：没有坐标，永远搜不到
+        entityManager.persist(stay("legacy", host));
+        entityManager.flush();
+    }
+
+    @Test
+    void findIdsWithinDistanceReturnsNearestFirst() {
+        assertEquals(List.of(downtown, ballard), stayRepository.findIdsWithinDistance(47.6062, -122.3321, 10_000, 100));
+        assertEquals(List.of(downtown, ballard, tacoma), stayRepository.findIdsWithinDistance(47.6062, -122.3321, 50_000, 100));
+        assertEquals(List.of(downtown), stayRepository.findIdsWithinDistance(47.6062, -122.3321, 50_000, 1));
+        assertTrue(stayRepository.findIdsWithinDistance(0, 0, 50_000, 100).isEmpty());
+    }
+
+    @Test
+    void searchFallsBackToMySqlWhenElasticsearchFails() {
+        LocationRepository failing = (LocationRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{LocationRepository.class}, (proxy, method, args) -> {
+                    throw new IllegalStateException("Elasticsearch is down");
+                });
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LocationSearchService service = new LocationSearchService(failing, stayRepository, Duration.ofSeconds(5), 1, 1, 2,
+                Duration.ofMinutes(1), 100, meterRegistry);
+        try {
+            // 没有单位就是公里，和 ES 一样
+            assertEquals(List.of(downtown, ballard), service.searchByDistance(47.6062, -122.3321, "10"));
+            assertFalse(service.isDegraded());
+            assertEquals(List.of(downtown, ballard, tacoma), service.searchByDistance(47.6062, -122.3321, "50km"));
+            // 连续失败两次：之后不再去问 ES
+            assertTrue(service.isDegraded());
+            assertEquals(List.of(downtown, ballard), service.searchByDistance(47.6062, -122.3321, "10000m"));
+
+            assertEquals(2, meterRegistry.get("search.fallback").tag("reason", "error").counter().count());
+            assertEquals(1, meterRegistry.get("search.fallback").tag("reason", "circuit_open").counter().count());
+            assertEquals(1, meterRegistry.get("search.degraded").gauge().value());
+        } finally {
+            service.destroy();
+        }
+    }
+
+    private static Stay stay(String name, User host) {
+        return new Stay.Builder().setName(name).setAddress(name).setDescription(name).setGuestNumber(2).setHost(host).build();
+    }
+}
@@ -0,0 +1,99 @@
+package com.tq.staybooking.repository;
+
+import com.tq.staybooking.model.Stay;
+import com.tq.staybooking.model.User;
+import com.tq.staybooking.util.EpochDayRange;
+import com.tq.staybooking.util.LongHashSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The epoch-day range queries behind ReservationService and SearchService: check-in night included, check-out day excluded.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        // migrations are MySQL-only; the in-memory H2 schema comes from the entities
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class StayReservationDateRepositoryTests {
+    private static final LocalDate CHECKIN = LocalDate.of(2030, 1, 10);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private StayReservationDateRepository stayReservationDateRepository;
+
+    private long booked;
+    private long free;
+
+    @BeforeEach
+    void setUp() {
+        User host = entityManager.persist(new User.Builder().setUsername("host").setPassword("pw").setEnabled(true).build());
+        booked = entityManager.persist(stay("booked", host)).getId();
+        free = entityManager.persist(stay("free", host)).getId();
+        entityManager.flush();
+
+        // 1/10, 1/11, 1/12 三晚
+        stayReservationDateRepository.insertNights(booked, EpochDayRange.ofStay(CHECKIN, CHECKIN.plusDays(3)));
+    }
+
+    @Test
+    void insertNightsWritesOneRowPerNight() {
+        assertEquals(3, stayReservationDateRepository.count());
+        assertThrows(DuplicateKeyException.class, () ->
+                stayReservationDateRepository.insertNights(booked, EpochDayRange.ofStay(CHECKIN.plusDays(2), CHECKIN.plusDays(4))));
+    }
+
+    @Test
+    void checkoutDayIsNotReserved() {
+        assertTrue(stayReservationDateRepository.isReserved(booked, EpochDayRange.ofStay(CHECKIN.plusDays(2), CHECKIN.plusDays(5))));
+        // 上一个客人 1/13 退房，同一天可以入住
+        assertFalse(stayReservationDateRepository.isReserved(booked, EpochDayRange.ofStay(CHECKIN.plusDays(3), CHECKIN.plusDays(5))));
+        assertFalse(stayReservationDateRepository.isReserved(booked, EpochDayRange.ofStay(CHECKIN.minusDays(2), CHECKIN)));
+        assertFalse(stayReservationDateRepository.isReserved(free, EpochDayRange.ofStay(CHECKIN, CHECKIN.plusDays(3))));
+    }
+
+    @Test
+    void findReservedStayIdsReturnsOnlyOverlappingStays() {
+        LongHashSet reserved = stayReservationDateRepository.findReservedStayIds(
+                List.of(booked, free), EpochDayRange.ofStay(CHECKIN.minusDays(5), CHECKIN.plusDays(1)));
+
+        assertEquals(1, reserved.size());
+        assertTrue(reserved.contains(booked));
+        assertFalse(reserved.contains(free));
+        assertTrue(stayReservationDateRepository.findReservedStayIds(
+                List.of(booked, free), EpochDayRange.ofStay(CHECKIN.plusDays(3), CHECKIN.plusDays(7))).isEmpty());
+    }
+
+    @Test
+    void deleteNightsRemovesOnlyTheRange() {
+        assertEquals(2, stayReservationDateRepository.deleteNights(booked, EpochDayRange.ofStay(CHECKIN, CHECKIN.plusDays(2))));
+
+        assertEquals(1, stayReservationDateRepository.count());
+        assertTrue(stayReservationDateRepository.isReserved(booked, EpochDayRange.ofStay(CHECKIN.plusDays(2), CHECKIN.plusDays(3))));
+    }
+
+    private static Stay stay(String name, User host) {
+        return new Stay.Builder()
+                .setName(name)
+                .setAddress(name + " address")
+                .setDescription(name + " description")
+                .setGuestNumber(2)
+                .setHost(host)
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.tq.staybooking.repository;
+
+import com.tq.staybooking.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * insertIgnoreWithAuthority skips existing usernames and reports how many users it created,
+ * including when the driver rewrites the batch and returns SUCCESS_NO_INFO for every row.
+ */
+@DataJpaTest(properties = {
+        // INSERT IGNORE needs H2's MySQL mode
+        "spring.datasource.url=jdbc:h2:mem:user-provisioning;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        // migrations are MySQL-only; the in-memory H2 schema comes from the entities
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class UserProvisioningRepositoryTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void existingUsernamesAreSkippedAndNotCounted() {
+        CustomUserRepositoryImpl repository = new CustomUserRepositoryImpl(jdbcTemplate);
+        repository.insertWithAuthority(user("alice", "hash-old"), "ROLE_GUEST");
+
+        int created = repository.insertIgnoreWithAuthority(
+                List.of(user("alice", "hash-a"), user("bob", "hash-b"), user("carol", "hash-c")), "ROLE_GUEST");
+
+        assertEquals(2, created);
+        assertEquals("hash-old", jdbcTemplate.queryForObject("SELECT password FROM users WHERE username = 'alice'", String.class));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM authority", Integer.class));
+    }
+
+    @Test
+    void rewrittenBatchIsCountedFromTheStoredHashes() {
+        CustomUserRepositoryImpl repository = new CustomUserRepositoryImpl(jdbcTemplate);
+        repository.insertWithAuthority(user("alice", "hash-old"), "ROLE_GUEST");
+        repository.insertWithAuthority(user("bob", "hash-b"), "ROLE_GUEST");
+        // 模拟改写后的 batch 跑完的状态：alice / bob 原来就有，被 IGNORE；dave 在 chunk 里出现两次，只有第一行写进去了
+        repository.insertWithAuthority(user("dave", "hash-d1"), "ROLE_GUEST");
+        List<User> chunk = List.of(user("alice", "hash-a"), user("bob", "hash-b2"), user("dave", "hash-d1"),
+                user("dave", "hash-d2"));
+
+        int noInfo = Statement.SUCCESS_NO_INFO;
+        assertEquals(1, repository.countCreated(new int[]{noInfo, noInfo, noInfo, noInfo}, chunk));
+        assertEquals(2, repository.countCreated(new int[]{0, 1, 1, 0}, chunk));
+    }
+
+    private static User user(String username, String password) {
+        return new User.Builder().setUsername(username).setPassword(password).setEnabled(true).build();
+    }
+}
@@ -0,0 +1,154 @@
+package com.tq.staybooking.service;
+
+import com.tq.staybooking.model.Location;
+import com.tq.staybooking.repository.LocationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Same seed + anchor date = same rows, whatever the thread count; the report matches what was written.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:datagen;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        // migrations are MySQL-only; the in-memory H2 schema comes from the entities
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "gcs.bucket=test-bucket",
+        "datagen.anchor-date=2025-03-01"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DatasetGeneratorService.class, DatasetGeneratorServiceTests.Stubs.class})
+// generator 在自己的线程池里提交事务，测试不包事务，每次自己清表
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DatasetGeneratorServiceTests {
+    private static final double SCALE = 0.01; // 10 hosts, 200 guests, 100 stays
+    private static final AtomicLong indexedLocations = new AtomicLong();
+
+    @Autowired
+    private DatasetGeneratorService generator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void clean() {
+        for (String table : List.of("stay_reserved_date", "reservation", "stay_image", "stay", "authority", "users")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+        indexedLocations.set(0);
+    }
+
+    @Test
+    void sameSettingsProduceTheSameRowsWhateverTheThreadCount() throws Exception {
+        ReflectionTestUtils.setField(generator, "threads", 1);
+        generator.generate(SCALE);
+        List<List<Map<String, Object>>> first = snapshot();
+
+        clean();
+        ReflectionTestUtils.setField(generator, "threads", 4);
+        generator.generate(SCALE);
+        List<List<Map<String, Object>>> second = snapshot();
+
+        assertFalse(first.get(2).isEmpty());
+        assertEquals(first, second);
+    }
+
+    @Test
+    void reportMatchesTheWrittenRows() throws Exception {
+        DatasetGeneratorService.GenerationReport report = generator.generate(SCALE);
+
+        assertEquals(210, report.getUsers());
+        assertEquals(210, count("users"));
+        assertEquals(100, report.getStays());
+        assertEquals(100, count("stay"));
+        assertEquals(report.getImages(), count("stay_image"));
+        // 每个 stay 2~4 张图
+        assertTrue(report.getImages() >= 200 && report.getImages() <= 400, "images: " + report.getImages());
+        assertEquals(report.getReservations(), count("reservation"));
+        assertEquals(report.getReservedDates(), count("stay_reserved_date"));
+        assertEquals(100, report.getLocations());
+        assertEquals(100, indexedLocations.get());
+
+        // 日历在 anchor-date 前 90 天到后 365 天之间
+        LocalDate anchor = LocalDate.parse("2025-03-01");
+        LocalDate first = jdbcTemplate.queryForObject("SELECT MIN(date) FROM stay_reserved_date", LocalDate.class);
+        LocalDate last = jdbcTemplate.queryForObject("SELECT MAX(date) FROM stay_reserved_date", LocalDate.class);
+        assertFalse(first.isBefore(anchor.minusDays(90)), "first: " + first);
+        assertTrue(last.isBefore(anchor.plusDays(365)), "last: " + last);
+
+        // 再跑一次：用户已经存在，INSERT IGNORE 跳过；stay id 接着往后排
+        DatasetGeneratorService.GenerationReport again = generator.generate(SCALE);
+        assertEquals(0, again.getUsers());
+        assertEquals(200, count("stay"));
+    }
+
+    private List<List<Map<String, Object>>> snapshot() {
+        List<List<Map<String, Object>>> tables = new ArrayList<>();
+        tables.add(jdbcTemplate.queryForList("SELECT id, name, description, address, guest_number, user_id, lat, lon FROM stay ORDER BY id"));
+        tables.add(jdbcTemplate.queryForList("SELECT url, stay_id FROM stay_image ORDER BY url"));
+        tables.add(jdbcTemplate.queryForList(
+                "SELECT checkin_date, checkout_date, user_id, stay_id FROM reservation ORDER BY stay_id, checkin_date"));
+        tables.add(jdbcTemplate.queryForList("SELECT date, stay_id FROM stay_reserved_date ORDER BY stay_id, date"));
+        return tables;
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    // 故意不加 @Configuration / @TestConfiguration：只能通过上面的 @Import 用到，
+    // 不会被 component scan 扫进别的 context（比如 loadtest 那个 app）
+    static class Stubs {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder(4);
+        }
+
+        // 没有 Elasticsearch：只数一下写了多少个点
+        @Bean
+        LocationRepository locationRepository() {
+            return (LocationRepository) Proxy.newProxyInstance(DatasetGeneratorServiceTests.class.getClassLoader(),
+                    new Class<?>[]{LocationRepository.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "hashCode": return System.identityHashCode(proxy);
+                            case "equals": return proxy == args[0];
+                            case "toString": return "LocationRepository stub";
+                            default: break;
+                        }
+                        if (method.getName().equals("saveAll")) {
+                            for (Object location : (Iterable<?>) args[0]) {
+                                indexedLocations.addAndGet(location instanceof Location ? 1 : 0);
+                            }
+                            return args[0];
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+}
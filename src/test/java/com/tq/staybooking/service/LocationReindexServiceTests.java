@@ -0,0 +1,125 @@
+package com.tq.staybooking.service;
+
+import com.tq.staybooking.model.StayAddress;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.core.geo.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The per-page diff behind reconcile / rebuild: one page of stays from MySQL against the index docs in the same id range,
+ * and which coordinates flow between the two.
+ */
+class LocationReindexServiceTests {
+    private static final GeoPoint SEATTLE = new GeoPoint(47.6062, -122.3321);
+    private static final GeoPoint TACOMA = new GeoPoint(47.2529, -122.4443);
+
+    @Test
+    void reconcileIndexesMissingStaysAndDeletesOrphans() {
+        // 1、2 已经在 ES 里；3 缺了；ES 里的 4 在 MySQL 里已经没有了
+        LocationReindexService.PageDiff diff = LocationReindexService.diffPage(
+                stays(1, 2, 3), Map.of(1L, SEATTLE, 2L, TACOMA, 4L, SEATTLE), false);
+
+        assertEquals(List.of(3L), ids(diff.toIndex));
+        assertTrue(diff.knownPoints.isEmpty());
+        assertEquals(List.of(4L), diff.orphanIds);
+        assertEquals(3, diff.indexedBefore);
+    }
+
+    @Test
+    void rebuildRewritesEveryStayAndReusesKnownPoints() {
+        LocationReindexService.PageDiff diff = LocationReindexService.diffPage(
+                stays(1, 2, 3), Map.of(1L, SEATTLE, 3L, TACOMA), true);
+
+        assertEquals(List.of(1L, 2L, 3L), ids(diff.toIndex));
+        // 2 没有坐标，要重新 geocode；1、3 直接用 ES 里的点
+        assertEquals(Map.of(1L, SEATTLE, 3L, TACOMA), diff.knownPoints);
+        assertTrue(diff.orphanIds.isEmpty());
+    }
+
+    @Test
+    void rangeAfterTheLastStayIsAllOrphans() {
+        LocationReindexService.PageDiff diff = LocationReindexService.diffPage(
+                List.of(), Map.of(9L, SEATTLE, 7L, TACOMA), false);
+
+        assertTrue(diff.toIndex.isEmpty());
+        assertEquals(List.of(7L, 9L), diff.orphanIds);
+    }
+
+    @Test
+    void inSyncPageNeedsNoWork() {
+        LocationReindexService.PageDiff diff = LocationReindexService.diffPage(
+                List.of(stay(5, SEATTLE), stay(6, TACOMA)), Map.of(5L, SEATTLE, 6L, TACOMA), false);
+
+        assertTrue(diff.toIndex.isEmpty());
+        assertTrue(diff.orphanIds.isEmpty());
+        assertTrue(diff.toBackfill.isEmpty());
+    }
+
+    @Test
+    void indexPointsAreCopiedToStaysWithoutCoordinates() {
+        // 1 是 V5 之前建的（MySQL 没坐标）；2 两边都有；3 ES 里的文档没有坐标，要等 geocode
+        List<StayAddress> page = List.of(stay(1, null), stay(2, TACOMA), stay(3, null));
+        LocationReindexService.PageDiff diff = LocationReindexService.diffPage(
+                page, Map.of(1L, SEATTLE, 2L, TACOMA, 3L, new GeoPoint(Double.NaN, Double.NaN)), false);
+
+        assertEquals(Map.of(1L, SEATTLE), diff.toBackfill);
+        assertTrue(diff.toIndex.isEmpty());
+    }
+
+    @Test
+    void missingDocsReuseStoredCoordinates() {
+        List<StayAddress> page = List.of(stay(1, SEATTLE), stay(2, null), stay(3, TACOMA));
+        LocationReindexService.PageDiff diff = LocationReindexService.diffPage(page, Map.of(3L, SEATTLE), true);
+
+        assertEquals(List.of(1L, 2L, 3L), ids(diff.toIndex));
+        // 1 用 MySQL 的点，不用 geocode；2 哪儿都没有；3 两边都有时以 ES 为准
+        assertEquals(Map.of(1L, SEATTLE, 3L, SEATTLE), diff.knownPoints);
+        assertTrue(diff.toBackfill.isEmpty());
+    }
+
+    private static List<StayAddress> stays(long... ids) {
+        List<StayAddress> stays = new ArrayList<>();
+        for (long id : ids) {
+            stays.add(stay(id, null));
+        }
+        return stays;
+    }
+
+    private static StayAddress stay(long id, GeoPoint stored) {
+        return new StayAddress() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getAddress() {
+                return id + " Main St";
+            }
+
+            @Override
+            public Double getLat() {
+                return stored == null ? null : stored.getLat();
+            }
+
+            @Override
+            public Double getLon() {
+                return stored == null ? null : stored.getLon();
+            }
+        };
+    }
+
+    private static List<Long> ids(List<StayAddress> stays) {
+        List<Long> ids = new ArrayList<>();
+        for (StayAddress stay : stays) {
+            ids.add(stay.getId());
+        }
+        return ids;
+    }
+}
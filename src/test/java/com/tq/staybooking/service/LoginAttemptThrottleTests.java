@@ -0,0 +1,127 @@
+package com.tq.staybooking.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The count-min sketch behind the login throttle: per-username / per-IP limits, the sliding window, and forgiving a
+ * username's earlier failures on success without touching anyone else's.
+ */
+class LoginAttemptThrottleTests {
+    private static final long WINDOW = Duration.ofMinutes(5).toMillis();
+
+    // 从一个窗口的开头开始，方便算 previous 的权重
+    private final AtomicLong now = new AtomicLong(1000 * WINDOW);
+    private final LoginAttemptThrottle throttle = new LoginAttemptThrottle(65536, Duration.ofMillis(WINDOW), 3, 5,
+            new SimpleMeterRegistry(), now::get);
+
+    @Test
+    void usernameIsBlockedAfterMaxFailures() {
+        fail("alice", "10.0.0.1", 3);
+        assertFalse(throttle.isAllowed("alice", "10.0.0.2"));
+        assertTrue(throttle.isAllowed("bob", "10.0.0.2"));
+    }
+
+    @Test
+    void ipIsBlockedAcrossUsernames() {
+        for (int i = 0; i < 5; i++) {
+            throttle.recordFailure("user-" + i, "10.0.0.1");
+        }
+        assertFalse(throttle.isAllowed("someone-new", "10.0.0.1"));
+        assertTrue(throttle.isAllowed("someone-new", "10.0.0.2"));
+    }
+
+    @Test
+    void keysWithTheSameStringHashCodeAreCountedSeparately() {
+        // "Aa".hashCode() == "BB".hashCode()：以前每一行都撞在同一个 slot 上
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        fail("Aa", null, 3);
+        assertFalse(throttle.isAllowed("Aa", null));
+        assertTrue(throttle.isAllowed("BB", null));
+    }
+
+    @Test
+    void failuresSlideOutOfTheWindow() {
+        fail("alice", null, 3);
+        // 下一个窗口过了一半：上一个窗口的 3 次只算一半
+        now.addAndGet(WINDOW + WINDOW / 2);
+        assertTrue(throttle.isAllowed("alice", null));
+        fail("alice", null, 1);
+        assertTrue(throttle.isAllowed("alice", null));
+        fail("alice", null, 1);
+        assertFalse(throttle.isAllowed("alice", null));
+
+        // 两个窗口以后全部过期
+        now.addAndGet(2 * WINDOW);
+        assertTrue(throttle.isAllowed("alice", null));
+    }
+
+    @Test
+    void successClearsTheUsernameButNotTheIp() {
+        fail("alice", "10.0.0.1", 3);
+        throttle.recordSuccess("alice");
+        assertTrue(throttle.isAllowed("alice", "10.0.0.2"));
+
+        fail("bob", "10.0.0.1", 2);
+        throttle.recordSuccess("bob");
+        // 10.0.0.1 一共失败了 5 次
+        assertFalse(throttle.isAllowed("carol", "10.0.0.1"));
+    }
+
+    @Test
+    void successDoesNotForgiveLaterFailures() {
+        fail("alice", null, 2);
+        throttle.recordSuccess("alice");
+        fail("alice", null, 2);
+        assertTrue(throttle.isAllowed("alice", null));
+        fail("alice", null, 1);
+        assertFalse(throttle.isAllowed("alice", null));
+    }
+
+    @Test
+    void successDoesNotClearCollidingKeys() {
+        // 最小的 sketch（16 格）里找一个和 "mallory" 在每一行都撞在一起的 username
+        LoginAttemptThrottle small = new LoginAttemptThrottle(16, Duration.ofMillis(WINDOW), 3, 5,
+                new SimpleMeterRegistry(), now::get);
+        String victim = null;
+        for (int i = 0; victim == null; i++) {
+            if (collides(small, "u:mallory", "u:user-" + i)) {
+                victim = "user-" + i;
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            small.recordFailure("mallory", null);
+        }
+        assertFalse(small.isAllowed("mallory", null));
+
+        small.recordSuccess(victim);
+        assertTrue(small.isAllowed(victim, null));
+        // 以前 recordSuccess 会把这 4 个 slot 清零，mallory 的失败次数也跟着没了
+        assertFalse(small.isAllowed("mallory", null));
+    }
+
+    private static boolean collides(LoginAttemptThrottle throttle, String key, String other) {
+        for (int row = 0; row < 4; row++) {
+            int a = ReflectionTestUtils.invokeMethod(throttle, "index", row, key);
+            int b = ReflectionTestUtils.invokeMethod(throttle, "index", row, other);
+            if (a != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void fail(String username, String clientIp, int times) {
+        for (int i = 0; i < times; i++) {
+            throttle.recordFailure(username, clientIp);
+        }
+    }
+}
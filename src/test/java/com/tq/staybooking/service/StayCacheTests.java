@@ -0,0 +1,136 @@
+package com.tq.staybooking.service;
+
+import com.tq.staybooking.model.Stay;
+import com.tq.staybooking.model.StayImage;
+import com.tq.staybooking.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * StayCache hands out copies of an immutable snapshot, and doesn't cache what it reads right after a write
+ * (that read may come from a replica that is still behind).
+ */
+class StayCacheTests {
+    private final AtomicLong nanos = new AtomicLong();
+    private final StayCache cache = new StayCache(100, Duration.ofMinutes(10), Duration.ofSeconds(5),
+            new SimpleMeterRegistry(), nanos::get);
+
+    @Test
+    void readersGetTheirOwnCopy() {
+        Stay first = cache.get(1L, id -> stay(id, "loft"));
+        first.setImages(new ArrayList<>());
+        first.setHost(new User.Builder().setUsername("someone-else").build());
+
+        Stay second = cache.get(1L, id -> {
+            throw new AssertionError("should be cached");
+        });
+        assertNotSame(first, second);
+        assertEquals("host", second.getHost().getUsername());
+        assertEquals(List.of("https://img/1.jpg"), urls(second));
+        assertNull(second.getReservedDates());
+    }
+
+    @Test
+    void getAllKeepsIdOrderAndLoadsMissesOnce() {
+        cache.get(2L, id -> stay(id, "two"));
+        AtomicInteger loads = new AtomicInteger();
+        Function<Collection<Long>, List<Stay>> loader = ids -> {
+            loads.incrementAndGet();
+            assertEquals(List.of(3L, 9L, 1L), new ArrayList<>(ids));
+            // 9 不存在：直接跳过
+            return List.of(stay(1L, "one"), stay(3L, "three"));
+        };
+
+        List<Stay> stays = cache.getAll(List.of(3L, 2L, 9L, 1L), loader);
+        assertEquals(List.of("three", "two", "one"), names(stays));
+        assertEquals(1, loads.get());
+        assertEquals(List.of("three", "two", "one"), names(cache.getAll(List.of(3L, 2L, 1L), ids -> {
+            throw new AssertionError("should be cached");
+        })));
+    }
+
+    @Test
+    void readsRightAfterAWriteAreNotCached() {
+        cache.get(1L, id -> stay(id, "old"));
+        cache.getHostStayIds("host", 1L, host -> List.of(1L));
+        cache.evict(1L, "host");
+
+        AtomicInteger loads = new AtomicInteger();
+        Function<Long, Stay> loader = id -> {
+            loads.incrementAndGet();
+            return stay(id, "new");
+        };
+        cache.get(1L, loader);
+        cache.get(1L, loader);
+        assertEquals(2, loads.get());
+        assertEquals(List.of(1L, 2L), cache.getHostStayIds("host", 1L, host -> List.of(1L, 2L)));
+        assertEquals(List.of(1L, 2L, 3L), cache.getHostStayIds("host", 1L, host -> List.of(1L, 2L, 3L)));
+
+        // 窗口过了：replica 已经追上，又可以缓存了
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        cache.get(1L, loader);
+        assertEquals("new", cache.get(1L, loader).getName());
+        assertEquals(3, loads.get());
+        cache.getHostStayIds("host", 1L, host -> List.of(1L, 2L, 3L));
+        assertEquals(List.of(1L, 2L, 3L), cache.getHostStayIds("host", 1L, host -> {
+            throw new AssertionError("should be cached");
+        }));
+    }
+
+    @Test
+    void hostIndexIsOnlyReusedForItsListingVersion() {
+        assertEquals(List.of(1L), cache.getHostStayIds("host", 1L, host -> List.of(1L)));
+        assertEquals(List.of(1L), cache.getHostStayIds("host", 1L, host -> {
+            throw new AssertionError("should be cached");
+        }));
+        // 别的实例加了一个 stay：这里没有 evict，但版本号变了
+        assertEquals(List.of(1L, 2L), cache.getHostStayIds("host", 2L, host -> List.of(1L, 2L)));
+        assertEquals(List.of(1L, 2L), cache.getHostStayIds("host", 2L, host -> {
+            throw new AssertionError("should be cached");
+        }));
+    }
+
+    @Test
+    void missingStayIsNotCached() {
+        assertNull(cache.get(7L, id -> null));
+        assertEquals("seven", cache.get(7L, id -> stay(id, "seven")).getName());
+    }
+
+    private static Stay stay(long id, String name) {
+        Stay stay = new Stay.Builder().setId(id).setName(name).setAddress(id + " Main St").setGuestNumber(2)
+                .setHost(new User.Builder().setUsername("host").setPassword("secret").build())
+                .build();
+        List<StayImage> images = new ArrayList<>();
+        images.add(new StayImage("https://img/" + id + ".jpg", stay));
+        return stay.setImages(images);
+    }
+
+    private static List<String> urls(Stay stay) {
+        List<String> urls = new ArrayList<>();
+        for (StayImage image : stay.getImages()) {
+            urls.add(image.getUrl());
+        }
+        return urls;
+    }
+
+    private static List<String> names(List<Stay> stays) {
+        List<String> names = new ArrayList<>();
+        for (Stay stay : stays) {
+            names.add(stay.getName());
+        }
+        return names;
+    }
+}
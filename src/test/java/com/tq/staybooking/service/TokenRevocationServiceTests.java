@@ -0,0 +1,191 @@
+package com.tq.staybooking.service;
+
+import com.tq.staybooking.config.security.UserDetailsCache;
+import com.tq.staybooking.model.RevokedToken;
+import com.tq.staybooking.repository.RevokedTokenRepository;
+import com.tq.staybooking.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Revocation rules (per token, per user at millisecond precision) and how the in-memory snapshot follows the table:
+ * incremental refresh for other instances' rows, rebuild to purge expired ones.
+ */
+class TokenRevocationServiceTests {
+    // revoked_token 表：只实现 TokenRevocationService 用到的几个方法
+    private final Map<String, RevokedToken> table = new ConcurrentHashMap<>();
+    private final RevokedTokenRepository repository = (RevokedTokenRepository) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{RevokedTokenRepository.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "save":
+                        RevokedToken saved = (RevokedToken) args[0];
+                        table.put(saved.getId(), saved);
+                        return saved;
+                    case "findByRevokedAtAfter":
+                        return select(row -> row.getRevokedAt().isAfter((Instant) args[0]));
+                    case "findByExpiresAtAfter":
+                        return select(row -> row.getExpiresAt().isAfter((Instant) args[0]));
+                    case "deleteByExpiresAtBefore":
+                        List<RevokedToken> expired = select(row -> row.getExpiresAt().isBefore((Instant) args[0]));
+                        expired.forEach(row -> table.remove(row.getId()));
+                        return (long) expired.size();
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+    @Test
+    void logoutRevokesOnlyThatToken() {
+        TokenRevocationService service = service(Duration.ofHours(1));
+        Claims mine = claims("jti-1", "alice", Instant.now().minusSeconds(60));
+        Claims other = claims("jti-2", "alice", Instant.now().minusSeconds(60));
+
+        service.revokeToken(mine);
+        assertTrue(service.isRevoked(mine));
+        assertFalse(service.isRevoked(other));
+    }
+
+    @Test
+    void logoutEverywhereKeepsOnlyLaterTokens() {
+        TokenRevocationService service = service(Duration.ofHours(1));
+        Claims earlier = claims("jti-1", "alice", Instant.now().minusSeconds(2));
+        // 和 logout everywhere 同一秒、但在它之前签发的
+        Claims sameSecond = claims("jti-2", "alice", Instant.now());
+        sleepPastMillisecond();
+        service.revokeUser("alice");
+        sleepPastMillisecond();
+        Claims relogin = claims("jti-3", "alice", Instant.now());
+
+        assertTrue(service.isRevoked(earlier));
+        assertTrue(service.isRevoked(sameSecond));
+        assertFalse(service.isRevoked(relogin));
+        assertFalse(service.isRevoked(claims("jti-4", "bob", Instant.now().minusSeconds(2))));
+    }
+
+    @Test
+    void signedTokenFromTheSameSecondIsRevoked() {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "0123456789abcdef0123456789abcdef");
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaximumSize", 10L);
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaxTtl", Duration.ofMinutes(1));
+        jwtUtil.init();
+        TokenRevocationService service = service(Duration.ofHours(1));
+
+        Claims before = jwtUtil.verify(jwtUtil.generateToken("alice"));
+        sleepPastMillisecond();
+        service.revokeUser("alice");
+        sleepPastMillisecond();
+        Claims after = jwtUtil.verify(jwtUtil.generateToken("alice"));
+
+        assertTrue(service.isRevoked(before));
+        assertFalse(service.isRevoked(after));
+    }
+
+    @Test
+    void issuedBeforeComparesMilliseconds() {
+        assertTrue(TokenRevocationService.issuedBefore(claims("jti-1", "alice", Instant.ofEpochMilli(5_100)), 5_900));
+        assertFalse(TokenRevocationService.issuedBefore(claims("jti-1", "alice", Instant.ofEpochMilli(5_900)), 5_900));
+        assertFalse(TokenRevocationService.issuedBefore(claims("jti-1", "alice", Instant.ofEpochMilli(6_000)), 5_900));
+    }
+
+    @Test
+    void tokensWithoutMillisecondClaimAreRevokedThroughTheSecond() {
+        // 加 iat_ms 之前签发的 token：只知道是第 5 秒签的，分不清在 revoke 前后，按 revoke 处理
+        Claims legacy = claims("jti-1", "alice", Instant.ofEpochMilli(5_900));
+        legacy.remove(JwtUtil.ISSUED_AT_MILLIS_CLAIM);
+
+        assertTrue(TokenRevocationService.issuedBefore(legacy, 5_100));
+        assertFalse(TokenRevocationService.issuedBefore(legacy, 4_999));
+    }
+
+    @Test
+    void refreshPicksUpOtherInstancesRevocations() {
+        TokenRevocationService service = service(Duration.ofHours(1));
+        Claims claims = claims("jti-1", "alice", Instant.now().minusSeconds(60));
+
+        // 别的实例写进表里的
+        table.put("jti-1", new RevokedToken("jti-1", Instant.now(), Instant.now().plusSeconds(3600)));
+        assertFalse(service.isRevoked(claims));
+        service.refresh();
+        assertTrue(service.isRevoked(claims));
+    }
+
+    @Test
+    void rebuildPurgesExpiredRows() {
+        TokenRevocationService service = service(Duration.ZERO);
+        Claims expired = claims("jti-1", "alice", Instant.now().minusSeconds(60));
+        expired.setExpiration(Date.from(Instant.now().minusSeconds(1)));
+        Claims live = claims("jti-2", "alice", Instant.now().minusSeconds(60));
+        service.revokeToken(expired);
+        service.revokeToken(live);
+        assertTrue(service.isRevoked(expired));
+
+        // rebuild-interval = 0：每次 refresh 都 rebuild
+        service.refresh();
+        assertEquals(List.of("jti-2"), new ArrayList<>(table.keySet()));
+        assertFalse(service.isRevoked(expired));
+        assertTrue(service.isRevoked(live));
+    }
+
+    private TokenRevocationService service(Duration rebuildInterval) {
+        PlatformTransactionManager transactionManager = (PlatformTransactionManager) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{PlatformTransactionManager.class}, (proxy, method, args) -> {
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UserDetailsCache userDetailsCache = new UserDetailsCache(username -> {
+            throw new UnsupportedOperationException();
+        }, 10, Duration.ofMinutes(1), meterRegistry, transactionManager);
+        TokenRevocationService service = new TokenRevocationService(repository, userDetailsCache, 1000, 0.01,
+                rebuildInterval, Duration.ofSeconds(10), meterRegistry);
+        service.init();
+        return service;
+    }
+
+    private List<RevokedToken> select(Predicate<RevokedToken> predicate) {
+        List<RevokedToken> rows = new ArrayList<>();
+        for (RevokedToken row : table.values()) {
+            if (predicate.test(row)) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static void sleepPastMillisecond() {
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 和 JwtUtil 签出来的一样：iat / exp 只有秒，iat_ms 是毫秒
+    private static Claims claims(String jti, String username, Instant issuedAt) {
+        Claims claims = Jwts.claims();
+        claims.put(JwtUtil.ISSUED_AT_MILLIS_CLAIM, issuedAt.toEpochMilli());
+        claims.setId(jti);
+        claims.setSubject(username);
+        claims.setIssuedAt(Date.from(Instant.ofEpochSecond(issuedAt.getEpochSecond())));
+        claims.setExpiration(Date.from(Instant.ofEpochSecond(issuedAt.getEpochSecond()).plus(Duration.ofDays(1))));
+        return claims;
+    }
+}
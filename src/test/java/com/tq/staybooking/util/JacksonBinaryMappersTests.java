@@ -0,0 +1,68 @@
+package com.tq.staybooking.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tq.staybooking.model.Reservation;
+import com.tq.staybooking.model.Stay;
+import com.tq.staybooking.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Smile / CBOR bodies must map Stay, Reservation and User exactly like JSON does (builders, snake_case names, dates),
+ * and StreamingJson must pick the encoding from Accept without ever breaking plain JSON clients.
+ */
+class JacksonBinaryMappersTests {
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+    private final JacksonBinaryMappers binary = new JacksonBinaryMappers(Jackson2ObjectMapperBuilder.json());
+
+    @Test
+    void reservationRoundTripsThroughSmileAndCbor() throws Exception {
+        User host = new User.Builder().setUsername("host").setPassword("secret").setEnabled(true).build();
+        Stay stay = new Stay.Builder().setId(7L).setName("loft").setAddress("1 Main St").setDescription("quiet")
+                .setGuestNumber(3).setHost(host).build();
+        Reservation reservation = new Reservation.Builder()
+                .setId(11L)
+                .setGuest(new User.Builder().setUsername("guest").setPassword("secret").setEnabled(true).build())
+                .setStay(stay)
+                .setCheckinDate(LocalDate.of(2030, 1, 10))
+                .setCheckoutDate(LocalDate.of(2030, 1, 13))
+                .build();
+        String expected = json.writeValueAsString(reservation);
+        // Stay.Builder 读的是 "guestNumber"、写的是 "guest_number"，JSON 自己读写也不对称；这里只要求和 JSON 行为一致
+        String expectedAfterRead = json.writeValueAsString(json.readValue(expected, Reservation.class));
+
+        for (ObjectMapper mapper : new ObjectMapper[]{binary.getSmile(), binary.getCbor()}) {
+            byte[] encoded = mapper.writeValueAsBytes(reservation);
+            assertNotEquals(expected, new String(encoded));
+            // 读回来走的是 Reservation.Builder / Stay.Builder / User.Builder
+            Reservation decoded = mapper.readValue(encoded, Reservation.class);
+            assertEquals(expectedAfterRead, json.writeValueAsString(decoded));
+            assertEquals(json.readTree(expected), mapper.readTree(encoded));
+        }
+    }
+
+    @Test
+    void negotiateFallsBackToJson() {
+        assertEquals(StreamingJson.Format.JSON, StreamingJson.negotiate(null));
+        assertEquals(StreamingJson.Format.JSON, StreamingJson.negotiate("*/*"));
+        assertEquals(StreamingJson.Format.JSON, StreamingJson.negotiate("text/html, application/*;q=0.9"));
+        assertEquals(StreamingJson.Format.JSON, StreamingJson.negotiate("not a media type;;"));
+        assertEquals(StreamingJson.Format.NDJSON, StreamingJson.negotiate("application/x-ndjson"));
+        assertEquals(StreamingJson.Format.SMILE, StreamingJson.negotiate("application/x-jackson-smile, application/json;q=0.5"));
+        assertEquals(StreamingJson.Format.CBOR, StreamingJson.negotiate("application/json;q=0.1, application/cbor"));
+    }
+
+    @Test
+    void negotiateNeverPicksRefusedTypes() {
+        // q=0：客户端明确不要
+        assertEquals(StreamingJson.Format.JSON, StreamingJson.negotiate("application/cbor;q=0"));
+        assertEquals(StreamingJson.Format.NDJSON, StreamingJson.negotiate("application/json;q=0, */*"));
+        assertEquals(StreamingJson.Format.SMILE,
+                StreamingJson.negotiate("application/json;q=0, application/x-ndjson;q=0, application/*;q=0.5"));
+    }
+}
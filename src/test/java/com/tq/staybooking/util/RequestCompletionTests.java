@@ -0,0 +1,58 @@
+package com.tq.staybooking.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A plain request is done when doFilter returns; a streamed (async) one only when the container completes it.
+ */
+class RequestCompletionTests {
+    private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/stays");
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+    private final List<String> calls = new ArrayList<>();
+
+    @Test
+    void plainRequestIsDoneRightAway() {
+        response.setStatus(404);
+        RequestCompletion.whenDone(request, response, false, (status, failed) -> calls.add(status + " " + failed));
+        assertEquals(List.of("404 false"), calls);
+    }
+
+    @Test
+    void asyncRequestIsDoneOnComplete() {
+        request.setAsyncSupported(true);
+        MockAsyncContext asyncContext = (MockAsyncContext) request.startAsync(request, response);
+
+        RequestCompletion.whenDone(request, response, false, (status, failed) -> calls.add(status + " " + failed));
+        // controller 已经返回，body 还在写
+        assertTrue(calls.isEmpty());
+
+        response.setStatus(200);
+        asyncContext.complete();
+        assertEquals(List.of("200 false"), calls);
+    }
+
+    @Test
+    void asyncTimeoutIsReportedAsFailed() throws Exception {
+        request.setAsyncSupported(true);
+        MockAsyncContext asyncContext = (MockAsyncContext) request.startAsync(request, response);
+
+        RequestCompletion.whenDone(request, response, false, (status, failed) -> calls.add(status + " " + failed));
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+        response.setStatus(503);
+        asyncContext.complete();
+        assertEquals(List.of("503 true"), calls);
+    }
+}
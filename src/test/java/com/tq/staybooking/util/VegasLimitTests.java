@@ -0,0 +1,83 @@
+package com.tq.staybooking.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * How the limit moves: up while latency stays at the route's no-load level, down when it grows or requests fail,
+ * and not at all from cheap routes or lightly loaded samples.
+ */
+class VegasLimitTests {
+    private static final String SEARCH = "GET /search";
+    private static final long SEARCH_RTT = TimeUnit.MILLISECONDS.toNanos(20);
+
+    @Test
+    void growsWhileLatencyStaysFlat() {
+        VegasLimit limit = new VegasLimit(20, 4, 200, 1000);
+        limit.onSample(SEARCH, SEARCH_RTT, 20, false);
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(SEARCH, SEARCH_RTT, limit.getLimit(), false);
+        }
+        assertTrue(limit.getLimit() > 20, "limit: " + limit.getLimit());
+    }
+
+    @Test
+    void shrinksWhenLatencyGrowsAtFullLoad() {
+        VegasLimit limit = new VegasLimit(20, 4, 200, 1000);
+        limit.onSample(SEARCH, SEARCH_RTT, 20, false);
+        for (int i = 0; i < 50; i++) {
+            // 排队：延迟是空载的 10 倍
+            limit.onSample(SEARCH, 10 * SEARCH_RTT, limit.getLimit(), false);
+        }
+        // 估出来的排队 < 6 以后只靠延迟就不再往下压了（剩下的交给 5xx / 超时）
+        assertTrue(limit.getLimit() <= 6, "limit: " + limit.getLimit());
+    }
+
+    @Test
+    void cheapResponsesOnOtherRoutesDoNotCollapseTheLimit() {
+        VegasLimit limit = new VegasLimit(20, 4, 200, 1000);
+        limit.onSample(SEARCH, SEARCH_RTT, 20, false);
+        for (int i = 0; i < 50; i++) {
+            // 缓存命中的 GET：几十微秒
+            limit.onSample("GET /stays/{stayId}", TimeUnit.MICROSECONDS.toNanos(50), limit.getLimit(), false);
+            limit.onSample(SEARCH, SEARCH_RTT, limit.getLimit(), false);
+        }
+        assertTrue(limit.getLimit() >= 20, "limit: " + limit.getLimit());
+    }
+
+    @Test
+    void droppedRequestsShrinkTheLimit() {
+        VegasLimit limit = new VegasLimit(20, 4, 200, 1000);
+        limit.onSample(null, SEARCH_RTT, 1, true);
+        assertEquals(18, limit.getLimit());
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(null, SEARCH_RTT, 1, true);
+        }
+        assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    void lightlyLoadedSamplesDoNotMoveTheLimit() {
+        VegasLimit limit = new VegasLimit(20, 4, 200, 1000);
+        limit.onSample(SEARCH, SEARCH_RTT, 1, false);
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(SEARCH, 5 * SEARCH_RTT, 9, false);
+        }
+        assertEquals(20, limit.getLimit());
+    }
+
+    @Test
+    void probeResetsTheNoLoadLatency() {
+        VegasLimit limit = new VegasLimit(20, 4, 200, 10);
+        limit.onSample(SEARCH, SEARCH_RTT, 20, false);
+        // DB 换了一台更慢的：之后的“空载”就是 40ms
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(SEARCH, 2 * SEARCH_RTT, limit.getLimit(), false);
+        }
+        assertTrue(limit.getLimit() > 20, "limit: " + limit.getLimit());
+    }
+}